@@ -0,0 +1,29 @@
+package ru.practicum.ewm.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.practicum.ewm.service.CompilationCache;
+import ru.practicum.ewm.service.PublishedEventCache;
+
+//Кеши сервиса со своими ограничениями размера и времени жизни (спецификация Caffeine в свойствах).
+//Статистика попаданий и вытеснений публикуется в метриках cache.gets, cache.evictions
+@Configuration
+public class CacheConfig {
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> cacheSpecs(
+            @Value("${ewm.cache.compilations.spec:maximumSize=1000,expireAfterWrite=60s,recordStats}")
+            String compilationsSpec,
+            @Value("${ewm.cache.published-events.spec:maximumSize=10000,expireAfterWrite=10m,recordStats}")
+            String publishedEventsSpec) {
+        return cacheManager -> {
+            cacheManager.registerCustomCache(CompilationCache.CACHE,
+                    Caffeine.from(compilationsSpec).build());
+            cacheManager.registerCustomCache(PublishedEventCache.CACHE,
+                    Caffeine.from(publishedEventsSpec).build());
+        };
+    }
+}
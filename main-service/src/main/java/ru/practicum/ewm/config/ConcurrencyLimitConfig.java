@@ -0,0 +1,70 @@
+package ru.practicum.ewm.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+//Ограничение числа одновременно обрабатываемых запросов на виртуальных потоках (ewm.http.max-concurrent-requests).
+//Пул потоков Tomcat больше не ограничивает одновременные запросы, и без предела вся очередь собирается у пула
+//соединений с базой, где запросы получают ошибку через connection-timeout. Лишние запросы ждут разрешения
+//в порядке поступления, не занимая ни соединения с базой, ни потока-носителя; не дождавшиеся за
+//ewm.http.max-concurrent-wait получают 503. Запросы на потоках платформы ограничены пулом потоков и не ждут
+@Slf4j
+@Configuration
+@ConditionalOnProperty("ewm.http.max-concurrent-requests")
+public class ConcurrencyLimitConfig {
+    @Bean
+    public FilterRegistrationBean<OncePerRequestFilter> concurrencyLimitFilter(
+            @Value("${ewm.http.max-concurrent-requests}") int maxConcurrentRequests,
+            @Value("${ewm.http.max-concurrent-wait:PT10S}") Duration maxWait) {
+        Semaphore permits = new Semaphore(maxConcurrentRequests, true);
+        FilterRegistrationBean<OncePerRequestFilter> registration = new FilterRegistrationBean<>(
+                new OncePerRequestFilter() {
+                    @Override
+                    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                                    FilterChain chain) throws ServletException, IOException {
+                        if (!Thread.currentThread().isVirtual()) {
+                            chain.doFilter(request, response);
+                            return;
+                        }
+                        if (!acquire(permits, maxWait)) {
+                            log.warn("Запрос {} {} не дождался обработки за {}", request.getMethod(),
+                                    request.getRequestURI(), maxWait);
+                            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+                            return;
+                        }
+                        try {
+                            chain.doFilter(request, response);
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                });
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    private static boolean acquire(Semaphore permits, Duration maxWait) {
+        try {
+            return permits.tryAcquire(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package ru.practicum.ewm.controller;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.ewm.dto.CommentDto;
 import ru.practicum.ewm.dto.NewCommentDto;
@@ -32,10 +33,12 @@ public class AdminCommentController {
      * @param rangeEnd конечная дата диапазона для фильтрации
      * @param from количество элементов, которые нужно пропустить
      * @param size количество элементов на странице
-     * @return список DTO комментариев, удовлетворяющих параметрам поиска
+     * @param after курсор из заголовка X-Next-Cursor предыдущего ответа; если задан, from не учитывается
+     * @return список DTO комментариев, удовлетворяющих параметрам поиска; курсор следующей страницы -
+     *         в заголовке X-Next-Cursor
      */
     @GetMapping()
-    public List<CommentDto> getComments(
+    public ResponseEntity<List<CommentDto>> getComments(
             @RequestParam(required = false) String commentText,
             @RequestParam(required = false) List<Long> users,
             @RequestParam(required = false) List<Long> events,
@@ -43,9 +46,11 @@ public class AdminCommentController {
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime rangeStart,
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime rangeEnd,
             @RequestParam(defaultValue = "0") int from,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String after) {
 
-        return adminCommentService.getComments(commentText, users, events, comments, rangeStart, rangeEnd, from, size);
+        return adminCommentService.getComments(commentText, users, events, comments, rangeStart, rangeEnd, from, size,
+                after).toResponseEntity();
     }
 
     /**
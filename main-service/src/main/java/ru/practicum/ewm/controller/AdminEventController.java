@@ -3,6 +3,7 @@ package ru.practicum.ewm.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.ewm.dto.EventFullDto;
 import ru.practicum.ewm.dto.UpdateEventAdminRequest;
@@ -32,18 +33,22 @@ public class AdminEventController {
      * @param rangeEnd дата и время окончания периода по дате события (формат yyyy-MM-dd HH:mm:ss)
      * @param from количество событий, которые нужно пропустить (по умолчанию 0)
      * @param size количество событий в наборе (по умолчанию 10)
-     * @return список DTO событий, удовлетворяющих условиям фильтрации
+     * @param after курсор из заголовка X-Next-Cursor предыдущего ответа; если задан, from не учитывается
+     * @return список DTO событий, удовлетворяющих условиям фильтрации; курсор следующей страницы -
+     *         в заголовке X-Next-Cursor
      */
     @GetMapping
-    public List<EventFullDto> getEvents(
+    public ResponseEntity<List<EventFullDto>> getEvents(
             @RequestParam(required = false) List<Long> users,
             @RequestParam(required = false) List<EventState> states,
             @RequestParam(required = false) List<Long> categories,
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime rangeStart,
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime rangeEnd,
             @RequestParam(defaultValue = "0") int from,
-            @RequestParam(defaultValue = "10") int size) {
-        return adminEventService.getEvents(users, states, categories, rangeStart, rangeEnd, from, size);
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String after) {
+        return adminEventService.getEvents(users, states, categories, rangeStart, rangeEnd, from, size, after)
+                .toResponseEntity();
     }
 
     /**
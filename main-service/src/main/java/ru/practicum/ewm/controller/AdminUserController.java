@@ -3,6 +3,7 @@ package ru.practicum.ewm.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.ewm.dto.NewUserRequest;
 import ru.practicum.ewm.dto.UserDto;
@@ -26,14 +27,17 @@ public class AdminUserController {
      * @param ids  список идентификаторов пользователей для фильтрации (опционально)
      * @param from количество элементов, которые нужно пропустить (по умолчанию 0)
      * @param size количество элементов в ответе (по умолчанию 10)
-     * @return список DTO пользователей, удовлетворяющих условиям выборки
+     * @param after курсор из заголовка X-Next-Cursor предыдущего ответа; если задан, from не учитывается
+     * @return список DTO пользователей, удовлетворяющих условиям выборки; курсор следующей страницы -
+     *         в заголовке X-Next-Cursor
      */
     @GetMapping
-    public List<UserDto> getUsers(
+    public ResponseEntity<List<UserDto>> getUsers(
             @RequestParam(required = false) List<Long> ids,
             @RequestParam(defaultValue = "0") int from,
-            @RequestParam(defaultValue = "10") int size) {
-        return userService.getUsers(ids, from, size);
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String after) {
+        return userService.getUsers(ids, from, size, after).toResponseEntity();
     }
 
     /**
@@ -3,6 +3,7 @@ package ru.practicum.ewm.controller;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.ewm.dto.EventFullDto;
 import ru.practicum.ewm.dto.EventShortDto;
@@ -31,14 +32,18 @@ public class PublicEventController {
      * @param rangeStart дата и время не раньше которых должно произойти событие (формат yyyy-MM-dd HH:mm:ss)
      * @param rangeEnd дата и время не позже которых должно произойти событие (формат yyyy-MM-dd HH:mm:ss)
      * @param onlyAvailable только события у которых не исчерпан лимит запросов на участие
-     * @param sort только события у которых не исчерпан лимит запросов на участие
+     * @param sort вариант сортировки: EVENT_DATE, VIEWS или RELEVANCE (по релевантности тексту поиска;
+     *             без полнотекстового поиска - по дате события)
      * @param from количество событий, которые нужно пропустить для формирования текущего набора (по умолчанию 0)
      * @param size количество событий в наборе (по умолчанию 10)
+     * @param after курсор из заголовка X-Next-Cursor предыдущего ответа; если задан, from не учитывается
+     *              (не поддерживается при сортировке RELEVANCE)
      * @param request объект HTTP запроса для учета статистики просмотров
-     * @return список DTO событий, удовлетворяющих условиям фильтрации
+     * @return список DTO событий, удовлетворяющих условиям фильтрации; курсор следующей страницы -
+     *         в заголовке X-Next-Cursor
      */
     @GetMapping
-    public List<EventShortDto> getEvents(
+    public ResponseEntity<List<EventShortDto>> getEvents(
             @RequestParam(required = false) String text,
             @RequestParam(required = false) List<Long> categories,
             @RequestParam(required = false) Boolean paid,
@@ -48,10 +53,11 @@ public class PublicEventController {
             @RequestParam(required = false) EventSort sort,
             @RequestParam(defaultValue = "0") int from,
             @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String after,
             HttpServletRequest request) {
 
         return publicEventService.getPublishedEvents(text, categories, paid,
-                rangeStart, rangeEnd, onlyAvailable, sort, from, size, request);
+                rangeStart, rangeEnd, onlyAvailable, sort, from, size, after, request).toResponseEntity();
     }
 
     /**
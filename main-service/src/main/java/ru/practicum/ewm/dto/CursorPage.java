@@ -0,0 +1,19 @@
+package ru.practicum.ewm.dto;
+
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+//Страница выдачи и курсор следующей страницы (null - страница последняя или курсор для выдачи не строится).
+//Курсор отдаётся в заголовке ответа, тело ответа остаётся списком
+public record CursorPage<T>(List<T> items, String nextCursor) {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    public ResponseEntity<List<T>> toResponseEntity() {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (nextCursor != null) {
+            response.header(NEXT_CURSOR_HEADER, nextCursor);
+        }
+        return response.body(items);
+    }
+}
@@ -13,7 +13,7 @@ import java.time.LocalDateTime;
 
 @EqualsAndHashCode(callSuper = true)
 @Data
-@SuperBuilder
+@SuperBuilder(toBuilder = true)
 public class EventFullDto extends EventShortDto {
     @NotNull
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
@@ -11,7 +11,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Data
-@SuperBuilder
+@SuperBuilder(toBuilder = true)
 public class EventShortDto {
     private Long id;
 
@@ -39,5 +39,8 @@ public class EventShortDto {
 
     private long views;
 
+    //В списках событий - только последние комментарии, полный список отдаёт /comments/events/{eventId}
     private List<CommentEventDto> comments;
+
+    private long commentCount;
 }
@@ -2,5 +2,6 @@ package ru.practicum.ewm.enums;
 
 public enum EventSort {
     EVENT_DATE,
-    VIEWS
+    VIEWS,
+    RELEVANCE
 }
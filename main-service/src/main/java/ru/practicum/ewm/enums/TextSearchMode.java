@@ -0,0 +1,7 @@
+package ru.practicum.ewm.enums;
+
+public enum TextSearchMode {
+    FULL_TEXT,
+    FULL_TEXT_OR_SUBSTRING,
+    SUBSTRING
+}
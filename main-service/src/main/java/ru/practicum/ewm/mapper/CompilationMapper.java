@@ -4,20 +4,21 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 import ru.practicum.ewm.dto.CategoryDto;
 import ru.practicum.ewm.dto.CompilationDto;
+import ru.practicum.ewm.dto.EventShortDto;
 import ru.practicum.ewm.dto.NewCategoryDto;
 import ru.practicum.ewm.model.Category;
 import ru.practicum.ewm.model.Compilation;
 
+import java.util.Set;
+
 @Component
 @RequiredArgsConstructor
 public class CompilationMapper {
-    private final EventMapper eventMapper;
-
-    public CompilationDto toCompilationDto(Compilation compilation) {
+    public CompilationDto toCompilationDto(Compilation compilation, Set<EventShortDto> events) {
         return CompilationDto.builder()
                 .id(compilation.getId())
                 .title(compilation.getTitle())
-                .events(eventMapper.toEventShortDtoSet(compilation.getEvents()))
+                .events(events)
                 .pinned(compilation.isPinned())
                 .build();
     }
@@ -2,16 +2,18 @@ package ru.practicum.ewm.mapper;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
+import ru.practicum.ewm.dto.CategoryDto;
 import ru.practicum.ewm.dto.EventFullDto;
 import ru.practicum.ewm.dto.EventShortDto;
 import ru.practicum.ewm.dto.NewEventDto;
+import ru.practicum.ewm.dto.UserShortDto;
 import ru.practicum.ewm.enums.EventState;
 import ru.practicum.ewm.model.Category;
 import ru.practicum.ewm.model.Event;
+import ru.practicum.ewm.model.EventShortView;
 
 import java.util.List;
 import java.util.Objects;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 @Component
@@ -37,6 +39,7 @@ public class EventMapper {
                 .annotation(event.getAnnotation())
                 .category(categoryMapper.toCategoryDto(event.getCategory()))
                 .title(event.getTitle())
+                .confirmedRequests(event.getConfirmedRequests())
                 .build();
     }
 
@@ -56,6 +59,24 @@ public class EventMapper {
                 .initiator(userMapper.toUserShortDto(event.getInitiator()))
                 .paid(event.isPaid())
                 .title(event.getTitle())
+                .confirmedRequests(event.getConfirmedRequests())
+                .build();
+    }
+
+    public EventShortDto toEventShortDto(EventShortView event) {
+        return EventShortDto.builder()
+                .id(event.id())
+                .annotation(event.annotation())
+                .category(new CategoryDto(event.categoryId(), event.categoryName()))
+                .eventDate(event.eventDate())
+                .initiator(UserShortDto.builder()
+                        .id(event.initiatorId())
+                        .name(event.initiatorName())
+                        .build())
+                .paid(event.paid())
+                .title(event.title())
+                .confirmedRequests(event.confirmedRequests())
+                .views(event.views())
                 .build();
     }
 
@@ -71,13 +92,6 @@ public class EventMapper {
                 .build();
     }
 
-    public Set<EventShortDto> toEventShortDtoSet(Set<Event> events) {
-        return events.stream()
-                .map(this::toEventShortDto)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
-    }
-
     public Event toEvent(NewEventDto newEventDto) {
         return Event.builder()
                 .state(EventState.PENDING)
@@ -25,7 +25,8 @@ public class Compilation {
     @Column(name = "title", unique = true)
     String title;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    //События подборок страницы загружаются одним запросом в CompilationService
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(name = "compilations_events",
             joinColumns = @JoinColumn(name = "compilation_id"),
             inverseJoinColumns = @JoinColumn(name = "event_id")
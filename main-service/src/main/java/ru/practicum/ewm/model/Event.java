@@ -62,4 +62,13 @@ public class Event {
 
     @Column(name = "request_moderation")
     private Boolean requestModeration;
+
+    //Поддерживается атомарными UPDATE в EventRepository, через сохранение сущности не пишется
+    @Column(name = "confirmed_requests", insertable = false, updatable = false)
+    private long confirmedRequests;
+
+    //Уникальные просмотры с момента публикации, периодически копируются из сервиса статистики
+    //(EventViewsSynchronizer); нужны для сортировки и пагинации по популярности
+    @Column(name = "views", insertable = false, updatable = false)
+    private long views;
 }
@@ -0,0 +1,8 @@
+package ru.practicum.ewm.model;
+
+import java.time.LocalDateTime;
+
+//Часто меняющиеся счётчики события: читаются одной строкой по первичному ключу и накладываются
+//на закешированную карточку события. publishedOn - начало окна, в котором считаются просмотры
+public record EventCounters(long confirmedRequests, long views, LocalDateTime publishedOn) {
+}
@@ -0,0 +1,38 @@
+package ru.practicum.ewm.model;
+
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//Краткое представление события для списков: только колонки EventShortDto (без описания и прочих полей
+//события), категория и инициатор выбираются тем же запросом. Лимит участников нужен для фильтра
+//доступных событий, просмотры - для курсора при сортировке по популярности, дата публикации - для окна
+//запроса просмотров к сервису статистики
+public record EventShortView(Long id,
+                             String annotation,
+                             Long categoryId,
+                             String categoryName,
+                             LocalDateTime eventDate,
+                             Long initiatorId,
+                             String initiatorName,
+                             boolean paid,
+                             String title,
+                             long confirmedRequests,
+                             Integer participantLimit,
+                             long views,
+                             LocalDateTime publishedOn) {
+
+    //Значения полей сортировки для курсора следующей страницы
+    public Map<String, Object> sortKeys(Sort sort) {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        sort.forEach(order -> keys.put(order.getProperty(), switch (order.getProperty()) {
+            case "id" -> id;
+            case "eventDate" -> eventDate;
+            case "views" -> views;
+            default -> throw new IllegalArgumentException("Неподдерживаемое поле сортировки: " + order.getProperty());
+        }));
+        return keys;
+    }
+}
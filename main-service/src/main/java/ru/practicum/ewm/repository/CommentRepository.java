@@ -1,16 +1,27 @@
 package ru.practicum.ewm.repository;
 
+import jakarta.persistence.criteria.Fetch;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.util.CollectionUtils;
 import ru.practicum.ewm.model.Comment;
+import ru.practicum.ewm.model.Event;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
-public interface CommentRepository extends JpaRepository<Comment, Long>, JpaSpecificationExecutor<Comment> {
+public interface CommentRepository extends JpaRepository<Comment, Long>, JpaSpecificationExecutor<Comment>,
+        CommentSliceRepository {
     default List<Comment> findWithFilters(String commentText,
                                           List<Long> users,
                                           List<Long> events,
@@ -18,20 +29,79 @@ public interface CommentRepository extends JpaRepository<Comment, Long>, JpaSpec
                                           LocalDateTime rangeStart,
                                           LocalDateTime rangeEnd,
                                           Pageable pageable) {
-        var predicates = Specification.allOf(CommentRepository.Specs.text(commentText),
-                CommentRepository.Specs.users(users),
-                CommentRepository.Specs.events(events),
-                CommentRepository.Specs.comments(comments),
-                CommentRepository.Specs.after(rangeStart),
-                CommentRepository.Specs.before(rangeEnd));
-        return findAll(predicates, pageable).getContent();
+        var predicates = Specs.filters(commentText, users, events, comments, rangeStart, rangeEnd);
+        return findSlice(predicates, pageable).getContent();
     }
 
+    //Те же фильтры с выборкой по ключу сортировки, без подсчёта общего числа строк; автор и событие
+    //загружаются в том же запросе
+    default Window<Comment> scrollWithFilters(String commentText,
+                                              List<Long> users,
+                                              List<Long> events,
+                                              List<Long> comments,
+                                              LocalDateTime rangeStart,
+                                              LocalDateTime rangeEnd,
+                                              Sort sort,
+                                              ScrollPosition position,
+                                              int limit) {
+        return findBy(Specification.allOf(Specs.filters(commentText, users, events, comments, rangeStart, rangeEnd),
+                        Specs.fetchReferences()),
+                query -> query.sortBy(sort).limit(limit).scroll(position));
+    }
+
+    @Override
+    @EntityGraph(attributePaths = {"author", "event"})
+    Optional<Comment> findById(Long id);
+
+    @EntityGraph(attributePaths = {"author", "event"})
     List<Comment> findAllByEventId(Long eventId);
 
+    @EntityGraph(attributePaths = {"author", "event"})
     List<Comment> findAllByAuthorId(Long authorId);
 
+    //id последних limit комментариев каждого события и общее число комментариев события:
+    //строки вида (id комментария, id события, всего комментариев у события)
+    @Query(value = "SELECT t.id, t.event_id, t.total FROM (" +
+            "SELECT c.id, c.event_id, " +
+            "ROW_NUMBER() OVER (PARTITION BY c.event_id ORDER BY c.created_at DESC, c.id DESC) AS rn, " +
+            "COUNT(*) OVER (PARTITION BY c.event_id) AS total " +
+            "FROM comments c WHERE c.event_id IN (:eventIds)) t " +
+            "WHERE t.rn <= :limit", nativeQuery = true)
+    List<Object[]> findLatestCommentIdsForEvents(@Param("eventIds") Collection<Long> eventIds,
+                                                 @Param("limit") int limit);
+
+    @Query("select c from Comment c join fetch c.author where c.id in :ids order by c.createdAt desc, c.id desc")
+    List<Comment> findAllWithAuthorByIdIn(@Param("ids") Collection<Long> ids);
+
     class Specs {
+        static Specification<Comment> filters(String commentText,
+                                              List<Long> users,
+                                              List<Long> events,
+                                              List<Long> comments,
+                                              LocalDateTime rangeStart,
+                                              LocalDateTime rangeEnd) {
+            return Specification.allOf(text(commentText),
+                    users(users),
+                    events(events),
+                    comments(comments),
+                    after(rangeStart),
+                    before(rangeEnd));
+        }
+
+        //Автор и событие (с его категорией и инициатором) в том же запросе; project() при выборке
+        //через scroll не применяется
+        static Specification<Comment> fetchReferences() {
+            return (entity, query, cb) -> {
+                if (query.getResultType() == Comment.class) {
+                    entity.fetch("author");
+                    Fetch<Comment, Event> event = entity.fetch("event");
+                    event.fetch("category");
+                    event.fetch("initiator");
+                }
+                return null;
+            };
+        }
+
         static Specification<Comment> text(String commentText) {
             return commentText == null ? null :
                     (entity, query, cb)
@@ -0,0 +1,11 @@
+package ru.practicum.ewm.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+import ru.practicum.ewm.model.Comment;
+
+//Поиск комментариев по спецификации без подсчёта общего числа строк; автор и событие загружаются сразу
+public interface CommentSliceRepository {
+    Slice<Comment> findSlice(Specification<Comment> spec, Pageable pageable);
+}
@@ -0,0 +1,9 @@
+package ru.practicum.ewm.repository;
+
+import ru.practicum.ewm.model.Comment;
+
+class CommentSliceRepositoryImpl extends SpecificationSliceSupport<Comment> implements CommentSliceRepository {
+    CommentSliceRepositoryImpl() {
+        super(Comment.class, "author", "event");
+    }
+}
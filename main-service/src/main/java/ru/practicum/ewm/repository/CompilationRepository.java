@@ -3,12 +3,24 @@ package ru.practicum.ewm.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.practicum.ewm.model.Compilation;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface CompilationRepository extends JpaRepository<Compilation, Long> {
     Page<Compilation> findByPinned(boolean pinned, Pageable pageable);
 
     boolean existsByTitle(String title);
+
+    //Пары (id подборки, id события) для всех подборок страницы
+    @Query("select c.id, e.id from Compilation c join c.events e where c.id in :ids")
+    List<Object[]> findEventIdsByCompilationIds(@Param("ids") Collection<Long> ids);
+
+    @Query("select c.id from Compilation c join c.events e where e.id = :eventId")
+    List<Long> findIdsByEventId(@Param("eventId") Long eventId);
 }
@@ -1,28 +1,86 @@
 package ru.practicum.ewm.repository;
 
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.CollectionUtils;
 import ru.practicum.ewm.enums.EventState;
+import ru.practicum.ewm.enums.TextSearchMode;
 import ru.practicum.ewm.model.Event;
+import ru.practicum.ewm.model.EventCounters;
+import ru.practicum.ewm.model.EventShortView;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository
-public interface EventRepository extends JpaRepository<Event, Long>, JpaSpecificationExecutor<Event> {
-    List<Event> findByInitiatorId(Long userId, Pageable pageable);
-
+public interface EventRepository extends JpaRepository<Event, Long>, JpaSpecificationExecutor<Event>,
+        EventSliceRepository {
     Optional<Event> findByIdAndInitiatorId(Long eventId, Long initiatorId);
 
     Optional<Event> findByIdAndState(Long eventId, EventState state);
 
+    @Query("select new ru.practicum.ewm.model.EventCounters(e.confirmedRequests, e.views, e.publishedOn) " +
+            "from Event e " +
+            "where e.id = :eventId and e.state = :state")
+    Optional<EventCounters> findCountersByIdAndState(@Param("eventId") Long eventId,
+                                                     @Param("state") EventState state);
+
     boolean existsByCategoryId(Long catId);
 
+    //Атомарное изменение счётчика подтверждённых заявок в транзакции, меняющей статусы заявок
+    @Modifying
+    @Query("update Event e set e.confirmedRequests = e.confirmedRequests + :delta where e.id = :eventId")
+    int addConfirmedRequests(@Param("eventId") Long eventId, @Param("delta") long delta);
+
+    //Занятие мест одним условным UPDATE: строка не меняется, если места превысят лимит участников.
+    //Параллельные вызовы для одного события упорядочиваются блокировкой строки, условие перепроверяется
+    //на её актуальной версии; возвращает 1, если места заняты, иначе 0
+    @Modifying
+    @Query("update Event e set e.confirmedRequests = e.confirmedRequests + :seats where e.id = :eventId " +
+            "and (e.participantLimit = 0 or e.confirmedRequests + :seats <= e.participantLimit)")
+    int reserveSeats(@Param("eventId") Long eventId, @Param("seats") long seats);
+
+    //Занятие до seats мест одним запросом: строка события блокируется, к счётчику прибавляется столько мест,
+    //сколько осталось до лимита участников (все seats, если лимита нет); возвращает число занятых мест
+    @Query(value = "WITH granted AS (SELECT id, CASE WHEN participant_limit = 0 THEN :seats " +
+            "ELSE LEAST(:seats, GREATEST(participant_limit - confirmed_requests, 0)) END AS seats " +
+            "FROM events WHERE id = :eventId FOR UPDATE) " +
+            "UPDATE events e SET confirmed_requests = e.confirmed_requests + g.seats FROM granted g " +
+            "WHERE e.id = g.id RETURNING g.seats", nativeQuery = true)
+    Long reserveAvailableSeats(@Param("eventId") Long eventId, @Param("seats") long seats);
+
+    //Исправление расхождений счётчика с заявками у событий с id в (afterId, toId];
+    //возвращает число исправленных событий
+    @Modifying
+    @Query(value = "UPDATE events e SET confirmed_requests = c.confirmed " +
+            "FROM (SELECT ev.id, COUNT(pr.id) AS confirmed FROM events ev " +
+            "LEFT JOIN participation_requests pr ON pr.event_id = ev.id AND pr.status = 'CONFIRMED' " +
+            "WHERE ev.id > :afterId AND ev.id <= :toId " +
+            "GROUP BY ev.id) c " +
+            "WHERE c.id = e.id AND e.confirmed_requests <> c.confirmed", nativeQuery = true)
+    int reconcileConfirmedRequests(@Param("afterId") long afterId, @Param("toId") long toId);
+
+    @Query("select max(e.id) from Event e")
+    Long findMaxId();
+
+    //Порция событий в заданном состоянии после afterId: строки (id, publishedOn) по возрастанию id
+    @Query("select e.id, e.publishedOn from Event e where e.state = :state and e.id > :afterId order by e.id")
+    List<Object[]> findPublicationsAfter(@Param("state") EventState state, @Param("afterId") Long afterId,
+                                         Pageable pageable);
+
     default List<Event> findWithFilters(List<Long> users,
                                         List<EventState> states,
                                         List<Long> categories,
@@ -31,17 +89,93 @@ public interface EventRepository extends JpaRepository<Event, Long>, JpaSpecific
                                         Boolean paid,
                                         String text,
                                         Pageable pageable) {
-       Specification<Event> predicates = Specification.allOf(Specs.after(rangeStart),
-                Specs.states(states),
-                Specs.before(rangeEnd),
-                Specs.categories(categories),
-                Specs.paid(paid),
-                Specs.text(text),
-                Specs.users(users));
-        return findAll(predicates, pageable).getContent();
+        return findWithFilters(users, states, categories, rangeStart, rangeEnd, paid, text, TextSearchMode.SUBSTRING,
+                false, pageable);
+    }
+
+    //Поиск с выбранным способом текстового поиска; byRelevance - сортировка по релевантности тексту
+    //(только для полнотекстового поиска, pageable при этом должен быть без сортировки)
+    default List<Event> findWithFilters(List<Long> users,
+                                        List<EventState> states,
+                                        List<Long> categories,
+                                        LocalDateTime rangeStart,
+                                        LocalDateTime rangeEnd,
+                                        Boolean paid,
+                                        String text,
+                                        TextSearchMode searchMode,
+                                        boolean byRelevance,
+                                        Pageable pageable) {
+        Specification<Event> predicates = Specification.allOf(
+                Specs.filters(users, states, categories, rangeStart, rangeEnd, paid, text, searchMode),
+                byRelevance ? Specs.orderByRelevance(text) : null);
+        return findSlice(predicates, pageable).getContent();
+    }
+
+    //Поиск опубликованных и прочих событий для кратких списков: выбираются только колонки EventShortView.
+    //afterKeys - значения полей сортировки последней строки предыдущей страницы (выборка по ключу,
+    //pageable тогда задаёт первую страницу), для выборки со смещением - пустая карта
+    default Slice<EventShortView> findShortWithFilters(List<EventState> states,
+                                                       List<Long> categories,
+                                                       LocalDateTime rangeStart,
+                                                       LocalDateTime rangeEnd,
+                                                       Boolean paid,
+                                                       String text,
+                                                       TextSearchMode searchMode,
+                                                       boolean byRelevance,
+                                                       Map<String, ?> afterKeys,
+                                                       Pageable pageable) {
+        Specification<Event> predicates = Specification.allOf(
+                Specs.filters(null, states, categories, rangeStart, rangeEnd, paid, text, searchMode),
+                KeysetSpecs.after(pageable.getSort(), afterKeys),
+                byRelevance ? Specs.orderByRelevance(text) : null);
+        return findShortSlice(predicates, pageable);
+    }
+
+    default List<EventShortView> findShortByInitiatorId(Long userId, Pageable pageable) {
+        return findShortSlice(Specs.users(List.of(userId)), pageable).getContent();
+    }
+
+    default List<EventShortView> findShortByIdIn(Collection<Long> ids) {
+        return findShortSlice((entity, query, cb) -> entity.get("id").in(ids), Pageable.unpaged()).getContent();
+    }
+
+    //Те же фильтры с выборкой по ключу сортировки: limit строк после position в порядке sort, без подсчёта
+    //общего числа строк. Окно сообщает, есть ли строки дальше, и позицию для следующей выборки
+    default Window<Event> scrollWithFilters(List<Long> users,
+                                            List<EventState> states,
+                                            List<Long> categories,
+                                            LocalDateTime rangeStart,
+                                            LocalDateTime rangeEnd,
+                                            Boolean paid,
+                                            String text,
+                                            TextSearchMode searchMode,
+                                            Sort sort,
+                                            ScrollPosition position,
+                                            int limit) {
+        return findBy(Specification.allOf(
+                        Specs.filters(users, states, categories, rangeStart, rangeEnd, paid, text, searchMode),
+                        Specs.fetchReferences()),
+                query -> query.sortBy(sort).limit(limit).scroll(position));
     }
 
     class Specs {
+        static Specification<Event> filters(List<Long> users,
+                                            List<EventState> states,
+                                            List<Long> categories,
+                                            LocalDateTime rangeStart,
+                                            LocalDateTime rangeEnd,
+                                            Boolean paid,
+                                            String text,
+                                            TextSearchMode searchMode) {
+            return Specification.allOf(after(rangeStart),
+                    states(states),
+                    before(rangeEnd),
+                    categories(categories),
+                    paid(paid),
+                    text(text, searchMode),
+                    users(users));
+        }
+
         static Specification<Event> users(List<Long> users) {
             return CollectionUtils.isEmpty(users) ? null :
                     (entity, query, cb)
@@ -72,11 +206,43 @@ public interface EventRepository extends JpaRepository<Event, Long>, JpaSpecific
                             -> cb.lessThanOrEqualTo(entity.get("eventDate"), rangeEnd);
         }
 
-        static Specification<Event> text(String text) {
+        static Specification<Event> text(String text, TextSearchMode mode) {
+            if (text == null) {
+                return null;
+            }
+            Specification<Event> fullText = (entity, query, cb)
+                    -> cb.isTrue(cb.function("event_search_matches", Boolean.class,
+                    entity.get("annotation"), entity.get("description"), cb.literal(text)));
+            Specification<Event> substring = (entity, query, cb)
+                    -> cb.or(cb.like(cb.lower(entity.get("annotation")), "%" + text.toLowerCase() + "%"),
+                    cb.like(cb.lower(entity.get("description")), "%" + text.toLowerCase() + "%"));
+            return switch (mode) {
+                case FULL_TEXT -> fullText;
+                case FULL_TEXT_OR_SUBSTRING -> fullText.or(substring);
+                case SUBSTRING -> substring;
+            };
+        }
+
+        //Сортировка по рангу полнотекстового совпадения; при равном ранге - по id для стабильных страниц
+        static Specification<Event> orderByRelevance(String text) {
             return text == null ? null :
-                    (entity, query, cb)
-                            -> cb.or(cb.like(cb.lower(entity.get("annotation")), "%" + text.toLowerCase() + "%"),
-                            cb.like(cb.lower(entity.get("description")), "%" + text + "%"));
+                    (entity, query, cb) -> {
+                        query.orderBy(cb.desc(cb.function("event_search_rank", Float.class,
+                                entity.get("annotation"), entity.get("description"), cb.literal(text))),
+                                cb.asc(entity.get("id")));
+                        return null;
+                    };
+        }
+
+        //Категория и инициатор в том же запросе; project() при выборке через scroll не применяется
+        static Specification<Event> fetchReferences() {
+            return (entity, query, cb) -> {
+                if (query.getResultType() == Event.class) {
+                    entity.fetch("category");
+                    entity.fetch("initiator");
+                }
+                return null;
+            };
         }
 
         static Specification<Event> paid(Boolean paid) {
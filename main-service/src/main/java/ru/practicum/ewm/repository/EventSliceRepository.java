@@ -0,0 +1,15 @@
+package ru.practicum.ewm.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+import ru.practicum.ewm.model.Event;
+import ru.practicum.ewm.model.EventShortView;
+
+//Поиск событий по спецификации без подсчёта общего числа строк
+public interface EventSliceRepository {
+    Slice<Event> findSlice(Specification<Event> spec, Pageable pageable);
+
+    //То же в виде краткого представления: выбираются только его колонки, категория и инициатор - через join
+    Slice<EventShortView> findShortSlice(Specification<Event> spec, Pageable pageable);
+}
@@ -0,0 +1,43 @@
+package ru.practicum.ewm.repository;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+import ru.practicum.ewm.model.Category;
+import ru.practicum.ewm.model.Event;
+import ru.practicum.ewm.model.EventShortView;
+import ru.practicum.ewm.model.User;
+
+class EventSliceRepositoryImpl extends SpecificationSliceSupport<Event> implements EventSliceRepository {
+    EventSliceRepositoryImpl() {
+        super(Event.class, "category", "initiator");
+    }
+
+    @Override
+    public Slice<EventShortView> findShortSlice(Specification<Event> spec, Pageable pageable) {
+        CriteriaBuilder cb = criteriaBuilder();
+        CriteriaQuery<EventShortView> query = cb.createQuery(EventShortView.class);
+        Root<Event> event = query.from(Event.class);
+        Join<Event, Category> category = event.join("category");
+        Join<Event, User> initiator = event.join("initiator");
+        query.select(cb.construct(EventShortView.class,
+                event.get("id"),
+                event.get("annotation"),
+                category.get("id"),
+                category.get("name"),
+                event.get("eventDate"),
+                initiator.get("id"),
+                initiator.get("name"),
+                event.get("paid"),
+                event.get("title"),
+                event.get("confirmedRequests"),
+                event.get("participantLimit"),
+                event.get("views"),
+                event.get("publishedOn")));
+        return toSlice(createQuery(query, event, spec, pageable), pageable);
+    }
+}
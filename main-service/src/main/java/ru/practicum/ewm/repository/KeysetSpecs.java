@@ -0,0 +1,37 @@
+package ru.practicum.ewm.repository;
+
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+//Условие выборки по ключу сортировки: строки, идущие в порядке sort строго после строки со значениями keys
+//(для сортировки (a, b): a > :a OR (a = :a AND b > :b), с учётом направления каждого поля)
+public final class KeysetSpecs {
+    private KeysetSpecs() {
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <T> Specification<T> after(Sort sort, Map<String, ?> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return null;
+        }
+        return (entity, query, cb) -> {
+            List<Predicate> alternatives = new ArrayList<>();
+            List<Predicate> equalPrefix = new ArrayList<>();
+            for (Sort.Order order : sort) {
+                Path<Comparable> path = entity.get(order.getProperty());
+                Comparable value = (Comparable) keys.get(order.getProperty());
+                List<Predicate> alternative = new ArrayList<>(equalPrefix);
+                alternative.add(order.isAscending() ? cb.greaterThan(path, value) : cb.lessThan(path, value));
+                alternatives.add(cb.and(alternative.toArray(Predicate[]::new)));
+                equalPrefix.add(cb.equal(path, value));
+            }
+            return cb.or(alternatives.toArray(Predicate[]::new));
+        };
+    }
+}
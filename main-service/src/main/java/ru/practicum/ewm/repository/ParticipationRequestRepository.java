@@ -1,12 +1,15 @@
 package ru.practicum.ewm.repository;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
-import ru.practicum.ewm.enums.RequestStatus;
 import ru.practicum.ewm.model.ParticipationRequest;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface ParticipationRequestRepository extends JpaRepository<ParticipationRequest, Long> {
 
@@ -14,12 +17,17 @@ public interface ParticipationRequestRepository extends JpaRepository<Participat
 
     boolean existsByRequesterAndEvent(Long requesterId, Long eventId);
 
-    long countByEventAndStatus(Long eventId, RequestStatus status);
-
     List<ParticipationRequest> findByEvent(Long eventId);
 
-    @Query("SELECT pr.event, COUNT(pr) FROM ParticipationRequest pr " +
-            "WHERE pr.event IN :eventIds AND pr.status = 'CONFIRMED' GROUP BY pr.event")
-    List<Object[]> countConfirmedRequestsForEvents(@Param("eventIds") List<Long> eventIds);
+    //Заявки с блокировкой строк до конца транзакции: статус, по которому занимаются или освобождаются
+    //места события, не меняется параллельно. Строки блокируются по возрастанию id, чтобы пересекающиеся
+    //наборы заявок не приводили к взаимной блокировке
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r from ParticipationRequest r where r.id in :ids and r.event = :eventId order by r.id")
+    List<ParticipationRequest> findAllForUpdate(@Param("ids") Collection<Long> ids, @Param("eventId") Long eventId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r from ParticipationRequest r where r.id = :id")
+    Optional<ParticipationRequest> findForUpdate(@Param("id") Long id);
 
 }
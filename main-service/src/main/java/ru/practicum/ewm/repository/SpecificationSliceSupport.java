@@ -0,0 +1,82 @@
+package ru.practicum.ewm.repository;
+
+import jakarta.persistence.EntityGraph;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.util.List;
+
+//Выборка страницы по спецификации одним запросом: вместо отдельного COUNT(*) запрашивается на одну
+//строку больше размера страницы, по ней и определяется, есть ли следующая страница
+abstract class SpecificationSliceSupport<T> {
+    private static final String FETCH_GRAPH_HINT = "jakarta.persistence.fetchgraph";
+
+    private final Class<T> domainClass;
+    //Связи, загружаемые в том же запросе
+    private final String[] fetchAttributes;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    protected SpecificationSliceSupport(Class<T> domainClass, String... fetchAttributes) {
+        this.domainClass = domainClass;
+        this.fetchAttributes = fetchAttributes;
+    }
+
+    public Slice<T> findSlice(Specification<T> spec, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(domainClass);
+        Root<T> root = query.from(domainClass);
+        query.select(root);
+
+        TypedQuery<T> typedQuery = createQuery(query, root, spec, pageable);
+        if (fetchAttributes.length > 0) {
+            EntityGraph<T> graph = entityManager.createEntityGraph(domainClass);
+            graph.addAttributeNodes(fetchAttributes);
+            typedQuery.setHint(FETCH_GRAPH_HINT, graph);
+        }
+        return toSlice(typedQuery, pageable);
+    }
+
+    protected CriteriaBuilder criteriaBuilder() {
+        return entityManager.getCriteriaBuilder();
+    }
+
+    //Запрос с условием спецификации, сортировкой и ограничением в size + 1 строк; select задаёт вызывающий
+    protected <R> TypedQuery<R> createQuery(CriteriaQuery<R> query, Root<T> root, Specification<T> spec,
+                                            Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        Predicate predicate = spec == null ? null : spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        //Сортировка pageable заменяет порядок, заданный спецификацией, как и в SimpleJpaRepository
+        if (pageable.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        }
+        TypedQuery<R> typedQuery = entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize() + 1);
+        }
+        return typedQuery;
+    }
+
+    protected <R> Slice<R> toSlice(TypedQuery<R> query, Pageable pageable) {
+        List<R> rows = query.getResultList();
+        if (pageable.isUnpaged() || rows.size() <= pageable.getPageSize()) {
+            return new SliceImpl<>(rows, pageable, false);
+        }
+        return new SliceImpl<>(rows.subList(0, pageable.getPageSize()), pageable, true);
+    }
+}
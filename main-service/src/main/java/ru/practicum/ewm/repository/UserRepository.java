@@ -2,15 +2,27 @@ package ru.practicum.ewm.repository;
 
 import jakarta.validation.constraints.NotNull;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.util.CollectionUtils;
 import ru.practicum.ewm.model.User;
 
 import java.util.List;
 
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User> {
 
     List<User> findByIdIn(List<Long> ids, Pageable pageable);
 
+    //Пользователи (все или с заданными id) по возрастанию id: limit строк после position, без подсчёта
+    default Window<User> scrollByIds(List<Long> ids, ScrollPosition position, int limit) {
+        Specification<User> byIds = (entity, query, cb) -> CollectionUtils.isEmpty(ids) ? null : entity.get("id").in(ids);
+        return findBy(byIds, query -> query.sortBy(Sort.by("id")).limit(limit).scroll(position));
+    }
+
     boolean existsByEmail(String email);
 
     boolean existsById(@NotNull Long id);
@@ -2,12 +2,13 @@ package ru.practicum.ewm.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.ewm.dto.CommentDto;
+import ru.practicum.ewm.dto.CursorPage;
 import ru.practicum.ewm.dto.NewCommentDto;
 import ru.practicum.ewm.exception.ValidationException;
 import ru.practicum.ewm.mapper.CommentMapper;
@@ -25,17 +26,20 @@ public class AdminCommentService {
     private final CommentRepository commentRepository;
     private final UserRepository userRepository;
     private final CommentMapper commentMapper;
+    private final PublishedEventCache publishedEventCache;
+    private final CompilationCache compilationCache;
 
+    //Первая страница и страницы по курсору after выбираются по ключу (createdAt, id) без OFFSET
     @Transactional(readOnly = true)
-    public List<CommentDto> getComments(String commentText, List<Long> users, List<Long> events, List<Long> comments,
-                                        LocalDateTime rangeStart, LocalDateTime rangeEnd,
-                                        int from, int size) {
+    public CursorPage<CommentDto> getComments(String commentText, List<Long> users, List<Long> events,
+                                              List<Long> comments, LocalDateTime rangeStart, LocalDateTime rangeEnd,
+                                              int from, int size, String after) {
 
         if (from < 0 || size <= 0) {
             throw new ValidationException("Некорректные параметры пагинации", HttpStatus.BAD_REQUEST);
         }
 
-        Pageable pageable = PageRequest.of(from / size, size, Sort.by("createdAt").descending());
+        Sort sort = Sort.by(Sort.Direction.DESC, "createdAt", "id");
 
         boolean filterText = commentText != null && !commentText.isBlank() || Objects.equals(commentText, "0");
         boolean filterUsers = users != null && !users.isEmpty() && !(users.size() == 1 && users.getFirst() == 0);
@@ -44,6 +48,21 @@ public class AdminCommentService {
                 !(comments.size() == 1 && comments.getFirst() == 0);
         boolean filterDates = rangeStart != null && rangeEnd != null && rangeStart.isBefore(rangeEnd);
 
+        if (after != null || from == 0) {
+            Window<Comment> window = commentRepository.scrollWithFilters(
+                    filterText ? commentText : null,
+                    filterUsers ? users : null,
+                    filterEvents ? events : null,
+                    filterComments ? comments : null,
+                    filterDates ? rangeStart : null,
+                    filterDates ? rangeEnd : null,
+                    sort,
+                    ScrollCursor.position(after, sort, Comment.class),
+                    size
+            );
+            return new CursorPage<>(commentMapper.toCommentDto(window.getContent()), ScrollCursor.next(window));
+        }
+
         List<Comment> commentList = commentRepository.findWithFilters(
                 filterText ? commentText : null,
                 filterUsers ? users : null,
@@ -51,9 +70,9 @@ public class AdminCommentService {
                 filterComments ? comments : null,
                 filterDates ? rangeStart : null,
                 filterDates ? rangeEnd : null,
-                pageable
+                PageRequest.of(from / size, size, sort)
         );
-        return commentMapper.toCommentDto(commentList);
+        return new CursorPage<>(commentMapper.toCommentDto(commentList), null);
     }
 
     @Transactional(readOnly = true)
@@ -75,7 +94,10 @@ public class AdminCommentService {
         comment.setCommentText(newCommentDto.getCommentText());
         comment.setUpdatedAt(LocalDateTime.now());
 
-        return commentMapper.toCommentDto(commentRepository.save(comment));
+        Comment saved = commentRepository.save(comment);
+        publishedEventCache.evict(saved.getEvent().getId());
+        compilationCache.evictContaining(saved.getEvent().getId());
+        return commentMapper.toCommentDto(saved);
     }
 
     @Transactional
@@ -85,5 +107,7 @@ public class AdminCommentService {
                         HttpStatus.NOT_FOUND));
 
         commentRepository.deleteById(commentId);
+        publishedEventCache.evict(comment.getEvent().getId());
+        compilationCache.evictContaining(comment.getEvent().getId());
     }
 }
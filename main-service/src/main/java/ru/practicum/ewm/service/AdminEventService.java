@@ -2,16 +2,16 @@ package ru.practicum.ewm.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.ewm.StatsClient;
 import ru.practicum.ewm.dto.*;
 import ru.practicum.ewm.enums.EventState;
-import ru.practicum.ewm.enums.RequestStatus;
 import ru.practicum.ewm.enums.StateAction;
+import ru.practicum.ewm.enums.TextSearchMode;
 import ru.practicum.ewm.exception.ValidationException;
 import ru.practicum.ewm.mapper.CommentMapper;
 import ru.practicum.ewm.mapper.EventMapper;
@@ -19,7 +19,6 @@ import ru.practicum.ewm.model.Event;
 import ru.practicum.ewm.repository.CategoryRepository;
 import ru.practicum.ewm.repository.CommentRepository;
 import ru.practicum.ewm.repository.EventRepository;
-import ru.practicum.ewm.repository.ParticipationRequestRepository;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -40,16 +39,19 @@ public class AdminEventService {
     private final EventRepository eventRepository;
     private final EventMapper eventMapper;
     private final CategoryRepository categoryRepository;
-    private final ParticipationRequestRepository participationRequestRepository;
     private final StatsClient statsClient;
     private final CommentRepository commentRepository;
     private final CommentMapper commentMapper;
+    private final EventEnricher eventEnricher;
+    private final PublishedEventCache publishedEventCache;
+    private final CompilationCache compilationCache;
 
-    public List<EventFullDto> getEvents(List<Long> users, List<EventState> states, List<Long> categories,
-                                        LocalDateTime rangeStart, LocalDateTime rangeEnd, int from, int size) {
+    //Первая страница и страницы по курсору after выбираются по ключу (eventDate, id) без OFFSET
+    public CursorPage<EventFullDto> getEvents(List<Long> users, List<EventState> states, List<Long> categories,
+                                              LocalDateTime rangeStart, LocalDateTime rangeEnd, int from, int size,
+                                              String after) {
 
-        Pageable pageable = PageRequest.of(from / size, size, Sort.by("eventDate")
-                .descending());
+        Sort sort = Sort.by(Sort.Direction.DESC, "eventDate", "id");
 
         boolean filterUsers = users != null && !users.isEmpty() && !(users.size() == 1 && users.getFirst() == 0);
         boolean filterStates = states != null && !states.isEmpty();
@@ -57,60 +59,48 @@ public class AdminEventService {
                 !(categories.size() == 1 && categories.getFirst() == 0);
         boolean filterDates = rangeStart != null && rangeEnd != null && rangeStart.isBefore(rangeEnd);
 
-        List<Event> events = eventRepository.findWithFilters(
-                filterUsers ? users : null,
-                filterStates ? states : null,
-                filterCategories ? categories : null,
-                filterDates ? rangeStart : null,
-                filterDates ? rangeEnd : null,
-                null,
-                null,
-                pageable
-        );
-
-        if (events.isEmpty()) return List.of();
-
-        Map<Long, Long> confirmedRequestsMap = getconfirmedRequestsMap(events);
-
-        Map<String, Event> uriToEventMap = events.stream()
-                .filter(e -> e.getPublishedOn() != null)
-                .collect(Collectors.toMap(e -> "/events/" + e.getId(), e -> e));
-
-        List<ViewStats> stats = statsClient.getStats(
-                uriToEventMap.entrySet().stream()
-                        .map(entry -> StatsRequest.builder()
-                                .uris(Set.of(entry.getKey()))
-                                .start(entry.getValue().getPublishedOn())
-                                .end(LocalDateTime.now())
-                                .unique(true)
-                                .build())
-                        .toList()
-        );
-
-        Map<String, Long> viewsMap = stats.stream()
-                .collect(Collectors.toMap(ViewStats::getUri, ViewStats::getHits));
-
-        return events.stream()
+        List<Event> events;
+        String nextCursor = null;
+        if (after != null || from == 0) {
+            Window<Event> window = eventRepository.scrollWithFilters(
+                    filterUsers ? users : null,
+                    filterStates ? states : null,
+                    filterCategories ? categories : null,
+                    filterDates ? rangeStart : null,
+                    filterDates ? rangeEnd : null,
+                    null,
+                    null,
+                    TextSearchMode.SUBSTRING,
+                    sort,
+                    ScrollCursor.position(after, sort, Event.class),
+                    size
+            );
+            events = window.getContent();
+            nextCursor = ScrollCursor.next(window);
+        } else {
+            events = eventRepository.findWithFilters(
+                    filterUsers ? users : null,
+                    filterStates ? states : null,
+                    filterCategories ? categories : null,
+                    filterDates ? rangeStart : null,
+                    filterDates ? rangeEnd : null,
+                    null,
+                    null,
+                    PageRequest.of(from / size, size, sort)
+            );
+        }
+
+        if (events.isEmpty()) return new CursorPage<>(List.of(), null);
+
+        Map<Long, EventEnricher.Enrichment> enrichments = eventEnricher.enrich(
+                events.stream().map(EventEnricher.Source::of).toList());
+
+        return new CursorPage<>(events.stream()
                 .map(event -> {
                     EventFullDto dto = eventMapper.toEventFullDto(event);
-                    dto.setConfirmedRequests(confirmedRequestsMap.getOrDefault(event.getId(), 0L));
-                    dto.setViews(viewsMap.getOrDefault("/events/" + event.getId(), 0L));
-                    List<CommentEventDto> commentEventDto = commentMapper
-                            .toCommentEventDto(commentRepository.findAllByEventId(event.getId()));
-                    dto.setComments(commentEventDto);
+                    enrichments.get(event.getId()).applyTo(dto);
                     return dto;
-                }).collect(Collectors.toList());
-    }
-
-    private Map<Long, Long> getconfirmedRequestsMap(List<Event> events) {
-        List<Long> eventIds = events.stream().map(Event::getId).toList();
-
-        return participationRequestRepository
-                .countConfirmedRequestsForEvents(eventIds).stream()
-                .collect(Collectors.toMap(
-                        row -> (Long) row[0],
-                        row -> (Long) row[1]
-                ));
+                }).collect(Collectors.toList()), nextCursor);
     }
 
     @Transactional
@@ -167,8 +157,9 @@ public class AdminEventService {
         }
 
         Event saved = eventRepository.save(event);
+        publishedEventCache.evict(eventId);
+        compilationCache.evictContaining(eventId);
         EventFullDto dto = eventMapper.toEventFullDto(saved);
-        dto.setConfirmedRequests(participationRequestRepository.countByEventAndStatus(eventId, RequestStatus.CONFIRMED));
 
         if (event.getPublishedOn() != null) {
             StatsRequest statsRequest = StatsRequest.builder()
@@ -187,6 +178,7 @@ public class AdminEventService {
         List<CommentEventDto> commentEventDto = commentMapper
                 .toCommentEventDto(commentRepository.findAllByEventId(event.getId()));
         dto.setComments(commentEventDto);
+        dto.setCommentCount(commentEventDto.size());
 
         return dto;
     }
@@ -0,0 +1,24 @@
+package ru.practicum.ewm.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+//Сброс записей кеша после фиксации текущей транзакции: при сбросе до неё параллельное чтение успело бы
+//положить в кеш старую версию. Вне транзакции сброс выполняется сразу
+final class CacheEviction {
+    private CacheEviction() {
+    }
+
+    static void afterCommit(Runnable eviction) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            eviction.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                eviction.run();
+            }
+        });
+    }
+}
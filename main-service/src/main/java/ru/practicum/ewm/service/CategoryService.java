@@ -25,6 +25,8 @@ public class CategoryService {
     private final CategoryRepository categoryRepository;
     private final CategoryMapper categoryMapper;
     private final EventRepository eventRepository;
+    private final CompilationCache compilationCache;
+    private final PublishedEventCache publishedEventCache;
 
     @Transactional(readOnly = true)
     public List<CategoryDto> getCategories(int from, int size) {
@@ -77,6 +79,10 @@ public class CategoryService {
                     HttpStatus.CONFLICT);
         }
         category.setName(categoryDto.getName());
-        return categoryMapper.toCategoryDto(categoryRepository.save(category));
+        Category saved = categoryRepository.save(category);
+        //Название категории входит в карточки событий и в события собранных подборок
+        publishedEventCache.evictAll();
+        compilationCache.evictAll();
+        return categoryMapper.toCategoryDto(saved);
     }
 }
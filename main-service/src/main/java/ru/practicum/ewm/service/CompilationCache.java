@@ -0,0 +1,60 @@
+package ru.practicum.ewm.service;
+
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.dto.CompilationDto;
+import ru.practicum.ewm.repository.CompilationRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+//Кеш собранных подборок (CompilationDto по id). В подборке - события с категориями и последними
+//комментариями, поэтому она сбрасывается при изменении самой подборки, входящих в неё событий, их
+//комментариев и категорий; счётчики просмотров и подтверждённых заявок обновляются не реже expireAfterWrite.
+//Подборка, собранная по данным, прочитанным до сброса, в кеш не кладётся
+@Component
+public class CompilationCache {
+    public static final String CACHE = "compilations";
+
+    private final GenerationGuardedCache cache;
+    private final CompilationRepository compilationRepository;
+
+    public CompilationCache(CacheManager cacheManager, CompilationRepository compilationRepository) {
+        this.cache = new GenerationGuardedCache(cacheManager, CACHE);
+        this.compilationRepository = compilationRepository;
+    }
+
+    public CompilationDto get(Long compId) {
+        return cache.get(compId, CompilationDto.class);
+    }
+
+    //Номер последнего сброса: запоминается перед чтением данных подборок и передаётся в putAll
+    public long generation() {
+        return cache.generation();
+    }
+
+    //Подборки, собранные по данным, прочитанным после generation(); если с тех пор был сброс, они не кешируются
+    public void putAll(Collection<CompilationDto> compilations, long readGeneration) {
+        for (CompilationDto compilation : compilations) {
+            cache.put(compilation.getId(), compilation, readGeneration);
+        }
+    }
+
+    //Сброс после фиксации изменения подборки
+    public void evict(Long compId) {
+        cache.evictAfterCommit(List.of(compId));
+    }
+
+    //Сброс после фиксации изменения события или его комментариев: подборки ищутся в транзакции изменения
+    public void evictContaining(Long eventId) {
+        List<Long> compilations = compilationRepository.findIdsByEventId(eventId);
+        if (!compilations.isEmpty()) {
+            cache.evictAfterCommit(compilations);
+        }
+    }
+
+    //Сброс всех подборок, например после переименования категории
+    public void evictAll() {
+        cache.clearAfterCommit();
+    }
+}
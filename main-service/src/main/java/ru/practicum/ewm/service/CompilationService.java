@@ -8,18 +8,26 @@ import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.ewm.dto.CompilationDto;
+import ru.practicum.ewm.dto.EventShortDto;
 import ru.practicum.ewm.dto.NewCompilationDto;
 import ru.practicum.ewm.dto.UpdateCompilationRequest;
 import ru.practicum.ewm.exception.ValidationException;
 import ru.practicum.ewm.mapper.CompilationMapper;
+import ru.practicum.ewm.mapper.EventMapper;
 import ru.practicum.ewm.model.Compilation;
 import ru.practicum.ewm.model.Event;
+import ru.practicum.ewm.model.EventShortView;
 import ru.practicum.ewm.repository.CompilationRepository;
 import ru.practicum.ewm.repository.EventRepository;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -29,6 +37,9 @@ public class CompilationService {
     private final CompilationRepository compilationRepository;
     private final CompilationMapper compilationMapper;
     private final EventRepository eventRepository;
+    private final EventMapper eventMapper;
+    private final EventEnricher eventEnricher;
+    private final CompilationCache compilationCache;
 
     @Transactional
     public CompilationDto saveCompilation(NewCompilationDto newCompilationDto) {
@@ -47,10 +58,13 @@ public class CompilationService {
                 .build();
 
         Compilation savedCompilation = compilationRepository.save(compilation);
-        return compilationMapper.toCompilationDto(savedCompilation);
+        return toCompilationDtos(List.of(savedCompilation)).getFirst();
     }
 
+    //Подборки страницы берутся из кеша, недостающие собираются вместе: события всех таких подборок
+    //загружаются одним запросом с уже посчитанными просмотрами и подтверждёнными заявками
     public List<CompilationDto> getCompilations(Boolean pinned, int from, int size) {
+        long generation = compilationCache.generation();
         Pageable pageable = PageRequest.of(from / size, size);
         Page<Compilation> compilations;
 
@@ -60,16 +74,37 @@ public class CompilationService {
             compilations = compilationRepository.findByPinned(pinned, pageable);
         }
 
+        Map<Long, CompilationDto> dtos = new HashMap<>();
+        List<Compilation> missing = new ArrayList<>();
+        for (Compilation compilation : compilations) {
+            CompilationDto cached = compilationCache.get(compilation.getId());
+            if (cached == null) {
+                missing.add(compilation);
+            } else {
+                dtos.put(compilation.getId(), cached);
+            }
+        }
+        List<CompilationDto> loaded = toCompilationDtos(missing);
+        compilationCache.putAll(loaded, generation);
+        loaded.forEach(dto -> dtos.put(dto.getId(), dto));
+
         return compilations.stream()
-                .map(compilationMapper::toCompilationDto)
+                .map(compilation -> dtos.get(compilation.getId()))
                 .collect(Collectors.toList());
     }
 
     public CompilationDto getCompilationById(Long compId) {
+        long generation = compilationCache.generation();
+        CompilationDto cached = compilationCache.get(compId);
+        if (cached != null) {
+            return cached;
+        }
         Compilation compilation = compilationRepository.findById(compId)
                 .orElseThrow(() -> new ValidationException("Подборка с id=" + compId + " не найдена",
                         HttpStatus.NOT_FOUND));
-        return compilationMapper.toCompilationDto(compilation);
+        CompilationDto dto = toCompilationDtos(List.of(compilation)).getFirst();
+        compilationCache.putAll(List.of(dto), generation);
+        return dto;
     }
 
     @Transactional
@@ -78,6 +113,7 @@ public class CompilationService {
             throw new ValidationException("Подборка с id=" + compId + " не найдена", HttpStatus.NOT_FOUND);
         }
         compilationRepository.deleteById(compId);
+        compilationCache.evict(compId);
     }
 
 
@@ -99,6 +135,42 @@ public class CompilationService {
         }
 
         Compilation updatedCompilation = compilationRepository.save(compilation);
-        return compilationMapper.toCompilationDto(updatedCompilation);
+        compilationCache.evict(compId);
+        return toCompilationDtos(List.of(updatedCompilation)).getFirst();
+    }
+
+    //DTO подборок в том же порядке: связи подборок с событиями и краткие представления событий
+    //читаются двумя запросами на все подборки сразу, просмотры и комментарии событий - через EventEnricher
+    private List<CompilationDto> toCompilationDtos(List<Compilation> compilations) {
+        if (compilations.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, List<Long>> eventIds = new HashMap<>();
+        compilations.forEach(compilation -> eventIds.put(compilation.getId(), new ArrayList<>()));
+        for (Object[] row : compilationRepository.findEventIdsByCompilationIds(eventIds.keySet())) {
+            eventIds.get((Long) row[0]).add((Long) row[1]);
+        }
+
+        Set<Long> allEventIds = eventIds.values().stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toSet());
+        List<EventShortView> eventViews = allEventIds.isEmpty() ? List.of() :
+                eventRepository.findShortByIdIn(allEventIds);
+        Map<Long, EventEnricher.Enrichment> enrichments = eventEnricher.enrich(
+                eventViews.stream().map(EventEnricher.Source::of).toList());
+        Map<Long, EventShortDto> events = new HashMap<>();
+        for (EventShortView eventView : eventViews) {
+            EventShortDto dto = eventMapper.toEventShortDto(eventView);
+            enrichments.get(eventView.id()).applyTo(dto);
+            events.put(eventView.id(), dto);
+        }
+
+        return compilations.stream()
+                .map(compilation -> compilationMapper.toCompilationDto(compilation,
+                        eventIds.get(compilation.getId()).stream()
+                                .map(events::get)
+                                .filter(Objects::nonNull)
+                                .collect(Collectors.toCollection(LinkedHashSet::new))))
+                .collect(Collectors.toList());
     }
 }
\ No newline at end of file
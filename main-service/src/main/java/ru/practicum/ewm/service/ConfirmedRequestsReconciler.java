@@ -0,0 +1,74 @@
+package ru.practicum.ewm.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ewm.repository.EventRepository;
+
+//Сверка счётчика подтверждённых заявок в events с таблицей заявок: заполняет счётчик у событий,
+//созданных до его появления, и исправляет расхождения, если заявки менялись в обход сервиса.
+//Выполняется по расписанию порциями событий по id, каждая порция - в своей короткой транзакции
+@Slf4j
+@Component
+public class ConfirmedRequestsReconciler {
+    private final EventRepository eventRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    //Число событий в одной транзакции сверки
+    @Value("${ewm.events.confirmed-requests.reconcile-batch-size:1000}")
+    private int batchSize;
+
+    //Сверка при старте - только при переходе базы со схемы без счётчика, а не при каждом старте каждого экземпляра
+    @Value("${ewm.events.confirmed-requests.reconcile-on-startup:false}")
+    private boolean reconcileOnStartup;
+
+    public ConfirmedRequestsReconciler(EventRepository eventRepository, PlatformTransactionManager transactionManager) {
+        this.eventRepository = eventRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        //Подсчёт и запись в одном снимке: если счётчик события параллельно изменила подтверждённая заявка,
+        //сверка порции откатывается с ошибкой сериализации вместо записи устаревшего значения
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        if (reconcileOnStartup) {
+            reconcile();
+        }
+    }
+
+    @Scheduled(cron = "${ewm.events.confirmed-requests.reconcile-cron:0 30 3 * * *}")
+    public void reconcile() {
+        Long maxId = eventRepository.findMaxId();
+        if (maxId == null) {
+            return;
+        }
+        int repaired = 0;
+        int postponed = 0;
+        for (long afterId = 0; afterId < maxId; afterId += batchSize) {
+            long from = afterId;
+            try {
+                Integer batch = transactionTemplate.execute(status ->
+                        eventRepository.reconcileConfirmedRequests(from, from + batchSize));
+                repaired += batch == null ? 0 : batch;
+            } catch (ConcurrencyFailureException e) {
+                //Порция со счётчиком, изменённым параллельно, сверяется при следующем запуске
+                postponed++;
+            }
+        }
+        if (repaired > 0) {
+            log.warn("Исправлен счётчик подтверждённых заявок у {} событий", repaired);
+        }
+        if (postponed > 0) {
+            log.info("Сверка счётчика подтверждённых заявок отложена до следующего запуска для {} порций событий",
+                    postponed);
+        }
+    }
+}
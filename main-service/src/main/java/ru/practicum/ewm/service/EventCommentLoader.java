@@ -0,0 +1,55 @@
+package ru.practicum.ewm.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.dto.CommentEventDto;
+import ru.practicum.ewm.mapper.CommentMapper;
+import ru.practicum.ewm.model.Comment;
+import ru.practicum.ewm.repository.CommentRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//Загрузка превью комментариев для страницы событий: последние комментарии и их общее число
+//по всем событиям страницы двумя запросами вместо запроса на каждое событие
+@Component
+@RequiredArgsConstructor
+public class EventCommentLoader {
+    private final CommentRepository commentRepository;
+    private final CommentMapper commentMapper;
+
+    //Сколько последних комментариев события попадает в списки событий
+    @Value("${ewm.events.comment-preview-size:3}")
+    private int previewSize;
+
+    public record Preview(List<CommentEventDto> comments, long count) {
+    }
+
+    //Превью по id события; для событий без комментариев - пустой список и 0
+    public Map<Long, Preview> loadPreviews(Collection<Long> eventIds) {
+        Map<Long, Long> counts = new HashMap<>();
+        Map<Long, List<CommentEventDto>> comments = new HashMap<>();
+        eventIds.forEach(eventId -> comments.put(eventId, new ArrayList<>()));
+        if (!eventIds.isEmpty() && previewSize > 0) {
+            List<Long> commentIds = new ArrayList<>();
+            for (Object[] row : commentRepository.findLatestCommentIdsForEvents(eventIds, previewSize)) {
+                commentIds.add(((Number) row[0]).longValue());
+                counts.put(((Number) row[1]).longValue(), ((Number) row[2]).longValue());
+            }
+            if (!commentIds.isEmpty()) {
+                for (Comment comment : commentRepository.findAllWithAuthorByIdIn(commentIds)) {
+                    comments.get(comment.getEvent().getId()).add(commentMapper.toCommentEventDto(comment));
+                }
+            }
+        }
+
+        Map<Long, Preview> previews = new HashMap<>();
+        comments.forEach((eventId, eventComments) ->
+                previews.put(eventId, new Preview(eventComments, counts.getOrDefault(eventId, 0L))));
+        return previews;
+    }
+}
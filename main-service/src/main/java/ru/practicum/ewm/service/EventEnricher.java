@@ -0,0 +1,124 @@
+package ru.practicum.ewm.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.StatsClient;
+import ru.practicum.ewm.client.StatsCircuitBreaker;
+import ru.practicum.ewm.dto.CommentEventDto;
+import ru.practicum.ewm.dto.EventShortDto;
+import ru.practicum.ewm.dto.StatsRequest;
+import ru.practicum.ewm.dto.ViewStats;
+import ru.practicum.ewm.model.Event;
+import ru.practicum.ewm.model.EventShortView;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+//Дополнение страницы событий просмотрами и превью комментариев. Запрос к сервису статистики выполняется
+//на виртуальном потоке, пока превью комментариев загружаются в вызывающем потоке - в его транзакции и на уже
+//занятом им соединении, поэтому задержка сервиса статистики не складывается с задержкой базы, а запрос страницы
+//не берёт из пула второе соединение. Без ответа сервиса статистики за таймаут или при ошибке события получают
+//просмотры, синхронизированные в events.views. Подтверждённые заявки уже хранятся в самом событии
+@Slf4j
+@Component
+public class EventEnricher {
+    private final StatsClient statsClient;
+    private final EventCommentLoader eventCommentLoader;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    //Сколько ждать ответа сервиса статистики
+    @Value("${ewm.events.enrichment.views-timeout:PT0.5S}")
+    private Duration viewsTimeout;
+
+    public EventEnricher(StatsClient statsClient, EventCommentLoader eventCommentLoader) {
+        this.statsClient = statsClient;
+        this.eventCommentLoader = eventCommentLoader;
+    }
+
+    //Событие страницы: окно просмотров начинается с публикации, syncedViews - значение по умолчанию
+    public record Source(Long eventId, LocalDateTime publishedOn, long syncedViews) {
+        public static Source of(Event event) {
+            return new Source(event.getId(), event.getPublishedOn(), event.getViews());
+        }
+
+        public static Source of(EventShortView event) {
+            return new Source(event.id(), event.publishedOn(), event.views());
+        }
+    }
+
+    public record Enrichment(long views, List<CommentEventDto> comments, long commentCount) {
+        public void applyTo(EventShortDto dto) {
+            dto.setViews(views);
+            dto.setComments(comments);
+            dto.setCommentCount(commentCount);
+        }
+    }
+
+    //Дополнения по id события для каждого события страницы
+    public Map<Long, Enrichment> enrich(Collection<Source> sources) {
+        if (sources.isEmpty()) {
+            return Map.of();
+        }
+        List<Long> eventIds = sources.stream().map(Source::eventId).toList();
+        CompletableFuture<Map<String, Long>> views = CompletableFuture.supplyAsync(() -> loadViews(sources), executor)
+                .orTimeout(viewsTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    log.warn("Сервис статистики не ответил, используются просмотры из events.views: {}",
+                            e.toString());
+                    return null;
+                });
+        Map<Long, EventCommentLoader.Preview> previews = eventCommentLoader.loadPreviews(eventIds);
+
+        Map<String, Long> viewStats = views.join();
+        //Без ответа сервиса статистики (таймаут, разомкнутый выключатель) - просмотры из events.views;
+        //если сервис ответил, событие без строки в ответе просмотров не имеет
+        boolean synced = viewStats == null || statsClient.statsBreakerState() != StatsCircuitBreaker.State.CLOSED;
+        Map<Long, Enrichment> enrichments = new HashMap<>();
+        for (Source source : sources) {
+            Long hits = viewStats == null ? null : viewStats.get("/events/" + source.eventId());
+            long eventViews = hits != null ? hits : synced ? source.syncedViews() : 0;
+            EventCommentLoader.Preview preview = previews.get(source.eventId());
+            enrichments.put(source.eventId(), preview == null
+                    ? new Enrichment(eventViews, List.of(), 0)
+                    : new Enrichment(eventViews, preview.comments(), preview.count()));
+        }
+        return enrichments;
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    //Уникальные просмотры с момента публикации; неопубликованные события в сервис статистики не запрашиваются
+    private Map<String, Long> loadViews(Collection<Source> sources) {
+        LocalDateTime now = LocalDateTime.now();
+        List<StatsRequest> requests = sources.stream()
+                .filter(source -> source.publishedOn() != null)
+                .map(source -> StatsRequest.builder()
+                        .uris(Set.of("/events/" + source.eventId()))
+                        .start(source.publishedOn())
+                        .end(now)
+                        .unique(true)
+                        .build())
+                .toList();
+        Map<String, Long> views = new HashMap<>();
+        if (!requests.isEmpty()) {
+            for (ViewStats stats : statsClient.getStats(requests)) {
+                views.merge(stats.getUri(), stats.getHits(), Long::sum);
+            }
+        }
+        return views;
+    }
+}
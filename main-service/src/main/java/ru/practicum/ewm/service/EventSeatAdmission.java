@@ -0,0 +1,36 @@
+package ru.practicum.ewm.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewm.repository.EventRepository;
+
+//Допуск участников в пределах лимита события. Места занимаются условным UPDATE счётчика
+//подтверждённых заявок, поэтому лимит не превышается при параллельных заявках, а блокируется
+//только строка своего события: заявки на разные события друг друга не ждут.
+//Вызывается внутри транзакции, меняющей статусы заявок: при её откате занятые места освобождаются,
+//а блокировка строки держится до фиксации, поэтому занимать места лучше последним шагом
+@Component
+@RequiredArgsConstructor
+public class EventSeatAdmission {
+    private final EventRepository eventRepository;
+
+    //Занимает места, если они есть; false - лимит участников исчерпан
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean tryReserve(Long eventId, int seats) {
+        return eventRepository.reserveSeats(eventId, seats) > 0;
+    }
+
+    //Занимает столько из seats мест, сколько осталось до лимита; возвращает число занятых мест
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int reserveAvailable(Long eventId, int seats) {
+        Long reserved = eventRepository.reserveAvailableSeats(eventId, seats);
+        return reserved == null ? 0 : reserved.intValue();
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(Long eventId, int seats) {
+        eventRepository.addConfirmedRequests(eventId, -seats);
+    }
+}
@@ -0,0 +1,115 @@
+package ru.practicum.ewm.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.enums.TextSearchMode;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+
+//Выбор способа текстового поиска событий. Полнотекстовый поиск включается на PostgreSQL, если в базе есть
+//функции из event-search-postgresql.sql (их создаёт оператор); иначе, а также на других базах (H2) и при
+//ошибке скрипта остаётся поиск по подстроке
+@Slf4j
+@Component
+public class EventTextSearch implements SmartInitializingSingleton {
+    private static final String POSTGRESQL = "PostgreSQL";
+    private static final String SCHEMA_SCRIPT = "event-search-postgresql.sql";
+
+    private final DataSource dataSource;
+
+    //Полнотекстовый поиск с ранжированием по релевантности, если база его поддерживает
+    @Value("${ewm.events.search.full-text:true}")
+    private boolean fullTextEnabled;
+
+    //Дополнительно к полнотекстовому поиску находить события по подстроке (триграммные индексы)
+    @Value("${ewm.events.search.substring-fallback:true}")
+    private boolean substringFallback;
+
+    //Выполнять event-search-postgresql.sql при старте вместо оператора
+    @Value("${ewm.events.search.apply-schema:false}")
+    private boolean applySchema;
+
+    private volatile TextSearchMode mode = TextSearchMode.SUBSTRING;
+
+    public EventTextSearch(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public TextSearchMode mode() {
+        return mode;
+    }
+
+    //Поддерживается ли сортировка по релевантности
+    public boolean supportsRelevance() {
+        return mode != TextSearchMode.SUBSTRING;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        mode = TextSearchMode.SUBSTRING;
+        if (!fullTextEnabled || !isPostgreSql()) {
+            log.info("Текстовый поиск событий выполняется по подстроке");
+            return;
+        }
+        if (applySchema && !applySchemaScript()) {
+            return;
+        }
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        if (!searchFunctionsExist(jdbcTemplate)) {
+            log.warn("Функции полнотекстового поиска не созданы ({}), поиск событий выполняется по подстроке",
+                    SCHEMA_SCRIPT);
+            return;
+        }
+        if (!searchIndexesValid(jdbcTemplate)) {
+            log.warn("Индексы текстового поиска отсутствуют или невалидны ({}), поиск выполняется без них",
+                    SCHEMA_SCRIPT);
+        }
+        mode = substringFallback ? TextSearchMode.FULL_TEXT_OR_SUBSTRING : TextSearchMode.FULL_TEXT;
+        log.info("Текстовый поиск событий: {}", mode);
+    }
+
+    //Ошибка скрипта (нет прав, конфликт объектов) не мешает старту: поиск остаётся по подстроке
+    private boolean applySchemaScript() {
+        try {
+            new ResourceDatabasePopulator(new ClassPathResource(SCHEMA_SCRIPT)).execute(dataSource);
+            return true;
+        } catch (DataAccessException e) {
+            log.warn("Не удалось выполнить {}, поиск событий выполняется по подстроке: {}", SCHEMA_SCRIPT,
+                    e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean searchFunctionsExist(JdbcTemplate jdbcTemplate) {
+        Integer functions = jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT proname) FROM pg_proc " +
+                "WHERE proname IN ('event_search_matches', 'event_search_rank') AND pg_function_is_visible(oid)",
+                Integer.class);
+        return functions != null && functions == 2;
+    }
+
+    private boolean searchIndexesValid(JdbcTemplate jdbcTemplate) {
+        Integer indexes = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM pg_index i " +
+                "JOIN pg_class c ON c.oid = i.indexrelid WHERE i.indisvalid AND c.relname IN " +
+                "('events_search_idx', 'events_annotation_trgm_idx', 'events_description_trgm_idx')", Integer.class);
+        return indexes != null && indexes == 3;
+    }
+
+    private boolean isPostgreSql() {
+        try {
+            String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+            return POSTGRESQL.equals(product);
+        } catch (MetaDataAccessException e) {
+            log.warn("Не удалось определить тип базы данных: {}", e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ru.practicum.ewm.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.StatsClient;
+import ru.practicum.ewm.dto.StatsRequest;
+import ru.practicum.ewm.dto.ViewStats;
+import ru.practicum.ewm.enums.EventState;
+import ru.practicum.ewm.repository.EventRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+//Копирование числа уникальных просмотров опубликованных событий из сервиса статистики в events.views.
+//По этой колонке с индексом выполняется сортировка по популярности с пагинацией на стороне базы
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EventViewsSynchronizer {
+    private static final String UPDATE_VIEWS = "UPDATE events SET views = ? WHERE id = ? AND views <> ?";
+
+    private final EventRepository eventRepository;
+    private final StatsClient statsClient;
+    private final JdbcTemplate jdbcTemplate;
+
+    //Сколько событий запрашивается у сервиса статистики за раз
+    @Value("${ewm.events.views.sync-batch-size:500}")
+    private int batchSize;
+
+    //Обновляются только события, для которых сервис статистики вернул данные: при его недоступности
+    //накопленные значения не сбрасываются
+    @Scheduled(fixedDelayString = "${ewm.events.views.sync-interval:PT1M}")
+    public void synchronize() {
+        long afterId = 0;
+        int updated = 0;
+        while (true) {
+            List<Object[]> publications = eventRepository.findPublicationsAfter(EventState.PUBLISHED, afterId,
+                    PageRequest.of(0, batchSize));
+            if (publications.isEmpty()) {
+                break;
+            }
+            LocalDateTime now = LocalDateTime.now();
+            List<StatsRequest> requests = new ArrayList<>(publications.size());
+            for (Object[] publication : publications) {
+                Long eventId = (Long) publication[0];
+                LocalDateTime publishedOn = (LocalDateTime) publication[1];
+                requests.add(StatsRequest.builder()
+                        .uris(Set.of("/events/" + eventId))
+                        .start(publishedOn == null ? now : publishedOn)
+                        .end(now)
+                        .unique(true)
+                        .build());
+                afterId = eventId;
+            }
+            List<Object[]> rows = new ArrayList<>();
+            for (ViewStats stats : statsClient.getStats(requests)) {
+                Long eventId = eventId(stats.getUri());
+                if (eventId != null) {
+                    rows.add(new Object[]{stats.getHits(), eventId, stats.getHits()});
+                }
+            }
+            for (int count : jdbcTemplate.batchUpdate(UPDATE_VIEWS, rows)) {
+                updated += Math.max(count, 0);
+            }
+        }
+        log.debug("Синхронизированы просмотры {} событий", updated);
+    }
+
+    private static Long eventId(String uri) {
+        if (uri == null || !uri.startsWith("/events/")) {
+            return null;
+        }
+        try {
+            return Long.parseLong(uri.substring("/events/".length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
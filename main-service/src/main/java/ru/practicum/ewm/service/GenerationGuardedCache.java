@@ -0,0 +1,57 @@
+package ru.practicum.ewm.service;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Кеш Caffeine, в который не попадают значения, собранные по данным, прочитанным до сброса. Перед чтением
+//данных запоминается номер сброса (generation), при записи он сверяется с текущим: если с начала чтения был
+//сброс, значение отдаётся вызывающему, но не кешируется - иначе чтение, начатое до изменения, вернуло бы
+//в кеш старую версию уже после сброса. Значение собирается без блокировки ключа (запросы к базе под
+//блокировкой кеша занимали бы поток-носитель виртуального потока), под ней выполняются только проверка и запись.
+//Сброс выполняется после фиксации изменяющей транзакции, см. CacheEviction
+final class GenerationGuardedCache {
+    private final Cache cache;
+    private final AtomicLong generation = new AtomicLong();
+
+    GenerationGuardedCache(CacheManager cacheManager, String name) {
+        this.cache = cacheManager.getCache(name);
+    }
+
+    <T> T get(Object key, Class<T> type) {
+        return cache.get(key, type);
+    }
+
+    //Номер последнего сброса; запоминается перед чтением данных для put
+    long generation() {
+        return generation.get();
+    }
+
+    //Запись, если с readGeneration не было сброса. Проверка и запись выполняются под блокировкой ключа,
+    //которую ждёт и сброс ключа
+    void put(Object key, Object value, long readGeneration) {
+        nativeCache().compute(key, (k, current) -> generation.get() == readGeneration ? value : current);
+    }
+
+    void evictAfterCommit(Collection<?> keys) {
+        CacheEviction.afterCommit(() -> {
+            generation.incrementAndGet();
+            keys.forEach(cache::evict);
+        });
+    }
+
+    void clearAfterCommit() {
+        CacheEviction.afterCommit(() -> {
+            generation.incrementAndGet();
+            cache.clear();
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private ConcurrentMap<Object, Object> nativeCache() {
+        return ((com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache.getNativeCache()).asMap();
+    }
+}
@@ -28,6 +28,7 @@ public class ParticipationRequestService {
     private final ParticipationRequestRepository participationRequestRepository;
     private final ParticipationRequestMapper participationRequestMapper;
     private final EventRepository eventRepository;
+    private final EventSeatAdmission eventSeatAdmission;
 
     @Transactional
     public ParticipationRequestDto createRequest(Long userId, Long eventId) {
@@ -53,8 +54,7 @@ public class ParticipationRequestService {
             throw new ValidationException("Запрос " + eventId + "на участие уже существует", HttpStatus.CONFLICT);
         }
 
-        long confirmedRequests = participationRequestRepository.countByEventAndStatus(eventId, RequestStatus.CONFIRMED);
-        if (event.getParticipantLimit() > 0 && confirmedRequests >= event.getParticipantLimit()) {
+        if (event.getParticipantLimit() > 0 && event.getConfirmedRequests() >= event.getParticipantLimit()) {
             throw new ValidationException("Достигнуто максимальное количество участников для события c id: " + eventId,
                     HttpStatus.CONFLICT);
         }
@@ -71,6 +71,11 @@ public class ParticipationRequestService {
         }
 
         ParticipationRequest savedRequest = participationRequestRepository.save(request);
+        //Проверка выше лишь отсекает заведомо лишние заявки; окончательно место занимается атомарно
+        if (savedRequest.getStatus() == RequestStatus.CONFIRMED && !eventSeatAdmission.tryReserve(eventId, 1)) {
+            throw new ValidationException("Достигнуто максимальное количество участников для события c id: " + eventId,
+                    HttpStatus.CONFLICT);
+        }
 
         return ParticipationRequestMapper.toParticipationRequestDto(savedRequest);
     }
@@ -86,9 +91,12 @@ public class ParticipationRequestService {
             throw new ValidationException("Только инициатор может управлять заявками на участие", HttpStatus.FORBIDDEN);
         }
 
-        List<ParticipationRequest> requests = participationRequestRepository.findAllById(request.getRequestIds());
-        if (requests.isEmpty()) {
-            throw new ValidationException("Заявки не найдены", HttpStatus.NOT_FOUND);
+        //Заявки выбираются только среди заявок этого события: места резервируются на событии eventId
+        List<ParticipationRequest> requests = participationRequestRepository.findAllForUpdate(request.getRequestIds(),
+                eventId);
+        if (requests.isEmpty() || requests.size() != request.getRequestIds().stream().distinct().count()) {
+            throw new ValidationException("Заявки на участие в событии с id " + eventId + " не найдены",
+                    HttpStatus.NOT_FOUND);
         }
 
         for (ParticipationRequest participationRequest : requests) {
@@ -97,24 +105,21 @@ public class ParticipationRequestService {
             }
         }
 
-        long confirmedRequests = participationRequestRepository.countByEventAndStatus(eventId, RequestStatus.CONFIRMED);
-        if (event.getParticipantLimit() > 0 && confirmedRequests >= event.getParticipantLimit()) {
+        if (event.getParticipantLimit() > 0 && event.getConfirmedRequests() >= event.getParticipantLimit()) {
             throw new ValidationException("Достигнут лимит заявок на участие", HttpStatus.CONFLICT);
         }
 
         List<ParticipationRequest> confirmed = new ArrayList<>();
         List<ParticipationRequest> rejected = new ArrayList<>();
 
+        //Места для всех подтверждаемых заявок занимаются одним запросом; не поместившиеся в лимит отклоняются
+        int seats = request.getStatus() == RequestStatus.CONFIRMED
+                ? eventSeatAdmission.reserveAvailable(eventId, requests.size())
+                : 0;
         for (ParticipationRequest participationRequest : requests) {
-            if (request.getStatus() == RequestStatus.CONFIRMED) {
-                if (confirmedRequests < event.getParticipantLimit() || event.getParticipantLimit() == 0) {
-                    participationRequest.setStatus(RequestStatus.CONFIRMED);
-                    confirmed.add(participationRequest);
-                    confirmedRequests++;
-                } else {
-                    participationRequest.setStatus(RequestStatus.REJECTED);
-                    rejected.add(participationRequest);
-                }
+            if (confirmed.size() < seats) {
+                participationRequest.setStatus(RequestStatus.CONFIRMED);
+                confirmed.add(participationRequest);
             } else {
                 participationRequest.setStatus(RequestStatus.REJECTED);
                 rejected.add(participationRequest);
@@ -145,12 +150,20 @@ public class ParticipationRequestService {
             throw new ValidationException("Пользователь с id=" + userId + " не найден.", HttpStatus.NOT_FOUND);
         }
 
-        ParticipationRequest participationRequest = participationRequestRepository.findById(requestId)
+        ParticipationRequest participationRequest = participationRequestRepository.findForUpdate(requestId)
                 .orElseThrow(() -> new ValidationException("Запрос на участие с id=" + requestId + " не найден.", HttpStatus.NOT_FOUND));
+        //Отменить заявку, в том числе освободив её место, может только её автор
+        if (!participationRequest.getRequester().equals(userId)) {
+            throw new ValidationException("Запрос на участие с id=" + requestId + " не найден.", HttpStatus.NOT_FOUND);
+        }
 
+        RequestStatus previousStatus = participationRequest.getStatus();
         participationRequest.setStatus(RequestStatus.CANCELED);
 
         participationRequestRepository.save(participationRequest);
+        if (previousStatus == RequestStatus.CONFIRMED) {
+            eventSeatAdmission.release(participationRequest.getEvent(), 1);
+        }
 
         return ParticipationRequestMapper.toParticipationRequestDto(participationRequest);
     }
@@ -24,6 +24,8 @@ public class PrivateCommentService {
     private final UserRepository userRepository;
     private final EventRepository eventRepository;
     private final CommentMapper commentMapper;
+    private final PublishedEventCache publishedEventCache;
+    private final CompilationCache compilationCache;
 
     @Transactional
     public CommentDto addComment(Long userId, Long eventId, NewCommentDto newCommentDto) {
@@ -43,9 +45,13 @@ public class PrivateCommentService {
                 .updatedAt(LocalDateTime.now())
                 .build();
 
-        return commentMapper.toCommentDto(commentRepository.save(comment));
+        Comment saved = commentRepository.save(comment);
+        publishedEventCache.evict(saved.getEvent().getId());
+        compilationCache.evictContaining(saved.getEvent().getId());
+        return commentMapper.toCommentDto(saved);
     }
 
+    @Transactional(readOnly = true)
     public CommentDto getComment(Long userId, Long commentId) {
         Comment comment = commentRepository.findById(commentId)
                 .orElseThrow(() -> new ValidationException("Комментарий с id " + commentId + " не найден",
@@ -54,6 +60,7 @@ public class PrivateCommentService {
         return commentMapper.toCommentDto(comment);
     }
 
+    @Transactional
     public CommentDto updateComment(Long userId, Long commentId, NewCommentDto newCommentDto) {
         Comment comment = commentRepository.findById(commentId)
                 .orElseThrow(() -> new ValidationException("Комментарий с id " + commentId + " не найден",
@@ -66,7 +73,10 @@ public class PrivateCommentService {
         comment.setCommentText(newCommentDto.getCommentText());
         comment.setUpdatedAt(LocalDateTime.now());
 
-        return commentMapper.toCommentDto(commentRepository.save(comment));
+        Comment saved = commentRepository.save(comment);
+        publishedEventCache.evict(saved.getEvent().getId());
+        compilationCache.evictContaining(saved.getEvent().getId());
+        return commentMapper.toCommentDto(saved);
     }
 
 
@@ -82,5 +92,7 @@ public class PrivateCommentService {
         }
 
         commentRepository.deleteById(commentId);
+        publishedEventCache.evict(comment.getEvent().getId());
+        compilationCache.evictContaining(comment.getEvent().getId());
     }
 }
@@ -10,13 +10,13 @@ import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.ewm.StatsClient;
 import ru.practicum.ewm.dto.*;
 import ru.practicum.ewm.enums.EventState;
-import ru.practicum.ewm.enums.RequestStatus;
 import ru.practicum.ewm.enums.UserStateAction;
 import ru.practicum.ewm.exception.ValidationException;
 import ru.practicum.ewm.mapper.CommentMapper;
 import ru.practicum.ewm.mapper.EventMapper;
 import ru.practicum.ewm.model.Category;
 import ru.practicum.ewm.model.Event;
+import ru.practicum.ewm.model.EventShortView;
 import ru.practicum.ewm.model.User;
 import ru.practicum.ewm.repository.*;
 
@@ -36,10 +36,11 @@ public class PrivateEventService {
     private final EventMapper eventMapper;
     private final CategoryRepository categoryRepository;
     private final UserRepository userRepository;
-    private final ParticipationRequestRepository participationRequestRepository;
     private final StatsClient statsClient;
     private final CommentRepository commentRepository;
     private final CommentMapper commentMapper;
+    private final EventEnricher eventEnricher;
+    private final CompilationCache compilationCache;
 
     private static final Map<UserStateAction, EventState> statusMap = Map.of(
             UserStateAction.CANCEL_REVIEW, EventState.CANCELED,
@@ -114,8 +115,9 @@ public class PrivateEventService {
                 .orElse(EventState.PENDING));
 
         Event updated = eventRepository.save(event);
+        //Неопубликованное событие тоже может входить в подборку
+        compilationCache.evictContaining(eventId);
         EventFullDto dto = eventMapper.toEventFullDto(updated);
-        dto.setConfirmedRequests(participationRequestRepository.countByEventAndStatus(eventId, RequestStatus.CONFIRMED));
         return dto;
     }
 
@@ -127,33 +129,16 @@ public class PrivateEventService {
             throw new ValidationException("Пользователь с id " + userId + " не найден", HttpStatus.NOT_FOUND);
         }
 
-        List<Event> events = eventRepository.findByInitiatorId(userId, pageable);
+        List<EventShortView> events = eventRepository.findShortByInitiatorId(userId, pageable);
         if (events.isEmpty()) return List.of();
 
-        // Считаем сколько заявок подтверждено
-        Map<Long, Long> confirmedRequestsMap = getconfirmedRequestsMap(events);
-
-        Map<String, Event> uriToEventMap = events.stream()
-                .collect(Collectors.toMap(e -> "/events/" + e.getId(), e -> e));
-
-        StatsRequest statsRequest = StatsRequest.builder()
-                .uris(uriToEventMap.keySet())
-                .unique(true)
-                .build();
-
-        List<ViewStats> stats = statsClient.getStats(List.of(statsRequest));
-
-        Map<String, Long> viewsMap = stats.stream()
-                .collect(Collectors.toMap(ViewStats::getUri, ViewStats::getHits));
+        Map<Long, EventEnricher.Enrichment> enrichments = eventEnricher.enrich(
+                events.stream().map(EventEnricher.Source::of).toList());
 
         return events.stream()
                 .map(event -> {
                     EventShortDto dto = eventMapper.toEventShortDto(event);
-                    dto.setConfirmedRequests(confirmedRequestsMap.getOrDefault(event.getId(), 0L));
-                    dto.setViews(viewsMap.getOrDefault("/events/" + event.getId(), 0L));
-                    List<CommentEventDto> commentEventDto = commentMapper
-                            .toCommentEventDto(commentRepository.findAllByEventId(event.getId()));
-                    dto.setComments(commentEventDto);
+                    enrichments.get(event.id()).applyTo(dto);
                     return dto;
                 }).collect(Collectors.toList());
     }
@@ -165,32 +150,26 @@ public class PrivateEventService {
                         "принадлежит пользователю id " + userId, HttpStatus.NOT_FOUND));
 
         EventFullDto eventFullDto = eventMapper.toEventFullDto(event);
-        eventFullDto.setConfirmedRequests(participationRequestRepository.countByEventAndStatus(eventId,
-                RequestStatus.CONFIRMED));
         List<CommentEventDto> commentEventDto = commentMapper
                 .toCommentEventDto(commentRepository.findAllByEventId(eventId));
         eventFullDto.setComments(commentEventDto);
-        StatsRequest statsRequest = StatsRequest.builder()
-                .uris(Set.of("/events/" + eventId))
-                .unique(true)
-                .build();
-        List<ViewStats> stats = statsClient.getStats(List.of(statsRequest));
-        eventFullDto.setViews(stats.isEmpty() ? 0L : stats.getFirst().getHits());
+        eventFullDto.setCommentCount(commentEventDto.size());
+        //Просмотры считаются с момента публикации, как и в карточке события; у неопубликованного их нет
+        if (event.getPublishedOn() != null) {
+            StatsRequest statsRequest = StatsRequest.builder()
+                    .uris(Set.of("/events/" + eventId))
+                    .start(event.getPublishedOn())
+                    .end(LocalDateTime.now())
+                    .unique(true)
+                    .build();
+            List<ViewStats> stats = statsClient.getStats(List.of(statsRequest));
+            eventFullDto.setViews(stats.isEmpty() ? 0L : stats.getFirst().getHits());
+        } else {
+            eventFullDto.setViews(0L);
+        }
         return eventFullDto;
     }
 
-    @Transactional(readOnly = true)
-    private Map<Long, Long> getconfirmedRequestsMap(List<Event> events) {
-        List<Long> eventIds = events.stream().map(Event::getId).toList();
-
-        return participationRequestRepository
-                .countConfirmedRequestsForEvents(eventIds).stream()
-                .collect(Collectors.toMap(
-                        row -> (Long) row[0],
-                        row -> (Long) row[1]
-                ));
-    }
-
     private <T> void updateField(T value, Consumer<T> setter) {
         if (value != null) setter.accept(value);
     }
@@ -31,6 +31,7 @@ public class PublicCommentService {
         return commentMapper.toCommentDto(comments);
     }
 
+    @Transactional(readOnly = true)
     public CommentDto getComment(Long commentId) {
         Comment comment = commentRepository.findById(commentId)
                 .orElseThrow(() -> new ValidationException("Комментарий с id " + commentId + " не найден",
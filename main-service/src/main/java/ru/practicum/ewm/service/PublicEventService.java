@@ -5,21 +5,23 @@ import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import ru.practicum.ewm.StatsClient;
+import ru.practicum.ewm.client.StatsCircuitBreaker;
 import ru.practicum.ewm.dto.*;
-import ru.practicum.ewm.enums.RequestStatus;
 import ru.practicum.ewm.exception.ValidationException;
 import ru.practicum.ewm.mapper.CommentMapper;
 import ru.practicum.ewm.mapper.EventMapper;
 import ru.practicum.ewm.model.Event;
+import ru.practicum.ewm.model.EventCounters;
+import ru.practicum.ewm.model.EventShortView;
 import ru.practicum.ewm.enums.EventSort;
 import ru.practicum.ewm.enums.EventState;
 import ru.practicum.ewm.repository.CommentRepository;
 import ru.practicum.ewm.repository.EventRepository;
-import ru.practicum.ewm.repository.ParticipationRequestRepository;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -31,16 +33,20 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class PublicEventService {
     private final EventRepository eventRepository;
-    private final ParticipationRequestRepository participationRequestRepository;
     private final StatsClient statsClient;
     private final EventMapper eventMapper;
     private final CommentRepository commentRepository;
     private final CommentMapper commentMapper;
+    private final EventEnricher eventEnricher;
+    private final EventTextSearch eventTextSearch;
+    private final PublishedEventCache publishedEventCache;
 
-    public List<EventShortDto> getPublishedEvents(String text, List<Long> categories, Boolean paid,
-                                               LocalDateTime rangeStart, LocalDateTime rangeEnd,
-                                               Boolean isAvailable, EventSort eventSort, int from, int size,
-                                                  HttpServletRequest request) {
+    //Первая страница и страницы по курсору after выбираются по ключу сортировки без OFFSET;
+    //для сортировки по релевантности курсор не поддерживается
+    public CursorPage<EventShortDto> getPublishedEvents(String text, List<Long> categories, Boolean paid,
+                                                        LocalDateTime rangeStart, LocalDateTime rangeEnd,
+                                                        Boolean isAvailable, EventSort eventSort, int from, int size,
+                                                        String after, HttpServletRequest request) {
 
         statsClient.sendHit(new EndpointHitDto("ExploreWithMe", request.getRequestURI(), request.getRemoteAddr(),
                 LocalDateTime.now()));
@@ -57,81 +63,95 @@ public class PublicEventService {
             rangeStart = LocalDateTime.now();
         }
 
-        Pageable pageable = PageRequest.of(from / size, size, getSort(eventSort));
+        String searchText = StringUtils.isNotBlank(text) ? text : null;
+        //Без полнотекстового поиска (или без текста) сортировка по релевантности заменяется сортировкой по дате
+        boolean byRelevance = eventSort == EventSort.RELEVANCE && searchText != null
+                && eventTextSearch.supportsRelevance();
+        if (byRelevance && after != null) {
+            throw new ValidationException("Курсор не поддерживается при сортировке по релевантности",
+                    HttpStatus.BAD_REQUEST);
+        }
 
-        List<Event> events = eventRepository.findWithFilters(null, List.of(EventState.PUBLISHED),
+        //Первая страница и страницы по курсору - по ключу сортировки (условие "после ключа" вместо OFFSET)
+        boolean keyset = !byRelevance && (after != null || from == 0);
+        Sort sort = byRelevance ? Sort.unsorted() : getSort(eventSort);
+        Pageable pageable = keyset ? PageRequest.of(0, size, sort) : PageRequest.of(from / size, size, sort);
+        Slice<EventShortView> slice = eventRepository.findShortWithFilters(List.of(EventState.PUBLISHED),
                 categories, rangeStart, rangeEnd, paid,
-                StringUtils.isNotBlank(text) ? text : null,
+                searchText, eventTextSearch.mode(), byRelevance,
+                keyset ? ScrollCursor.keys(after, sort, Event.class) : Map.of(),
                 pageable);
+        List<EventShortView> events = slice.getContent();
         if (events.isEmpty()) {
-            return List.of();
+            return new CursorPage<>(List.of(), null);
         }
+        String nextCursor = keyset && slice.hasNext() ? ScrollCursor.encode(events.getLast().sortKeys(sort)) : null;
 
-        List<Long> eventIds = events.stream().map(Event::getId).toList();
-
-        Map<Long, Long> confirmedRequests = participationRequestRepository.countConfirmedRequestsForEvents(eventIds)
-                .stream()
-                .collect(Collectors.toMap(
-                        row -> (Long) row[0],
-                        row -> (Long) row[1]
-                ));
-
-        Map<String, Event> uriToEventMap = events.stream()
-                .collect(Collectors.toMap(e -> "/events/" + e.getId(), e -> e));
-
-        StatsRequest statsRequest = StatsRequest.builder()
-                .uris(uriToEventMap.keySet())
-                .unique(true)
-                .build();
-
-        List<ViewStats> stats = statsClient.getStats(List.of(statsRequest));
-
-        Map<String, Long> viewsMap = stats.stream()
-                .collect(Collectors.toMap(ViewStats::getUri, ViewStats::getHits));
+        Map<Long, EventEnricher.Enrichment> enrichments = eventEnricher.enrich(
+                events.stream().map(EventEnricher.Source::of).toList());
 
-        return events.stream()
+        return new CursorPage<>(events.stream()
                 .filter(event -> !isAvailable ||
-                        confirmedRequests.getOrDefault(event.getId(), 0L) < event.getParticipantLimit())
+                        event.confirmedRequests() < event.participantLimit())
                 .map(event -> {
                     EventShortDto dto = eventMapper.toEventShortDto(event);
-                    dto.setConfirmedRequests(confirmedRequests.getOrDefault(event.getId(), 0L));
-                    dto.setViews(viewsMap.getOrDefault("/events/" + event.getId(), 0L));
-                    List<CommentEventDto> commentEventDto = commentMapper
-                            .toCommentEventDto(commentRepository.findAllByEventId(event.getId()));
-                    dto.setComments(commentEventDto);
+                    enrichments.get(event.id()).applyTo(dto);
                     return dto;
                 })
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()), nextCursor);
     }
 
+    //Карточка события берётся из кеша, при каждом чтении проверяется только публикация события
+    //и подставляются актуальные счётчики
     public EventFullDto getPublishedEventById(Long eventId, HttpServletRequest request) {
         statsClient.sendHit(new EndpointHitDto("ExploreWithMe",
                 request.getRequestURI(),
                 request.getRemoteAddr(),
                 LocalDateTime.now()));
 
-        Event event = eventRepository.findByIdAndState(eventId, EventState.PUBLISHED)
+        EventCounters counters = eventRepository.findCountersByIdAndState(eventId, EventState.PUBLISHED)
                 .orElseThrow(() -> new ValidationException("Событие с id=" + eventId + " не найдено",
                         HttpStatus.NOT_FOUND));
 
-        EventFullDto eventFullDto = eventMapper.toEventFullDto(event);
-        eventFullDto.setConfirmedRequests(participationRequestRepository.countByEventAndStatus(eventId,
-                RequestStatus.CONFIRMED));
-        List<CommentEventDto> commentEventDto = commentMapper
-                .toCommentEventDto(commentRepository.findAllByEventId(eventId));
-        eventFullDto.setComments(commentEventDto);
         StatsRequest statsRequest = StatsRequest.builder()
                 .uris(Set.of("/events/" + eventId))
+                .start(counters.publishedOn())
+                .end(LocalDateTime.now())
                 .unique(true)
                 .build();
         List<ViewStats> stats = statsClient.getStats(List.of(statsRequest));
-        eventFullDto.setViews(stats.isEmpty() ? 0L : stats.getFirst().getHits());
+        long views;
+        if (!stats.isEmpty()) {
+            views = stats.getFirst().getHits();
+        } else if (statsClient.statsBreakerState() != StatsCircuitBreaker.State.CLOSED) {
+            //Сервис статистики недоступен - просмотры, синхронизированные в events.views
+            views = counters.views();
+        } else {
+            //Сервис ответил без строки: просмотров с момента публикации не было
+            views = 0;
+        }
+
+        return publishedEventCache.get(eventId,
+                new EventCounters(counters.confirmedRequests(), views, counters.publishedOn()),
+                () -> loadPublishedEvent(eventId));
+    }
+
+    private EventFullDto loadPublishedEvent(Long eventId) {
+        Event event = eventRepository.findByIdAndState(eventId, EventState.PUBLISHED)
+                .orElseThrow(() -> new ValidationException("Событие с id=" + eventId + " не найдено",
+                        HttpStatus.NOT_FOUND));
+
+        EventFullDto eventFullDto = eventMapper.toEventFullDto(event);
+        List<CommentEventDto> commentEventDto = commentMapper
+                .toCommentEventDto(commentRepository.findAllByEventId(eventId));
+        eventFullDto.setComments(commentEventDto);
+        eventFullDto.setCommentCount(commentEventDto.size());
         return eventFullDto;
     }
 
         private Sort getSort(EventSort sort) {
-            return sort == EventSort.VIEWS ? Sort.by(Sort.Direction.DESC, "views") :
-                    Sort.by(Sort.Direction.ASC, "eventDate");
+            return sort == EventSort.VIEWS ? Sort.by(Sort.Direction.DESC, "views").and(Sort.by("id")) :
+                    Sort.by(Sort.Direction.ASC, "eventDate", "id");
         }
 
 }
@@ -0,0 +1,51 @@
+package ru.practicum.ewm.service;
+
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.dto.EventFullDto;
+import ru.practicum.ewm.model.EventCounters;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+//Кеш карточек опубликованных событий для GET /events/{id}. Хранится карточка без счётчиков
+//просмотров и подтверждённых заявок: они накладываются при каждом чтении, поэтому кеш сбрасывается
+//только при изменении самого события, его комментариев и категорий
+@Component
+public class PublishedEventCache {
+    public static final String CACHE = "publishedEvents";
+
+    private final GenerationGuardedCache cache;
+
+    public PublishedEventCache(CacheManager cacheManager) {
+        this.cache = new GenerationGuardedCache(cacheManager, CACHE);
+    }
+
+    //Карточка из кеша или собранная loader; в ответ - копия с актуальными счётчиками.
+    //Карточка, прочитанная до изменения события, не попадает в кеш после сброса
+    public EventFullDto get(Long eventId, EventCounters counters, Supplier<EventFullDto> loader) {
+        EventFullDto event = cache.get(eventId, EventFullDto.class);
+        if (event == null) {
+            long readGeneration = cache.generation();
+            event = loader.get().toBuilder()
+                    .confirmedRequests(0)
+                    .views(0)
+                    .build();
+            cache.put(eventId, event, readGeneration);
+        }
+        return event.toBuilder()
+                .confirmedRequests(counters.confirmedRequests())
+                .views(counters.views())
+                .build();
+    }
+
+    //Сброс карточки после фиксации изменений события или его комментариев
+    public void evict(Long eventId) {
+        cache.evictAfterCommit(List.of(eventId));
+    }
+
+    //Сброс всех карточек, например после переименования категории
+    public void evictAll() {
+        cache.clearAfterCommit();
+    }
+}
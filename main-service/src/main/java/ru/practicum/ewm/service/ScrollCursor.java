@@ -0,0 +1,123 @@
+package ru.practicum.ewm.service;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.mapping.PropertyPath;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.ClassUtils;
+import ru.practicum.ewm.exception.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Курсор постраничной выдачи по ключу сортировки.
+ * <p>
+ * Курсор - непрозрачная для клиента строка с значениями полей сортировки и id последнего элемента
+ * страницы. Следующая страница выбирается условием "после этих значений" по индексу, без OFFSET и без
+ * подсчёта общего числа строк, поэтому время выборки не растёт с номером страницы.
+ */
+public final class ScrollCursor {
+    private static final char ENTRY_SEPARATOR = ';';
+    private static final char VALUE_SEPARATOR = '=';
+    private static final char LONG = 'l';
+    private static final char TIMESTAMP = 't';
+
+    private ScrollCursor() {
+    }
+
+    //Начальная позиция, если курсор не передан, иначе позиция сразу после закодированного в курсоре элемента.
+    //Поля курсора должны совпадать с полями сортировки выдачи, а значения - с типами полей сущности entityType
+    public static ScrollPosition position(String cursor, Sort sort, Class<?> entityType) {
+        Map<String, Object> keys = keys(cursor, sort, entityType);
+        return keys.isEmpty() ? ScrollPosition.keyset() : ScrollPosition.forward(keys);
+    }
+
+    //Значения полей сортировки из курсора; пустая карта, если курсор не передан. Значение, тип которого
+    //не совпадает с типом поля сущности (например, число вместо даты), отклоняется как некорректный курсор,
+    //а не доходит до условия выборки
+    public static Map<String, Object> keys(String cursor, Sort sort, Class<?> entityType) {
+        if (cursor == null) {
+            return Map.of();
+        }
+        Map<String, Object> keys = decode(cursor);
+        List<String> properties = new ArrayList<>();
+        sort.forEach(order -> properties.add(order.getProperty()));
+        if (!properties.containsAll(keys.keySet()) || !keys.keySet().containsAll(properties)) {
+            throw invalid();
+        }
+        keys.forEach((property, value) -> {
+            if (!ClassUtils.isAssignableValue(PropertyPath.from(property, entityType).getType(), value)) {
+                throw invalid();
+            }
+        });
+        return keys;
+    }
+
+    //Курсор следующей страницы или null, если страница последняя
+    public static String next(Window<?> window) {
+        if (window.isEmpty() || !window.hasNext()) {
+            return null;
+        }
+        return encode(((KeysetScrollPosition) window.positionAt(window.size() - 1)).getKeys());
+    }
+
+    //Курсор для строки с заданными значениями полей сортировки
+    public static String encode(Map<String, ?> keys) {
+        StringBuilder value = new StringBuilder();
+        keys.forEach((property, key) -> {
+            if (!value.isEmpty()) {
+                value.append(ENTRY_SEPARATOR);
+            }
+            value.append(property).append(VALUE_SEPARATOR).append(encodeValue(key));
+        });
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, Object> decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            Map<String, Object> keys = new LinkedHashMap<>();
+            for (String entry : value.split(String.valueOf(ENTRY_SEPARATOR))) {
+                int separator = entry.indexOf(VALUE_SEPARATOR);
+                if (separator <= 0 || separator + 1 >= entry.length()) {
+                    throw invalid();
+                }
+                keys.put(entry.substring(0, separator), decodeValue(entry.substring(separator + 1)));
+            }
+            return keys;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw invalid();
+        }
+    }
+
+    private static String encodeValue(Object key) {
+        if (key instanceof Number number) {
+            return LONG + number.toString();
+        }
+        if (key instanceof LocalDateTime timestamp) {
+            return TIMESTAMP + timestamp.toString();
+        }
+        throw new IllegalStateException("Неподдерживаемый тип поля курсора: " + key);
+    }
+
+    private static Object decodeValue(String value) {
+        return switch (value.charAt(0)) {
+            case LONG -> Long.parseLong(value.substring(1));
+            case TIMESTAMP -> LocalDateTime.parse(value.substring(1));
+            default -> throw invalid();
+        };
+    }
+
+    private static ValidationException invalid() {
+        return new ValidationException("Некорректный курсор постраничной выдачи", HttpStatus.BAD_REQUEST);
+    }
+}
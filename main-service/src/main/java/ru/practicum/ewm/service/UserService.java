@@ -3,9 +3,12 @@ package ru.practicum.ewm.service;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewm.dto.CursorPage;
 import ru.practicum.ewm.dto.NewUserRequest;
 import ru.practicum.ewm.dto.UserDto;
 import ru.practicum.ewm.exception.ValidationException;
@@ -22,18 +25,28 @@ public class UserService {
     private final UserRepository userRepository;
     private final UserMapper userMapper;
 
+    //Первая страница (from = 0) и страницы по курсору after выбираются по ключу id без OFFSET,
+    //к ним отдаётся курсор следующей страницы; остальные страницы from/size - прежней выборкой со смещением
     @Transactional(readOnly = true)
-    public List<UserDto> getUsers(List<Long> ids, int from, int size) {
-        Pageable pageable = PageRequest.of(from / size, size);
+    public CursorPage<UserDto> getUsers(List<Long> ids, int from, int size, String after) {
         List<User> users;
-        if (ids == null || ids.isEmpty()) {
-            users = userRepository.findAll(pageable).toList();
+        String nextCursor = null;
+        if (after != null || from == 0) {
+            Window<User> window = userRepository.scrollByIds(ids,
+                    ScrollCursor.position(after, Sort.by("id"), User.class), size);
+            users = window.getContent();
+            nextCursor = ScrollCursor.next(window);
         } else {
-            users = userRepository.findByIdIn(ids, pageable);
+            Pageable pageable = PageRequest.of(from / size, size, Sort.by("id"));
+            if (ids == null || ids.isEmpty()) {
+                users = userRepository.findAll(pageable).toList();
+            } else {
+                users = userRepository.findByIdIn(ids, pageable);
+            }
         }
-        return users.stream()
+        return new CursorPage<>(users.stream()
                 .map(userMapper::toUserDto)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()), nextCursor);
     }
 
     @Transactional
@@ -0,0 +1,30 @@
+--полнотекстовый поиск по событиям, только для PostgreSQL. Выполняется оператором после создания схемы
+--(первого старта сервиса) вне транзакции, ролью с правом создавать функции и расширения:
+--psql -d ewm -f event-search-postgresql.sql. Индексы строятся CONCURRENTLY и не блокируют запись в events;
+--прерванное построение оставляет невалидный индекс - его нужно удалить (DROP INDEX CONCURRENTLY) и повторить.
+--Пока функций нет, сервис ищет только по подстроке (EventTextSearch)
+
+--вектор поиска: совпадения в аннотации весят больше, чем в описании
+CREATE OR REPLACE FUNCTION event_search_vector(annotation TEXT, description TEXT) RETURNS tsvector
+    LANGUAGE sql IMMUTABLE PARALLEL SAFE
+    AS 'SELECT setweight(to_tsvector(''russian'', coalesce($1, '''')), ''A'')
+        || setweight(to_tsvector(''russian'', coalesce($2, '''')), ''B'')';
+
+--функции-обёртки для запросов через Criteria API; простые SQL-функции планировщик подставляет в запрос,
+--поэтому условие совпадает с выражением индекса events_search_idx
+CREATE OR REPLACE FUNCTION event_search_matches(annotation TEXT, description TEXT, query TEXT) RETURNS boolean
+    LANGUAGE sql IMMUTABLE PARALLEL SAFE
+    AS 'SELECT event_search_vector($1, $2) @@ websearch_to_tsquery(''russian'', $3)';
+
+CREATE OR REPLACE FUNCTION event_search_rank(annotation TEXT, description TEXT, query TEXT) RETURNS real
+    LANGUAGE sql IMMUTABLE PARALLEL SAFE
+    AS 'SELECT ts_rank(event_search_vector($1, $2), websearch_to_tsquery(''russian'', $3))';
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS events_search_idx ON events USING GIN (event_search_vector(annotation, description));
+
+--триграммные индексы для поиска по подстроке (lower(...) LIKE '%текст%')
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS events_annotation_trgm_idx ON events USING GIN (lower(annotation) gin_trgm_ops);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS events_description_trgm_idx ON events USING GIN (lower(description) gin_trgm_ops);
@@ -28,10 +28,20 @@ CREATE TABLE IF NOT EXISTS events (
     published_on TIMESTAMP,
     participant_limit INT DEFAULT 0,
     request_moderation BOOLEAN DEFAULT true,
+    confirmed_requests BIGINT NOT NULL DEFAULT 0,
+    views BIGINT NOT NULL DEFAULT 0,
     FOREIGN KEY (category_id) REFERENCES categories(id),
     FOREIGN KEY (initiator_id) REFERENCES users(id)
     );
 
+--счётчик подтверждённых заявок для баз, созданных до его появления; заполняется сверкой
+--(ewm.events.confirmed-requests.reconcile-on-startup=true при первом старте после перехода)
+ALTER TABLE events ADD COLUMN IF NOT EXISTS confirmed_requests BIGINT NOT NULL DEFAULT 0;
+
+--просмотры событий, копируемые из сервиса статистики, и индекс для сортировки по ним
+ALTER TABLE events ADD COLUMN IF NOT EXISTS views BIGINT NOT NULL DEFAULT 0;
+CREATE INDEX IF NOT EXISTS events_views_idx ON events (views DESC, id);
+
 --запросы пользователей
 CREATE TABLE IF NOT EXISTS participation_requests (
     id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
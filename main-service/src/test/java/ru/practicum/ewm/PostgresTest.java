@@ -0,0 +1,22 @@
+package ru.practicum.ewm;
+
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//Тест основного сервиса на PostgreSQL: схема, сверка счётчиков и полнотекстовый поиск рассчитаны на неё.
+//Сервис статистики заменён заглушкой. Тест пропускается, если база не задана явно и Docker недоступен
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@SpringBootTest
+@AutoConfigureMockMvc
+@MockBean(StatsClient.class)
+@EnabledIf("ru.practicum.ewm.PostgresTestSupport#isPostgresAvailable")
+public @interface PostgresTest {
+}
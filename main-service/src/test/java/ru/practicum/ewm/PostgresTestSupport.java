@@ -0,0 +1,63 @@
+package ru.practicum.ewm;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.DockerClientFactory;
+
+import java.time.LocalDateTime;
+
+public final class PostgresTestSupport {
+    private PostgresTestSupport() {
+    }
+
+    public static boolean isPostgresAvailable() {
+        return System.getProperty("spring.datasource.url") != null
+                || DockerClientFactory.instance().isDockerAvailable();
+    }
+
+    //Удаление данных, оставленных предыдущими тестами
+    public static void clearData(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute("TRUNCATE users, categories, events, participation_requests, compilations, " +
+                "compilations_events, comments RESTART IDENTITY CASCADE");
+    }
+
+    public static long insertUser(JdbcTemplate jdbcTemplate, String name) {
+        return jdbcTemplate.queryForObject("INSERT INTO users (name, email) VALUES (?, ?) RETURNING id", Long.class,
+                name, name + "@example.com");
+    }
+
+    public static long insertCategory(JdbcTemplate jdbcTemplate, String name) {
+        return jdbcTemplate.queryForObject("INSERT INTO categories (name) VALUES (?) RETURNING id", Long.class, name);
+    }
+
+    //Опубликованное событие через неделю
+    public static long insertEvent(JdbcTemplate jdbcTemplate, long initiatorId, long categoryId, String annotation,
+                                   int participantLimit, boolean requestModeration) {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        return jdbcTemplate.queryForObject("INSERT INTO events (title, description, annotation, lat, lon, " +
+                        "event_date, category_id, initiator_id, state, paid, created_on, published_on, " +
+                        "participant_limit, request_moderation) " +
+                        "VALUES (?, ?, ?, 55.75, 37.61, ?, ?, ?, 'PUBLISHED', false, ?, ?, ?, ?) RETURNING id",
+                Long.class, "Событие", "Описание события: " + annotation, annotation, now.plusWeeks(1),
+                categoryId, initiatorId, now.minusDays(1), now.minusDays(1), participantLimit, requestModeration);
+    }
+
+    public static long insertRequest(JdbcTemplate jdbcTemplate, long requesterId, long eventId, String status) {
+        return jdbcTemplate.queryForObject("INSERT INTO participation_requests (event_id, requester_id, status, created) " +
+                "VALUES (?, ?, ?, ?) RETURNING id", Long.class, eventId, requesterId, status, LocalDateTime.now());
+    }
+
+    //Счётчик подтверждённых заявок события и число подтверждённых заявок в таблице заявок
+    public static long confirmedCounter(JdbcTemplate jdbcTemplate, long eventId) {
+        return jdbcTemplate.queryForObject("SELECT confirmed_requests FROM events WHERE id = ?", Long.class, eventId);
+    }
+
+    public static long confirmedRequests(JdbcTemplate jdbcTemplate, long eventId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM participation_requests " +
+                "WHERE event_id = ? AND status = 'CONFIRMED'", Long.class, eventId);
+    }
+
+    public static void insertComment(JdbcTemplate jdbcTemplate, long authorId, long eventId, String text) {
+        jdbcTemplate.update("INSERT INTO comments (comment_text, author_id, event_id) VALUES (?, ?, ?)",
+                text, authorId, eventId);
+    }
+}
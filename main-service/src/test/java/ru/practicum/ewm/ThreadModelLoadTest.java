@@ -0,0 +1,230 @@
+package ru.practicum.ewm;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.catalina.connector.Connector;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import ru.practicum.ewm.client.StatsCircuitBreaker;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+//Сравнение обработки запросов на потоках платформы и на виртуальных потоках при настройках профиля
+//virtual-threads (пул из 20 соединений с ожиданием до 2 с, предел одновременных запросов на виртуальных потоках).
+//Приложение слушает два порта: основной коннектор Tomcat работает на пуле из 200 потоков платформы,
+//дополнительный - на виртуальных потоках; база, пул соединений и данные у них общие. Ответ сервиса статистики
+//задерживается, как у удалённого сервиса под нагрузкой, поэтому запрос большую часть времени ждёт, не занимая
+//соединения с базой. Замер длится около 35 с и запускается только профилем: mvn test -Pbenchmark.
+//Число клиентов, размер пула, предел одновременных запросов и задержку можно изменить через argLine:
+//-Dload.clients=200 -Dload.pool=40 -Dload.max-concurrent=100 -Dload.latency=200
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@MockBean(StatsClient.class)
+@EnabledIf("ru.practicum.ewm.PostgresTestSupport#isPostgresAvailable")
+@TestPropertySource(properties = {
+        "server.tomcat.threads.max=200",
+        "spring.datasource.hikari.maximum-pool-size=${load.pool:20}",
+        "spring.datasource.hikari.minimum-idle=${load.pool:20}",
+        "spring.datasource.hikari.connection-timeout=2000",
+        "spring.jpa.properties.hibernate.generate_statistics=false",
+        "logging.level.ru.practicum.ewm=WARN"
+})
+class ThreadModelLoadTest {
+    private static final int EVENTS = 200;
+    private static final int CLIENTS = Integer.getInteger("load.clients", 100);
+    private static final Duration STATS_LATENCY = Duration.ofMillis(Long.getLong("load.latency", 200));
+    private static final Duration WARMUP = Duration.ofSeconds(3);
+    private static final Duration MEASUREMENT = Duration.ofSeconds(10);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private StatsClient statsClient;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private ServletWebServerApplicationContext applicationContext;
+    @LocalServerPort
+    private int platformPort;
+
+    //Предел одновременных запросов на виртуальных потоках из профиля virtual-threads,
+    //для замеров - из -Dload.max-concurrent
+    @DynamicPropertySource
+    static void concurrencyLimit(DynamicPropertyRegistry registry) throws IOException {
+        Properties profile = PropertiesLoaderUtils.loadProperties(
+                new ClassPathResource("application-virtual-threads.properties"));
+        registry.add("ewm.http.max-concurrent-requests", () -> Integer.getInteger("load.max-concurrent",
+                Integer.parseInt(profile.getProperty("ewm.http.max-concurrent-requests"))));
+    }
+
+    @BeforeEach
+    void fillEvents() {
+        PostgresTestSupport.clearData(jdbcTemplate);
+        long initiatorId = PostgresTestSupport.insertUser(jdbcTemplate, "initiator");
+        long categoryId = PostgresTestSupport.insertCategory(jdbcTemplate, "Концерты");
+        for (int i = 0; i < EVENTS; i++) {
+            long eventId = PostgresTestSupport.insertEvent(jdbcTemplate, initiatorId, categoryId,
+                    "Концерт номер " + i, 0, false);
+            for (int comment = 0; comment < 3; comment++) {
+                PostgresTestSupport.insertComment(jdbcTemplate, initiatorId, eventId, "Комментарий " + comment);
+            }
+        }
+        when(statsClient.statsBreakerState()).thenReturn(StatsCircuitBreaker.State.CLOSED);
+        when(statsClient.getStats(anyList())).thenAnswer(invocation -> {
+            Thread.sleep(STATS_LATENCY);
+            return List.of();
+        });
+    }
+
+    @Test
+    void virtualThreadsServeLoadWithinPoolLimits() throws Exception {
+        LoadResult platform = run("потоки платформы", platformPort);
+        LoadResult virtual = run("виртуальные потоки", virtualPort());
+
+        //При такой нагрузке пул в 20 соединений не отказывает ни одному запросу по таймауту ожидания
+        assertThat(platform.errors()).isZero();
+        assertThat(virtual.errors()).isZero();
+        assertThat(virtual.throughput()).isGreaterThanOrEqualTo(platform.throughput() * 0.9);
+    }
+
+    private LoadResult run(String mode, int port) throws Exception {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        HikariPoolMXBean pool = ((HikariDataSource) dataSource).getHikariPoolMXBean();
+        AtomicInteger maxActive = new AtomicInteger();
+        AtomicInteger maxAwaiting = new AtomicInteger();
+        AtomicLong errors = new AtomicLong();
+        long measureFrom = System.nanoTime() + WARMUP.toNanos();
+        long measureTo = measureFrom + MEASUREMENT.toNanos();
+
+        List<Long> latencies = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<?> sampler = executor.submit(() -> {
+                while (System.nanoTime() < measureTo) {
+                    if (System.nanoTime() >= measureFrom) {
+                        maxActive.accumulateAndGet(pool.getActiveConnections(), Math::max);
+                        maxAwaiting.accumulateAndGet(pool.getThreadsAwaitingConnection(), Math::max);
+                    }
+                    Thread.sleep(10);
+                }
+                return null;
+            });
+            List<Future<List<Long>>> clients = new ArrayList<>();
+            for (int client = 0; client < CLIENTS; client++) {
+                clients.add(executor.submit(() -> requests(httpClient, port, measureFrom, measureTo, errors)));
+            }
+            for (Future<List<Long>> client : clients) {
+                latencies.addAll(client.get());
+            }
+            sampler.get();
+        }
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        LoadResult result = new LoadResult(sorted.length / (double) MEASUREMENT.toSeconds(),
+                percentile(sorted, 0.5), percentile(sorted, 0.99), errors.get(), maxActive.get(), maxAwaiting.get());
+        log.warn("{}: {} запросов/с, p50 {} мс, p99 {} мс, ошибок {}, занято соединений до {}, " +
+                        "ждали соединения до {} потоков", mode, Math.round(result.throughput()), result.p50Millis(),
+                result.p99Millis(), result.errors(), result.maxActive(), result.maxAwaiting());
+        return result;
+    }
+
+    //Клиент по очереди запрашивает страницу событий и карточку случайного события;
+    //учитываются запросы, завершённые в окне измерения: запрос, долго ждавший обработки, попадает
+    //в замер со всем временем ожидания
+    private static List<Long> requests(HttpClient httpClient, int port, long measureFrom, long measureTo,
+                                       AtomicLong errors) throws Exception {
+        List<Long> latencies = new ArrayList<>();
+        boolean page = ThreadLocalRandom.current().nextBoolean();
+        while (System.nanoTime() < measureTo) {
+            String path = page ? "/events?size=10" : "/events/" + (1 + ThreadLocalRandom.current().nextInt(EVENTS));
+            page = !page;
+            long start = System.nanoTime();
+            HttpResponse<Void> response = httpClient.send(
+                    HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).build(),
+                    HttpResponse.BodyHandlers.discarding());
+            long end = System.nanoTime();
+            if (end >= measureFrom && end <= measureTo) {
+                latencies.add((end - start) / 1_000_000);
+                if (response.statusCode() != 200) {
+                    errors.incrementAndGet();
+                }
+            }
+        }
+        return latencies;
+    }
+
+    private int virtualPort() {
+        TomcatWebServer webServer = (TomcatWebServer) applicationContext.getWebServer();
+        return Arrays.stream(webServer.getTomcat().getService().findConnectors())
+                .filter(connector -> connector.getProtocolHandler().getExecutor() instanceof VirtualThreadExecutor)
+                .findFirst()
+                .orElseThrow()
+                .getLocalPort();
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted.length == 0 ? 0 : sorted[(int) Math.ceil(percentile * sorted.length) - 1];
+    }
+
+    private record LoadResult(double throughput, long p50Millis, long p99Millis, long errors, int maxActive,
+                              int maxAwaiting) {
+    }
+
+    @TestConfiguration
+    static class VirtualThreadConnector {
+        //Дополнительный коннектор на случайном порту, запросы которого выполняются на виртуальных потоках
+        @Bean
+        WebServerFactoryCustomizer<TomcatServletWebServerFactory> virtualThreadConnector() {
+            return factory -> {
+                Connector connector = new Connector(TomcatServletWebServerFactory.DEFAULT_PROTOCOL);
+                connector.setPort(0);
+                ((AbstractProtocol<?>) connector.getProtocolHandler())
+                        .setExecutor(new VirtualThreadExecutor("tomcat-virtual-"));
+                factory.addAdditionalTomcatConnectors(connector);
+            };
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package ru.practicum.ewm.repository;
+
+import com.sun.management.ThreadMXBean;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.ewm.PostgresTest;
+import ru.practicum.ewm.PostgresTestSupport;
+import ru.practicum.ewm.dto.EventShortDto;
+import ru.practicum.ewm.enums.EventState;
+import ru.practicum.ewm.enums.TextSearchMode;
+import ru.practicum.ewm.mapper.EventMapper;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Краткий список событий через проекцию против загрузки сущностей: сколько байт строк читается из базы
+//(текстовое представление выбранных колонок страницы, как его передаёт база) и сколько памяти выделяется на страницу вместе
+//с преобразованием в EventShortDto. У событий подробные описания, которые краткому списку не нужны.
+//Память зависит от JIT и сборщика мусора и замеряется только профилем: mvn test -Pbenchmark
+@Slf4j
+@PostgresTest
+class EventShortProjectionTest {
+    private static final int EVENTS = 40;
+    private static final int PAGE_SIZE = 20;
+    private static final int WARMUP = 30;
+    private static final int REPEATS = 50;
+    private static final Pageable PAGE = PageRequest.of(0, PAGE_SIZE, Sort.by("eventDate", "id"));
+
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private EventMapper eventMapper;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final LocalDateTime now = LocalDateTime.now();
+
+    @BeforeEach
+    void fillEvents() {
+        PostgresTestSupport.clearData(jdbcTemplate);
+        long categoryId = PostgresTestSupport.insertCategory(jdbcTemplate, "Концерты");
+        for (int i = 0; i < EVENTS; i++) {
+            long initiatorId = PostgresTestSupport.insertUser(jdbcTemplate, "initiator" + i);
+            PostgresTestSupport.insertEvent(jdbcTemplate, initiatorId, categoryId, "Концерт номер " + i, 0, false);
+        }
+        jdbcTemplate.update("UPDATE events SET description = left(repeat('Подробное описание события. ', 250), " +
+                "7000)");
+    }
+
+    @Test
+    void projectionReadsFewerBytesWithoutLoadingEntities() {
+        List<Long> ids = entityPage().stream().map(EventShortDto::getId).toList();
+        assertThat(projectionPage()).usingRecursiveFieldByFieldElementComparator().isEqualTo(entityPage());
+
+        //Сущность читает все колонки события, его категории и инициатора, проекция - только колонки EventShortView
+        long entityBytes = rowBytes("e.*, c.*, u.*", ids);
+        long projectionBytes = rowBytes("e.id, e.annotation, c.id, c.name, e.event_date, u.id, u.name, e.paid, " +
+                "e.title, e.confirmed_requests, e.participant_limit, e.views, e.published_on", ids);
+        Statistics statistics = statistics();
+        statistics.clear();
+        projectionPage();
+        long projectionEntityLoads = statistics.getEntityLoadCount();
+
+        assertThat(projectionEntityLoads).isZero();
+        assertThat(projectionBytes).isLessThan(entityBytes / 10);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void projectionAllocatesLessThanEntities() {
+        long entityAllocation = allocatedBytes(this::entityPage);
+        long projectionAllocation = allocatedBytes(this::projectionPage);
+
+        log.warn("Страница из {} событий: сущности - {} байт в куче, проекция - {} байт в куче", PAGE_SIZE,
+                entityAllocation, projectionAllocation);
+    }
+
+    private List<EventShortDto> entityPage() {
+        return eventRepository.findWithFilters(null, List.of(EventState.PUBLISHED), null, now, null, null, null,
+                PAGE).stream().map(eventMapper::toEventShortDto).toList();
+    }
+
+    private List<EventShortDto> projectionPage() {
+        return eventRepository.findShortWithFilters(List.of(EventState.PUBLISHED), null, now, null, null, null,
+                TextSearchMode.SUBSTRING, false, Map.of(), PAGE).stream().map(eventMapper::toEventShortDto).toList();
+    }
+
+    //Суммарный размер выбранных колонок строк страницы в байтах, без сжатия TOAST
+    private long rowBytes(String columns, List<Long> ids) {
+        return jdbcTemplate.queryForObject("SELECT sum(octet_length(ROW(" + columns + ")::text)) FROM events e " +
+                        "JOIN categories c ON c.id = e.category_id JOIN users u ON u.id = e.initiator_id " +
+                        "WHERE e.id = ANY (?)", Long.class,
+                (Object) ids.toArray(Long[]::new));
+    }
+
+    //Медиана памяти, выделенной текущим потоком за одну загрузку страницы
+    private static long allocatedBytes(Supplier<?> page) {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        for (int i = 0; i < WARMUP; i++) {
+            page.get();
+        }
+        long[] allocated = new long[REPEATS];
+        for (int i = 0; i < REPEATS; i++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            page.get();
+            allocated[i] = threads.getThreadAllocatedBytes(threadId) - before;
+        }
+        Arrays.sort(allocated);
+        return allocated[REPEATS / 2];
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+}
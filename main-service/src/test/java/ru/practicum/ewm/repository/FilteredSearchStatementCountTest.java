@@ -0,0 +1,103 @@
+package ru.practicum.ewm.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.ewm.PostgresTest;
+import ru.practicum.ewm.PostgresTestSupport;
+import ru.practicum.ewm.enums.EventState;
+import ru.practicum.ewm.enums.TextSearchMode;
+import ru.practicum.ewm.model.Comment;
+import ru.practicum.ewm.model.Event;
+import ru.practicum.ewm.model.EventShortView;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Поиск с фильтрами выполняется одним SQL-запросом: без COUNT(*) и без догрузки связей по одной строке
+@PostgresTest
+class FilteredSearchStatementCountTest {
+    private static final int EVENTS = 30;
+    private static final Sort BY_DATE = Sort.by(Sort.Direction.DESC, "eventDate", "id");
+
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private CommentRepository commentRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void fillEvents() {
+        PostgresTestSupport.clearData(jdbcTemplate);
+        for (int i = 0; i < EVENTS; i++) {
+            //Свои инициатор, категория и автор комментария у каждого события
+            long initiatorId = PostgresTestSupport.insertUser(jdbcTemplate, "initiator" + i);
+            long authorId = PostgresTestSupport.insertUser(jdbcTemplate, "author" + i);
+            long categoryId = PostgresTestSupport.insertCategory(jdbcTemplate, "Категория " + i);
+            long eventId = PostgresTestSupport.insertEvent(jdbcTemplate, initiatorId, categoryId,
+                    "Концерт оркестра номер " + i, 0, false);
+            PostgresTestSupport.insertComment(jdbcTemplate, authorId, eventId, "Отличный концерт " + i);
+        }
+    }
+
+    @Test
+    void eventSearchesIssueOneStatement() {
+        List<Event> page = singleStatement(() -> eventRepository.findWithFilters(null, List.of(EventState.PUBLISHED),
+                null, null, null, null, "оркестр", PageRequest.of(1, 10, BY_DATE)));
+        assertThat(page).hasSize(10)
+                .allMatch(event -> Hibernate.isInitialized(event.getCategory())
+                        && Hibernate.isInitialized(event.getInitiator()));
+
+        List<Event> window = singleStatement(() -> eventRepository.scrollWithFilters(null,
+                List.of(EventState.PUBLISHED), null, null, null, null, null, TextSearchMode.SUBSTRING, BY_DATE,
+                ScrollPosition.keyset(), 10).getContent());
+        assertThat(window).hasSize(10)
+                .allMatch(event -> Hibernate.isInitialized(event.getCategory())
+                        && Hibernate.isInitialized(event.getInitiator()));
+
+        Slice<EventShortView> shortPage = singleStatement(() -> eventRepository.findShortWithFilters(
+                List.of(EventState.PUBLISHED), null, null, null, null, "оркестры",
+                TextSearchMode.FULL_TEXT_OR_SUBSTRING, true, Map.of(), PageRequest.of(2, 10)));
+        assertThat(shortPage.getContent()).hasSize(10);
+        assertThat(shortPage.hasNext()).isFalse();
+    }
+
+    @Test
+    void commentSearchesIssueOneStatement() {
+        Sort byId = Sort.by("id");
+        List<Comment> page = singleStatement(() -> commentRepository.findWithFilters("концерт", null, null, null,
+                null, null, PageRequest.of(1, 10, byId)));
+        assertThat(page).hasSize(10)
+                .allMatch(comment -> Hibernate.isInitialized(comment.getAuthor())
+                        && Hibernate.isInitialized(comment.getEvent()));
+
+        List<Comment> window = singleStatement(() -> commentRepository.scrollWithFilters("концерт", null, null,
+                null, null, null, byId, ScrollPosition.keyset(), 10).getContent());
+        assertThat(window).hasSize(10)
+                .allMatch(comment -> Hibernate.isInitialized(comment.getAuthor())
+                        && Hibernate.isInitialized(comment.getEvent()));
+    }
+
+    private <T> T singleStatement(Supplier<T> search) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        T result = search.get();
+        assertThat(statistics.getPrepareStatementCount()).as("число SQL-запросов поиска").isEqualTo(1);
+        return result;
+    }
+}
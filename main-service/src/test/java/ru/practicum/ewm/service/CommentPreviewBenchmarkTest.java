@@ -0,0 +1,106 @@
+package ru.practicum.ewm.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.practicum.ewm.PostgresTest;
+import ru.practicum.ewm.PostgresTestSupport;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//Размер ответа и задержка GET /events с превью комментариев против ответа со всеми комментариями событий,
+//как до появления превью. Все комментарии отдаются той же загрузкой с неограниченным размером превью, поэтому
+//разница - только в числе комментариев, которые читаются из базы и сериализуются. На странице одно популярное
+//событие с тысячами комментариев, у остальных по несколько десятков. Результат зависит от машины и только
+//пишется в лог. Запуск: mvn test -Pbenchmark
+@Slf4j
+@Tag("benchmark")
+@PostgresTest
+class CommentPreviewBenchmarkTest {
+    private static final int EVENTS = 20;
+    private static final int POPULAR_EVENT_COMMENTS = Integer.getInteger("preview.popular-comments", 5_000);
+    private static final int EVENT_COMMENTS = 30;
+    private static final int WARMUP = 20;
+    private static final int REQUESTS = 200;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EventCommentLoader eventCommentLoader;
+
+    @Value("${ewm.events.comment-preview-size}")
+    private int previewSize;
+
+    @BeforeEach
+    void fillComments() {
+        PostgresTestSupport.clearData(jdbcTemplate);
+        long initiatorId = PostgresTestSupport.insertUser(jdbcTemplate, "initiator");
+        long authorId = PostgresTestSupport.insertUser(jdbcTemplate, "author");
+        long categoryId = PostgresTestSupport.insertCategory(jdbcTemplate, "Категория");
+        for (int i = 0; i < EVENTS; i++) {
+            long eventId = PostgresTestSupport.insertEvent(jdbcTemplate, initiatorId, categoryId,
+                    "Аннотация события номер " + i, 0, false);
+            jdbcTemplate.update("INSERT INTO comments (comment_text, author_id, event_id, created_at) " +
+                            "SELECT 'Комментарий номер ' || c || ' к событию, которое стоит посетить', ?, ?, " +
+                            "now() - c * interval '1 minute' FROM generate_series(1, ?) AS c",
+                    authorId, eventId, i == 0 ? POPULAR_EVENT_COMMENTS : EVENT_COMMENTS);
+        }
+    }
+
+    @AfterEach
+    void restorePreviewSize() {
+        ReflectionTestUtils.setField(eventCommentLoader, "previewSize", previewSize);
+    }
+
+    @Test
+    void previewShrinksPayloadAndLatency() throws Exception {
+        Result all = measure(Integer.MAX_VALUE);
+        Result preview = measure(previewSize);
+
+        log.warn("GET /events, {} событий, у одного {} комментариев, у остальных по {}:\n" +
+                        "все комментарии: {} байт, p50 {} мс, p99 {} мс\n" +
+                        "превью из {}: {} байт, p50 {} мс, p99 {} мс",
+                EVENTS, POPULAR_EVENT_COMMENTS, EVENT_COMMENTS, all.bytes(), all.p50(), all.p99(),
+                previewSize, preview.bytes(), preview.p50(), preview.p99());
+        assertThat(preview.bytes()).isLessThan(all.bytes());
+    }
+
+    private Result measure(int size) throws Exception {
+        ReflectionTestUtils.setField(eventCommentLoader, "previewSize", size);
+        for (int i = 0; i < WARMUP; i++) {
+            request();
+        }
+        long[] micros = new long[REQUESTS];
+        int bytes = 0;
+        for (int i = 0; i < REQUESTS; i++) {
+            long start = System.nanoTime();
+            bytes = request();
+            micros[i] = (System.nanoTime() - start) / 1000;
+        }
+        Arrays.sort(micros);
+        return new Result(bytes, micros[REQUESTS / 2] / 1000.0, micros[REQUESTS * 99 / 100] / 1000.0);
+    }
+
+    //Размер тела ответа в байтах
+    private int request() throws Exception {
+        return mockMvc.perform(get("/events").param("size", String.valueOf(EVENTS)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray().length;
+    }
+
+    private record Result(int bytes, double p50, double p99) {
+    }
+}
@@ -0,0 +1,100 @@
+package ru.practicum.ewm.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import ru.practicum.ewm.PostgresTest;
+import ru.practicum.ewm.PostgresTestSupport;
+import ru.practicum.ewm.dto.CompilationDto;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//Закешированная подборка сбрасывается при изменении входящих в неё событий, их комментариев и категорий,
+//а подборка, собранная до сброса, не возвращается в кеш
+@PostgresTest
+class CompilationCacheTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private CompilationCache compilationCache;
+    @Autowired
+    private CompilationService compilationService;
+
+    private long authorId;
+    private long categoryId;
+    private long eventId;
+    private long compilationId;
+
+    @BeforeEach
+    void fillCompilation() {
+        PostgresTestSupport.clearData(jdbcTemplate);
+        compilationCache.evictAll();
+        long initiatorId = PostgresTestSupport.insertUser(jdbcTemplate, "initiator");
+        authorId = PostgresTestSupport.insertUser(jdbcTemplate, "author");
+        categoryId = PostgresTestSupport.insertCategory(jdbcTemplate, "Концерты");
+        eventId = PostgresTestSupport.insertEvent(jdbcTemplate, initiatorId, categoryId,
+                "Концерт симфонического оркестра", 0, false);
+        compilationId = jdbcTemplate.queryForObject("INSERT INTO compilations (pinned, title) " +
+                "VALUES (true, 'Музыка') RETURNING compilation_id", Long.class);
+        jdbcTemplate.update("INSERT INTO compilations_events (compilation_id, event_id) VALUES (?, ?)",
+                compilationId, eventId);
+    }
+
+    @Test
+    void compilationIsEvictedWhenItsEventChanges() throws Exception {
+        getCompilation().andExpect(jsonPath("$.events[0].title", is("Событие")));
+
+        mockMvc.perform(patch("/admin/events/{eventId}", eventId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\": \"Новое название\"}"))
+                .andExpect(status().isOk());
+        getCompilation().andExpect(jsonPath("$.events[0].title", is("Новое название")));
+
+        mockMvc.perform(post("/users/{userId}/comments/events/{eventId}", authorId, eventId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"commentText\": \"Были в прошлом году, советуем\"}"))
+                .andExpect(status().isCreated());
+        getCompilation().andExpect(jsonPath("$.events[0].comments", hasSize(1)));
+
+        mockMvc.perform(patch("/admin/categories/{catId}", categoryId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Классическая музыка\"}"))
+                .andExpect(status().isOk());
+        getCompilation().andExpect(jsonPath("$.events[0].category.name", is("Классическая музыка")));
+    }
+
+    @Test
+    void compilationAssembledBeforeEvictionIsNotCached() {
+        CompilationDto cached = compilationService.getCompilationById(compilationId);
+        assertThat(compilationCache.get(compilationId)).isEqualTo(cached);
+
+        //Чтение собрало подборку, затем изменение события зафиксировано и сбросило кеш
+        long readGeneration = compilationCache.generation();
+        compilationCache.evictContaining(eventId);
+        compilationCache.putAll(List.of(cached), readGeneration);
+        assertThat(compilationCache.get(compilationId)).isNull();
+
+        //Подборка, собранная после сброса, кешируется
+        CompilationDto reloaded = compilationService.getCompilationById(compilationId);
+        assertThat(compilationCache.get(compilationId)).isEqualTo(reloaded);
+    }
+
+    private ResultActions getCompilation() throws Exception {
+        return mockMvc.perform(get("/compilations/{compId}", compilationId)).andExpect(status().isOk());
+    }
+}
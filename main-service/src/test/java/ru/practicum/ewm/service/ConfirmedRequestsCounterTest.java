@@ -0,0 +1,194 @@
+package ru.practicum.ewm.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.practicum.ewm.PostgresTest;
+import ru.practicum.ewm.PostgresTestSupport;
+import ru.practicum.ewm.dto.EventRequestStatusUpdateRequest;
+import ru.practicum.ewm.enums.RequestStatus;
+import ru.practicum.ewm.exception.ValidationException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+//Счётчик подтверждённых заявок в events совпадает с таблицей заявок при параллельных подтверждениях,
+//отклонениях и отменах, в том числе когда одновременно с ними выполняется сверка
+@PostgresTest
+class ConfirmedRequestsCounterTest {
+    private static final int REQUESTERS = 200;
+    private static final int CHUNK = 5;
+    private static final int LIMIT = 40;
+
+    @Autowired
+    private ParticipationRequestService participationRequestService;
+    @Autowired
+    private ConfirmedRequestsReconciler confirmedRequestsReconciler;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long initiatorId;
+    private long categoryId;
+    private final List<Long> requesters = new ArrayList<>();
+
+    @BeforeEach
+    void fillUsers() {
+        PostgresTestSupport.clearData(jdbcTemplate);
+        initiatorId = PostgresTestSupport.insertUser(jdbcTemplate, "initiator");
+        categoryId = PostgresTestSupport.insertCategory(jdbcTemplate, "Концерты");
+        requesters.clear();
+        for (int i = 0; i < REQUESTERS; i++) {
+            requesters.add(PostgresTestSupport.insertUser(jdbcTemplate, "requester" + i));
+        }
+    }
+
+    @Test
+    void counterStaysExactUnderParallelConfirms() throws Exception {
+        long unlimited = PostgresTestSupport.insertEvent(jdbcTemplate, initiatorId, categoryId,
+                "Событие без лимита участников", 0, true);
+        long limited = PostgresTestSupport.insertEvent(jdbcTemplate, initiatorId, categoryId,
+                "Событие с лимитом участников", LIMIT, true);
+
+        List<Callable<Object>> tasks = new ArrayList<>();
+        tasks.addAll(confirmTasks(unlimited));
+        tasks.addAll(confirmTasks(limited));
+        //Отмена подтверждённых заявок на событие без лимита
+        List<Long> cancelled = requesters.subList(0, 20);
+        for (Long requester : cancelled) {
+            tasks.add(() -> cancel(requester, unlimited));
+        }
+        for (int i = 0; i < 5; i++) {
+            tasks.add(Executors.callable(confirmedRequestsReconciler::reconcile));
+        }
+        Collections.shuffle(tasks, new Random(7));
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(16)) {
+            for (Future<Object> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        }
+
+        for (long eventId : List.of(unlimited, limited)) {
+            assertThat(PostgresTestSupport.confirmedCounter(jdbcTemplate, eventId))
+                    .as("счётчик события %s", eventId)
+                    .isEqualTo(PostgresTestSupport.confirmedRequests(jdbcTemplate, eventId));
+        }
+        assertThat(PostgresTestSupport.confirmedRequests(jdbcTemplate, limited)).isEqualTo(LIMIT);
+        assertThat(PostgresTestSupport.confirmedRequests(jdbcTemplate, unlimited))
+                .isBetween((long) REQUESTERS - cancelled.size(), (long) REQUESTERS);
+    }
+
+    @Test
+    void reconcilerRepairsDriftInBatches() {
+        List<Long> events = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            long eventId = PostgresTestSupport.insertEvent(jdbcTemplate, initiatorId, categoryId,
+                    "Событие номер " + i + " для сверки", 0, true);
+            for (int r = 0; r < i % 4; r++) {
+                PostgresTestSupport.insertRequest(jdbcTemplate, requesters.get(r), eventId, "CONFIRMED");
+            }
+            events.add(eventId);
+        }
+        //Расхождения: счётчик не заполнен или изменён в обход сервиса
+        jdbcTemplate.update("UPDATE events SET confirmed_requests = id % 3");
+
+        ReflectionTestUtils.setField(confirmedRequestsReconciler, "batchSize", 7);
+        try {
+            confirmedRequestsReconciler.reconcile();
+        } finally {
+            ReflectionTestUtils.setField(confirmedRequestsReconciler, "batchSize", 1000);
+        }
+
+        for (long eventId : events) {
+            assertThat(PostgresTestSupport.confirmedCounter(jdbcTemplate, eventId))
+                    .as("счётчик события %s", eventId)
+                    .isEqualTo(PostgresTestSupport.confirmedRequests(jdbcTemplate, eventId));
+        }
+    }
+
+    @Test
+    void initiatorCannotConfirmRequestsOfAnotherEvent() {
+        long ownEvent = PostgresTestSupport.insertEvent(jdbcTemplate, initiatorId, categoryId,
+                "Событие инициатора с лимитом", LIMIT, true);
+        long otherInitiator = PostgresTestSupport.insertUser(jdbcTemplate, "other initiator");
+        long otherEvent = PostgresTestSupport.insertEvent(jdbcTemplate, otherInitiator, categoryId,
+                "Событие другого инициатора", LIMIT, true);
+        long ownRequest = PostgresTestSupport.insertRequest(jdbcTemplate, requesters.get(0), ownEvent, "PENDING");
+        long otherRequest = PostgresTestSupport.insertRequest(jdbcTemplate, requesters.get(1), otherEvent, "PENDING");
+
+        //Чужая заявка - отдельно и вместе со своей
+        for (List<Long> requestIds : List.of(List.of(otherRequest), List.of(ownRequest, otherRequest))) {
+            EventRequestStatusUpdateRequest update = new EventRequestStatusUpdateRequest(requestIds,
+                    RequestStatus.CONFIRMED);
+            assertThatThrownBy(() -> participationRequestService.updateRequestStatus(initiatorId, ownEvent, update))
+                    .isInstanceOf(ValidationException.class)
+                    .extracting("status")
+                    .isEqualTo(HttpStatus.NOT_FOUND);
+        }
+
+        for (long eventId : List.of(ownEvent, otherEvent)) {
+            assertThat(PostgresTestSupport.confirmedCounter(jdbcTemplate, eventId)).isZero();
+            assertThat(PostgresTestSupport.confirmedRequests(jdbcTemplate, eventId)).isZero();
+        }
+    }
+
+    @Test
+    void onlyRequesterCanCancelConfirmedRequest() {
+        long eventId = PostgresTestSupport.insertEvent(jdbcTemplate, initiatorId, categoryId,
+                "Событие с подтверждённой заявкой", LIMIT, true);
+        long requestId = PostgresTestSupport.insertRequest(jdbcTemplate, requesters.get(0), eventId, "CONFIRMED");
+        confirmedRequestsReconciler.reconcile();
+
+        assertThatThrownBy(() -> participationRequestService.cancelRequest(requesters.get(1), requestId))
+                .isInstanceOf(ValidationException.class)
+                .extracting("status")
+                .isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(PostgresTestSupport.confirmedCounter(jdbcTemplate, eventId)).isEqualTo(1);
+        assertThat(PostgresTestSupport.confirmedRequests(jdbcTemplate, eventId)).isEqualTo(1);
+
+        participationRequestService.cancelRequest(requesters.get(0), requestId);
+        assertThat(PostgresTestSupport.confirmedCounter(jdbcTemplate, eventId)).isZero();
+        assertThat(PostgresTestSupport.confirmedRequests(jdbcTemplate, eventId)).isZero();
+    }
+
+    //Заявка от каждого участника и подтверждение их инициатором порциями
+    private List<Callable<Object>> confirmTasks(long eventId) {
+        List<Long> requestIds = new ArrayList<>();
+        for (Long requester : requesters) {
+            requestIds.add(PostgresTestSupport.insertRequest(jdbcTemplate, requester, eventId, "PENDING"));
+        }
+        List<Callable<Object>> tasks = new ArrayList<>();
+        for (int i = 0; i < requestIds.size(); i += CHUNK) {
+            EventRequestStatusUpdateRequest update = new EventRequestStatusUpdateRequest(
+                    requestIds.subList(i, i + CHUNK), RequestStatus.CONFIRMED);
+            tasks.add(() -> {
+                try {
+                    return participationRequestService.updateRequestStatus(initiatorId, eventId, update);
+                } catch (ValidationException e) {
+                    //Лимит участников исчерпан
+                    return null;
+                }
+            });
+        }
+        return tasks;
+    }
+
+    //Отмена заявки участником; заявка могла быть ещё не подтверждена
+    private Object cancel(long requesterId, long eventId) {
+        Long requestId = jdbcTemplate.queryForObject("SELECT id FROM participation_requests " +
+                "WHERE requester_id = ? AND event_id = ?", Long.class, requesterId, eventId);
+        return participationRequestService.cancelRequest(requesterId, requestId);
+    }
+}
@@ -0,0 +1,138 @@
+package ru.practicum.ewm.service;
+
+import com.jayway.jsonpath.JsonPath;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import ru.practicum.ewm.PostgresTest;
+import ru.practicum.ewm.PostgresTestSupport;
+import ru.practicum.ewm.enums.EventSort;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//Время выдачи глубокой страницы GET /events: смещение (from/size, OFFSET) против курсора (after, условие
+//"после ключа"). База заполняется generate_series, для каждой глубины курсор строится по строке, которая
+//предшествует странице, и обе выдачи должны вернуть одни и те же события. Время - медиана нескольких
+//повторов после прогрева; результат зависит от машины и только пишется в лог. Число событий задаётся
+//через argLine: -Ddeep-page.events=200000. Запуск: mvn test -Pbenchmark
+@Slf4j
+@Tag("benchmark")
+@PostgresTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class DeepPageBenchmarkTest {
+    private static final int EVENTS = Integer.getInteger("deep-page.events", 200_000);
+    private static final int PAGE_SIZE = 20;
+    private static final int REPEATS = 7;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    void fillEvents() {
+        PostgresTestSupport.clearData(jdbcTemplate);
+        long initiatorId = PostgresTestSupport.insertUser(jdbcTemplate, "initiator");
+        long categoryId = PostgresTestSupport.insertCategory(jdbcTemplate, "Категория");
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        //Даты и просмотры повторяются, чтобы порядок внутри одинаковых значений задавал id
+        jdbcTemplate.update("INSERT INTO events (title, description, annotation, lat, lon, event_date, " +
+                        "category_id, initiator_id, state, paid, created_on, published_on, participant_limit, " +
+                        "request_moderation, views) " +
+                        "SELECT 'Событие ' || i, 'Описание события ' || i, 'Аннотация события номер ' || i, " +
+                        "55.75, 37.61, ?::timestamp + (i % 5000) * interval '1 hour', ?, ?, 'PUBLISHED', false, " +
+                        "?, ?, 0, false, (i * 7919) % 1000 FROM generate_series(1, ?) AS i",
+                now.plusDays(1), categoryId, initiatorId, now.minusDays(1), now.minusDays(1), EVENTS);
+        jdbcTemplate.execute("ANALYZE events");
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = EventSort.class, names = {"EVENT_DATE", "VIEWS"})
+    void cursorPageTimeDoesNotGrowWithDepth(EventSort sort) throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (int depth : depths()) {
+            String cursor = cursorBefore(sort, depth);
+            MockHttpServletRequestBuilder byOffset = get("/events").param("sort", sort.name())
+                    .param("from", String.valueOf(depth)).param("size", String.valueOf(PAGE_SIZE));
+            MockHttpServletRequestBuilder byCursor = get("/events").param("sort", sort.name())
+                    .param("size", String.valueOf(PAGE_SIZE));
+            if (cursor != null) {
+                byCursor.param("after", cursor);
+            }
+
+            assertThat(ids(perform(byCursor))).as("страница на глубине %d", depth)
+                    .isEqualTo(ids(perform(byOffset)));
+            lines.add(String.format("глубина %d: смещение %.1f мс, курсор %.1f мс", depth,
+                    medianMillis(byOffset), medianMillis(byCursor)));
+        }
+        log.warn("GET /events?sort={}, {} событий, страница {}:\n{}", sort, EVENTS, PAGE_SIZE,
+                String.join("\n", lines));
+    }
+
+    //Глубины, кратные размеру страницы, до последней полной страницы
+    private static int[] depths() {
+        return Arrays.stream(new int[]{0, 1_000, 10_000, 50_000, 100_000, EVENTS - PAGE_SIZE})
+                .filter(depth -> depth <= EVENTS - PAGE_SIZE)
+                .map(depth -> depth / PAGE_SIZE * PAGE_SIZE)
+                .distinct()
+                .toArray();
+    }
+
+    //Курсор строки, после которой начинается страница на глубине depth; для первой страницы курсора нет
+    private String cursorBefore(EventSort sort, int depth) {
+        if (depth == 0) {
+            return null;
+        }
+        Map<String, Object> keys = new LinkedHashMap<>();
+        if (sort == EventSort.VIEWS) {
+            Map<String, Object> row = jdbcTemplate.queryForMap("SELECT views, id FROM events " +
+                    "ORDER BY views DESC, id OFFSET ? LIMIT 1", depth - 1);
+            keys.put("views", row.get("views"));
+            keys.put("id", row.get("id"));
+        } else {
+            Map<String, Object> row = jdbcTemplate.queryForMap("SELECT event_date, id FROM events " +
+                    "ORDER BY event_date, id OFFSET ? LIMIT 1", depth - 1);
+            keys.put("eventDate", ((Timestamp) row.get("event_date")).toLocalDateTime());
+            keys.put("id", row.get("id"));
+        }
+        return ScrollCursor.encode(keys);
+    }
+
+    private double medianMillis(MockHttpServletRequestBuilder request) throws Exception {
+        perform(request);
+        long[] nanos = new long[REPEATS];
+        for (int i = 0; i < REPEATS; i++) {
+            long start = System.nanoTime();
+            perform(request);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos[REPEATS / 2] / 1e6;
+    }
+
+    private MvcResult perform(MockHttpServletRequestBuilder request) throws Exception {
+        return mockMvc.perform(request).andExpect(status().isOk()).andReturn();
+    }
+
+    private static List<Integer> ids(MvcResult result) throws Exception {
+        return JsonPath.read(result.getResponse().getContentAsString(), "$[*].id");
+    }
+}
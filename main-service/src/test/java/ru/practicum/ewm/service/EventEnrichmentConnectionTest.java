@@ -0,0 +1,56 @@
+package ru.practicum.ewm.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.practicum.ewm.PostgresTest;
+import ru.practicum.ewm.PostgresTestSupport;
+
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//Превью комментариев загружаются на соединении запроса страницы: при пуле из одного соединения страницы
+//событий, выбранные в транзакции и без неё, получают комментарии, а не пустые значения по таймауту
+@PostgresTest
+@TestPropertySource(properties = {
+        "spring.datasource.hikari.maximum-pool-size=1",
+        "spring.datasource.hikari.connection-timeout=500"
+})
+class EventEnrichmentConnectionTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long initiatorId;
+
+    @BeforeEach
+    void fillEvent() {
+        PostgresTestSupport.clearData(jdbcTemplate);
+        initiatorId = PostgresTestSupport.insertUser(jdbcTemplate, "initiator");
+        long categoryId = PostgresTestSupport.insertCategory(jdbcTemplate, "Концерты");
+        long eventId = PostgresTestSupport.insertEvent(jdbcTemplate, initiatorId, categoryId,
+                "Концерт симфонического оркестра", 0, false);
+        PostgresTestSupport.insertComment(jdbcTemplate, initiatorId, eventId, "Будет интересно");
+    }
+
+    @Test
+    void publicPageGetsCommentPreviews() throws Exception {
+        mockMvc.perform(get("/events"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].commentCount", is(1)))
+                .andExpect(jsonPath("$[0].comments[0].commentText", is("Будет интересно")));
+    }
+
+    @Test
+    void initiatorPageInTransactionGetsCommentPreviews() throws Exception {
+        mockMvc.perform(get("/users/{userId}/events", initiatorId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].commentCount", is(1)));
+    }
+}
@@ -0,0 +1,80 @@
+package ru.practicum.ewm.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.practicum.ewm.PostgresTest;
+import ru.practicum.ewm.PostgresTestSupport;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//Число SQL-запросов страницы событий не зависит от её размера: комментарии, авторы и категории
+//загружаются для всей страницы сразу, а не отдельными запросами для каждого события
+@PostgresTest
+class EventListStatementCountTest {
+    private static final int EVENTS = 50;
+    private static final int[] PAGE_SIZES = {5, 20, 50};
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private long initiatorId;
+
+    @BeforeEach
+    void fillEvents() {
+        PostgresTestSupport.clearData(jdbcTemplate);
+        initiatorId = PostgresTestSupport.insertUser(jdbcTemplate, "initiator");
+        List<Long> authors = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            authors.add(PostgresTestSupport.insertUser(jdbcTemplate, "author" + i));
+        }
+        for (int i = 0; i < EVENTS; i++) {
+            //У каждого события своя категория и комментарии разных авторов
+            long categoryId = PostgresTestSupport.insertCategory(jdbcTemplate, "Категория " + i);
+            long eventId = PostgresTestSupport.insertEvent(jdbcTemplate, initiatorId, categoryId,
+                    "Аннотация события номер " + i, 0, false);
+            for (int c = 0; c < 4; c++) {
+                PostgresTestSupport.insertComment(jdbcTemplate, authors.get((i + c) % authors.size()), eventId,
+                        "Комментарий " + c);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/events", "/admin/events", "/users/{userId}/events"})
+    void statementCountDoesNotGrowWithPageSize(String path) throws Exception {
+        List<Long> counts = new ArrayList<>();
+        for (int size : PAGE_SIZES) {
+            Statistics statistics = statistics();
+            statistics.clear();
+            mockMvc.perform(get(path, initiatorId).param("size", String.valueOf(size)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(size)))
+                    .andExpect(jsonPath("$[0].comments", hasSize(3)));
+            counts.add(statistics.getPrepareStatementCount());
+        }
+
+        assertThat(counts).as("число запросов для страниц размером 5, 20 и 50").containsOnly(counts.getFirst());
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+}
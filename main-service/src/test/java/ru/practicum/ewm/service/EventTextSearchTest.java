@@ -0,0 +1,113 @@
+package ru.practicum.ewm.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.practicum.ewm.PostgresTest;
+import ru.practicum.ewm.PostgresTestSupport;
+import ru.practicum.ewm.enums.TextSearchMode;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//Полнотекстовый поиск событий на PostgreSQL и переход на поиск по подстроке, когда функций поиска нет
+//или скрипт event-search-postgresql.sql не выполнился
+@PostgresTest
+class EventTextSearchTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EventTextSearch eventTextSearch;
+
+    private long inAnnotation;
+    private long inDescription;
+    private long bySubstring;
+
+    @BeforeEach
+    void fillEvents() {
+        PostgresTestSupport.clearData(jdbcTemplate);
+        long initiatorId = PostgresTestSupport.insertUser(jdbcTemplate, "initiator");
+        long categoryId = PostgresTestSupport.insertCategory(jdbcTemplate, "Музыка");
+        inAnnotation = PostgresTestSupport.insertEvent(jdbcTemplate, initiatorId, categoryId,
+                "Концерт симфонического оркестра в парке", 0, false);
+        inDescription = PostgresTestSupport.insertEvent(jdbcTemplate, initiatorId, categoryId,
+                "Вечер классической музыки под открытым небом", 0, false);
+        jdbcTemplate.update("UPDATE events SET description = 'Играют солисты камерного оркестра' WHERE id = ?",
+                inDescription);
+        //Совпадает только по подстроке: у слова "оркестровка" другая основа
+        bySubstring = PostgresTestSupport.insertEvent(jdbcTemplate, initiatorId, categoryId,
+                "Лекция про оркестровку киномузыки", 0, false);
+        PostgresTestSupport.insertEvent(jdbcTemplate, initiatorId, categoryId,
+                "Выставка современного искусства", 0, false);
+    }
+
+    @Test
+    void fullTextSearchRanksAnnotationMatchesFirst() throws Exception {
+        //Индексы строятся скриптом заново, CONCURRENTLY вне транзакции
+        jdbcTemplate.execute("DROP INDEX events_search_idx, events_annotation_trgm_idx, events_description_trgm_idx");
+        eventTextSearch.afterSingletonsInstantiated();
+        assertThat(eventTextSearch.mode()).isEqualTo(TextSearchMode.FULL_TEXT_OR_SUBSTRING);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM pg_index i JOIN pg_class c " +
+                "ON c.oid = i.indexrelid WHERE i.indisvalid AND c.relname IN ('events_search_idx', " +
+                "'events_annotation_trgm_idx', 'events_description_trgm_idx')", Integer.class)).isEqualTo(3);
+
+        //Словоформа находится полнотекстовым поиском, совпадение в аннотации весит больше
+        mockMvc.perform(get("/events").param("text", "оркестры").param("sort", "RELEVANCE"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains((int) inAnnotation, (int) inDescription)));
+
+        //Подстрока дополняет полнотекстовые совпадения
+        mockMvc.perform(get("/events").param("text", "оркестр").param("sort", "RELEVANCE"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", containsInAnyOrder((int) inAnnotation, (int) inDescription,
+                        (int) bySubstring)));
+    }
+
+    @Test
+    void searchFallsBackToSubstringWithoutFunctions() throws Exception {
+        jdbcTemplate.execute("DROP FUNCTION event_search_matches(TEXT, TEXT, TEXT)");
+        jdbcTemplate.execute("DROP FUNCTION event_search_rank(TEXT, TEXT, TEXT)");
+        ReflectionTestUtils.setField(eventTextSearch, "applySchema", false);
+        try {
+            eventTextSearch.afterSingletonsInstantiated();
+            assertThat(eventTextSearch.mode()).isEqualTo(TextSearchMode.SUBSTRING);
+
+            mockMvc.perform(get("/events").param("text", "оркестр").param("sort", "RELEVANCE"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[*].id", containsInAnyOrder((int) inAnnotation, (int) inDescription,
+                            (int) bySubstring)));
+        } finally {
+            restoreFullText();
+        }
+    }
+
+    @Test
+    void failedSchemaScriptDoesNotStopStartup() {
+        //Функция с другим типом результата: CREATE OR REPLACE FUNCTION из скрипта завершается ошибкой
+        jdbcTemplate.execute("DROP FUNCTION event_search_rank(TEXT, TEXT, TEXT)");
+        jdbcTemplate.execute("CREATE FUNCTION event_search_rank(annotation TEXT, description TEXT, query TEXT) " +
+                "RETURNS integer LANGUAGE sql AS 'SELECT 0'");
+        try {
+            eventTextSearch.afterSingletonsInstantiated();
+            assertThat(eventTextSearch.mode()).isEqualTo(TextSearchMode.SUBSTRING);
+        } finally {
+            jdbcTemplate.execute("DROP FUNCTION event_search_rank(TEXT, TEXT, TEXT)");
+            restoreFullText();
+        }
+    }
+
+    private void restoreFullText() {
+        ReflectionTestUtils.setField(eventTextSearch, "applySchema", true);
+        eventTextSearch.afterSingletonsInstantiated();
+        assertThat(eventTextSearch.mode()).isEqualTo(TextSearchMode.FULL_TEXT_OR_SUBSTRING);
+    }
+}
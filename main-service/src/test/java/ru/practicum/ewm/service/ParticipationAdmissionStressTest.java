@@ -0,0 +1,149 @@
+package ru.practicum.ewm.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.ewm.PostgresTest;
+import ru.practicum.ewm.PostgresTestSupport;
+import ru.practicum.ewm.dto.EventRequestStatusUpdateRequest;
+import ru.practicum.ewm.dto.EventRequestStatusUpdateResult;
+import ru.practicum.ewm.enums.RequestStatus;
+import ru.practicum.ewm.exception.ValidationException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Сотни участников одновременно подают заявки на популярные события: лимит участников не превышается,
+//а заявка, которой не досталось места, откатывается вместе со своей транзакцией
+@PostgresTest
+class ParticipationAdmissionStressTest {
+    private static final int REQUESTERS = 400;
+    private static final int LIMIT = 50;
+
+    @Autowired
+    private ParticipationRequestService participationRequestService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long initiatorId;
+    private long categoryId;
+    private final List<Long> requesters = new ArrayList<>();
+
+    @BeforeEach
+    void fillUsers() {
+        PostgresTestSupport.clearData(jdbcTemplate);
+        initiatorId = PostgresTestSupport.insertUser(jdbcTemplate, "initiator");
+        categoryId = PostgresTestSupport.insertCategory(jdbcTemplate, "Концерты");
+        requesters.clear();
+        for (int i = 0; i < REQUESTERS; i++) {
+            requesters.add(PostgresTestSupport.insertUser(jdbcTemplate, "requester" + i));
+        }
+    }
+
+    @Test
+    void concurrentRequestsNeverOversellEvent() throws Exception {
+        long hot = PostgresTestSupport.insertEvent(jdbcTemplate, initiatorId, categoryId,
+                "Популярное событие с лимитом", LIMIT, false);
+        long other = PostgresTestSupport.insertEvent(jdbcTemplate, initiatorId, categoryId,
+                "Событие с большим лимитом", REQUESTERS, false);
+
+        List<Callable<HttpStatus>> tasks = new ArrayList<>();
+        for (Long requester : requesters) {
+            tasks.add(() -> createRequest(requester, hot));
+            tasks.add(() -> createRequest(requester, other));
+        }
+        List<HttpStatus> outcomes = runConcurrently(tasks);
+
+        List<HttpStatus> hotOutcomes = new ArrayList<>();
+        for (int i = 0; i < outcomes.size(); i += 2) {
+            hotOutcomes.add(outcomes.get(i));
+        }
+        assertThat(hotOutcomes).filteredOn(HttpStatus.CREATED::equals).hasSize(LIMIT);
+        assertThat(hotOutcomes).filteredOn(HttpStatus.CONFLICT::equals).hasSize(REQUESTERS - LIMIT);
+        assertSeats(hot, LIMIT);
+        //Отклонённые заявки откатились: в таблице только заявки, получившие место
+        assertThat(requestRows(hot)).isEqualTo(LIMIT);
+
+        assertSeats(other, REQUESTERS);
+        assertThat(requestRows(other)).isEqualTo(REQUESTERS);
+    }
+
+    @Test
+    void concurrentConfirmationsNeverOversellEvent() throws Exception {
+        long moderated = PostgresTestSupport.insertEvent(jdbcTemplate, initiatorId, categoryId,
+                "Событие с подтверждением заявок", LIMIT, true);
+        List<Long> requestIds = new ArrayList<>();
+        for (Long requester : requesters) {
+            requestIds.add(PostgresTestSupport.insertRequest(jdbcTemplate, requester, moderated, "PENDING"));
+        }
+
+        //Инициатор подтверждает заявки порциями из нескольких потоков
+        List<Callable<HttpStatus>> tasks = new ArrayList<>();
+        for (int i = 0; i < requestIds.size(); i += 8) {
+            EventRequestStatusUpdateRequest update = new EventRequestStatusUpdateRequest(
+                    requestIds.subList(i, i + 8), RequestStatus.CONFIRMED);
+            tasks.add(() -> {
+                try {
+                    EventRequestStatusUpdateResult result =
+                            participationRequestService.updateRequestStatus(initiatorId, moderated, update);
+                    assertThat(result.getConfirmedRequests().size() + result.getRejectedRequests().size())
+                            .isEqualTo(8);
+                    return HttpStatus.OK;
+                } catch (ValidationException e) {
+                    return e.getStatus();
+                }
+            });
+        }
+        runConcurrently(tasks);
+
+        assertSeats(moderated, LIMIT);
+    }
+
+    private HttpStatus createRequest(long requesterId, long eventId) {
+        try {
+            participationRequestService.createRequest(requesterId, eventId);
+            return HttpStatus.CREATED;
+        } catch (ValidationException e) {
+            return e.getStatus();
+        }
+    }
+
+    //Все задачи стартуют одновременно, каждая в своём виртуальном потоке
+    private static <T> List<T> runConcurrently(List<Callable<T>> tasks) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Callable<T> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+        }
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    private void assertSeats(long eventId, long expected) {
+        assertThat(PostgresTestSupport.confirmedRequests(jdbcTemplate, eventId)).isEqualTo(expected);
+        assertThat(PostgresTestSupport.confirmedCounter(jdbcTemplate, eventId)).isEqualTo(expected);
+    }
+
+    private long requestRows(long eventId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM participation_requests WHERE event_id = ?",
+                Long.class, eventId);
+    }
+}
@@ -0,0 +1,169 @@
+package ru.practicum.ewm.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import ru.practicum.ewm.PostgresTest;
+import ru.practicum.ewm.PostgresTestSupport;
+import ru.practicum.ewm.StatsClient;
+import ru.practicum.ewm.client.StatsCircuitBreaker;
+import ru.practicum.ewm.dto.EventFullDto;
+import ru.practicum.ewm.dto.StatsRequest;
+import ru.practicum.ewm.dto.ViewStats;
+import ru.practicum.ewm.model.EventCounters;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//Карточка опубликованного события: просмотры с момента публикации, просмотры из events.views только
+//при недоступном сервисе статистики, сброс кеша карточек при переименовании категории и при изменении
+//события во время сборки карточки
+@PostgresTest
+class PublishedEventTest {
+    private static final long SYNCED_VIEWS = 42;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private StatsClient statsClient;
+    @Autowired
+    private PublishedEventCache publishedEventCache;
+    @Autowired
+    private CacheManager cacheManager;
+
+    private long initiatorId;
+    private long categoryId;
+    private long eventId;
+    private LocalDateTime publishedOn;
+
+    @BeforeEach
+    void fillEvent() {
+        PostgresTestSupport.clearData(jdbcTemplate);
+        cacheManager.getCache(PublishedEventCache.CACHE).clear();
+        initiatorId = PostgresTestSupport.insertUser(jdbcTemplate, "initiator");
+        categoryId = PostgresTestSupport.insertCategory(jdbcTemplate, "Концерты");
+        eventId = PostgresTestSupport.insertEvent(jdbcTemplate, initiatorId, categoryId,
+                "Концерт симфонического оркестра", 0, false);
+        jdbcTemplate.update("UPDATE events SET views = ? WHERE id = ?", SYNCED_VIEWS, eventId);
+        publishedOn = jdbcTemplate.queryForObject("SELECT published_on FROM events WHERE id = ?",
+                LocalDateTime.class, eventId);
+    }
+
+    @Test
+    void viewsAreCountedSincePublication() throws Exception {
+        when(statsClient.statsBreakerState()).thenReturn(StatsCircuitBreaker.State.CLOSED);
+        when(statsClient.getStats(anyList())).thenReturn(List.of(new ViewStats("ExploreWithMe",
+                "/events/" + eventId, 7L)));
+
+        getEvent().andExpect(jsonPath("$.views", is(7)));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<StatsRequest>> requests = ArgumentCaptor.forClass(List.class);
+        verify(statsClient).getStats(requests.capture());
+        assertThat(requests.getValue()).singleElement()
+                .satisfies(request -> assertThat(request.getStart()).isEqualTo(publishedOn));
+    }
+
+    //Карточка события у инициатора запрашивает просмотры за то же окно, что и публичная
+    @Test
+    void initiatorSeesViewsSincePublication() throws Exception {
+        when(statsClient.getStats(anyList())).thenReturn(List.of(new ViewStats("ExploreWithMe",
+                "/events/" + eventId, 7L)));
+
+        mockMvc.perform(get("/users/{userId}/events/{eventId}", initiatorId, eventId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.views", is(7)));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<StatsRequest>> requests = ArgumentCaptor.forClass(List.class);
+        verify(statsClient).getStats(requests.capture());
+        assertThat(requests.getValue()).singleElement().satisfies(request -> {
+            assertThat(request.getStart()).isEqualTo(publishedOn);
+            assertThat(request.getEnd()).isNotNull();
+        });
+    }
+
+    @Test
+    void eventWithoutStatsRowHasNoViews() throws Exception {
+        when(statsClient.statsBreakerState()).thenReturn(StatsCircuitBreaker.State.CLOSED);
+        when(statsClient.getStats(anyList())).thenReturn(List.of());
+
+        getEvent().andExpect(jsonPath("$.views", is(0)));
+        mockMvc.perform(get("/events")).andExpect(jsonPath("$[0].views", is(0)));
+    }
+
+    @Test
+    void syncedViewsAreUsedWhileBreakerIsOpen() throws Exception {
+        when(statsClient.statsBreakerState()).thenReturn(StatsCircuitBreaker.State.OPEN);
+        when(statsClient.getStats(anyList())).thenReturn(List.of());
+
+        getEvent().andExpect(jsonPath("$.views", is((int) SYNCED_VIEWS)));
+        mockMvc.perform(get("/events")).andExpect(jsonPath("$[0].views", is((int) SYNCED_VIEWS)));
+    }
+
+    @Test
+    void categoryRenameEvictsEventCards() throws Exception {
+        getEvent().andExpect(jsonPath("$.category.name", is("Концерты")));
+
+        mockMvc.perform(patch("/admin/categories/{catId}", categoryId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Классическая музыка\"}"))
+                .andExpect(status().isOk());
+
+        getEvent().andExpect(jsonPath("$.category.name", is("Классическая музыка")));
+    }
+
+    @Test
+    void cardLoadedBeforeEvictionIsNotCached() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch changed = new CountDownLatch(1);
+        EventFullDto stale = EventFullDto.builder().id(eventId).title("Старое название").build();
+
+        //Карточка прочитана до изменения события, а сброс после фиксации изменения приходит до её записи в кеш
+        Thread reader = Thread.ofVirtual().start(() -> publishedEventCache.get(eventId,
+                new EventCounters(0, 0, publishedOn), () -> {
+                    loading.countDown();
+                    await(changed);
+                    return stale;
+                }));
+        loading.await();
+        Thread writer = Thread.ofVirtual().start(() -> publishedEventCache.evict(eventId));
+        Thread.sleep(200);
+        changed.countDown();
+        reader.join();
+        writer.join();
+
+        assertThat(cacheManager.getCache(PublishedEventCache.CACHE).get(eventId)).isNull();
+    }
+
+    private ResultActions getEvent() throws Exception {
+        return mockMvc.perform(get("/events/{id}", eventId)).andExpect(status().isOk());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ru.practicum.ewm.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import ru.practicum.ewm.exception.ValidationException;
+import ru.practicum.ewm.model.Event;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ScrollCursorTest {
+    private static final Sort BY_DATE = Sort.by(Sort.Direction.ASC, "eventDate", "id");
+    private static final Sort BY_VIEWS = Sort.by(Sort.Direction.DESC, "views").and(Sort.by("id"));
+
+    @Test
+    void encodedKeysAreDecodedBack() {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put("eventDate", LocalDateTime.of(2030, 1, 1, 10, 0));
+        keys.put("id", 3L);
+
+        assertThat(ScrollCursor.keys(ScrollCursor.encode(keys), BY_DATE, Event.class)).isEqualTo(keys);
+    }
+
+    //Счётчик просмотров - примитивный long, значение курсора - Long
+    @Test
+    void primitiveAttributeAcceptsBoxedValue() {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put("views", 10L);
+        keys.put("id", 3L);
+
+        assertThat(ScrollCursor.keys(ScrollCursor.encode(keys), BY_VIEWS, Event.class)).isEqualTo(keys);
+    }
+
+    //Число вместо даты в подделанном курсоре не доходит до условия выборки
+    @Test
+    void valueOfWrongTypeIsRejected() {
+        assertInvalid(raw("eventDate=l5;id=l3"), BY_DATE);
+        assertInvalid(raw("eventDate=t2030-01-01T10:00;id=t2030-01-01T10:00"), BY_DATE);
+        assertInvalid(raw("views=t2030-01-01T10:00;id=l3"), BY_VIEWS);
+    }
+
+    @Test
+    void cursorOfAnotherSortIsRejected() {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put("views", 10L);
+        keys.put("id", 3L);
+
+        assertInvalid(ScrollCursor.encode(keys), BY_DATE);
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertInvalid("не base64", BY_DATE);
+        assertInvalid(raw("eventDate=x5;id=l3"), BY_DATE);
+        assertInvalid(raw("eventDate=t2030-13-01T10:00;id=l3"), BY_DATE);
+        assertInvalid(raw("eventDate;id=l3"), BY_DATE);
+    }
+
+    private static void assertInvalid(String cursor, Sort sort) {
+        assertThatThrownBy(() -> ScrollCursor.position(cursor, sort, Event.class))
+                .isInstanceOfSatisfying(ValidationException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+
+    private static String raw(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
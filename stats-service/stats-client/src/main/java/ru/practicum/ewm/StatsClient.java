@@ -1,62 +1,230 @@
 package ru.practicum.ewm;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClient;
+import ru.practicum.ewm.client.HitBuffer;
+import ru.practicum.ewm.client.HitSpool;
+import ru.practicum.ewm.client.LastKnownStats;
+import ru.practicum.ewm.client.StatsCache;
+import ru.practicum.ewm.client.StatsCircuitBreaker;
+import ru.practicum.ewm.client.StatsClientProperties;
+import ru.practicum.ewm.client.StatsHttpTransport;
 import ru.practicum.ewm.dto.EndpointHitDto;
+import ru.practicum.ewm.dto.StatsQuery;
 import ru.practicum.ewm.dto.StatsRequest;
 import ru.practicum.ewm.dto.ViewStats;
 
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Component
+@EnableConfigurationProperties(StatsClientProperties.class)
 public class StatsClient {
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String HIT_BATCH_URI = "/hit/batch";
+    private static final String STATS_QUERY_URI = "/stats/query";
+    private static final String STATS_URI = "/stats?start={start}&end={end}&unique={unique}";
+    private static final ParameterizedTypeReference<List<ViewStats>> VIEW_STATS_LIST =
+            new ParameterizedTypeReference<>() {
+            };
+
+    private final HttpComponentsClientHttpRequestFactory requestFactory;
     private final RestClient restClient;
+    private final HitBuffer hitBuffer;
+    private final HitSpool hitSpool;
+    private final ScheduledExecutorService spoolScheduler;
+    private final int batchSize;
+    private final Counter rejectedHits;
+    //null, если кеш ответов статистики выключен
+    private final StatsCache statsCache;
+    private final StatsCircuitBreaker statsBreaker;
+    private final LastKnownStats lastKnownStats;
 
-    public StatsClient(@Value("${stats-server.url}") String statsServerUrl) {
-        this.restClient = RestClient.builder().baseUrl(statsServerUrl).build();
+    public StatsClient(@Value("${stats-server.url}") String statsServerUrl, StatsClientProperties properties,
+                       MeterRegistry meterRegistry) {
+        StatsClientProperties.Hits hits = properties.hits();
+        StatsClientProperties.Spool spool = properties.spool();
+        StatsClientProperties.Http http = properties.http();
+        StatsClientProperties.Breaker breaker = properties.breaker();
+        StatsClientProperties.Cache cache = properties.statsCache();
+        this.requestFactory = StatsHttpTransport.requestFactory(http.maxConnections(), http.connectTimeout(),
+                http.responseTimeout(), http.connectionRequestTimeout(), meterRegistry);
+        this.restClient = RestClient.builder()
+                .baseUrl(statsServerUrl)
+                .requestFactory(requestFactory)
+                .build();
+        this.batchSize = hits.batchSize();
+        //Тот же счётчик, что у буфера хитов: пачки, отклонённые сервером статистики (4xx)
+        this.rejectedHits = Counter.builder("stats.client.hits.dropped")
+                .tag("reason", "rejected")
+                .register(meterRegistry);
+        this.hitSpool = new HitSpool(spool.path(), spool.maxSize().toBytes(), meterRegistry);
+        this.hitBuffer = new HitBuffer(hits.queueCapacity(), hits.batchSize(), hits.flushInterval(),
+                hits.overflowPolicy(), this::sendHits, hitSpool::append, meterRegistry);
+        //Отдельные потоки повторной отправки и сброса спула на диск: долгий повтор не задерживает сброс
+        this.spoolScheduler = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "stats-spool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.spoolScheduler.scheduleWithFixedDelay(this::replaySpool, spool.replayInterval().toMillis(),
+                spool.replayInterval().toMillis(), TimeUnit.MILLISECONDS);
+        this.spoolScheduler.scheduleWithFixedDelay(hitSpool::sync, spool.syncInterval().toMillis(),
+                spool.syncInterval().toMillis(), TimeUnit.MILLISECONDS);
+        this.statsBreaker = new StatsCircuitBreaker(breaker.windowSize(), breaker.minimumCalls(),
+                breaker.failureRateThreshold(), breaker.slowCallDuration(), breaker.openDuration(),
+                breaker.probeCalls(), breaker.maxConcurrentCalls(), breaker.bulkheadWait(), meterRegistry);
+        this.lastKnownStats = new LastKnownStats(properties.lastKnown().maxSize(), properties.lastKnown().maxAge(),
+                meterRegistry);
+        this.statsCache = cache.enabled()
+                ? new StatsCache(this::fetchStats, cache.ttl(), cache.bucket(), cache.maxSize(), meterRegistry)
+                : null;
     }
 
-    //Сохранение информации о том, что к эндпоинту был запрос
+    //Сохранение информации о том, что к эндпоинту был запрос.
+    //Хит ставится в очередь и уходит на сервер статистики фоновой пачкой, вызывающий поток не ждёт ответа
     public void sendHit(EndpointHitDto endPointHitDto) {
+        hitBuffer.offer(endPointHitDto);
+    }
+
+    //Пакетное сохранение информации о запросах к эндпоинтам одним HTTP-запросом
+    public void sendHits(List<EndpointHitDto> endPointHitDtos) {
+        if (endPointHitDtos.isEmpty()) {
+            return;
+        }
         restClient.post()
-                .uri("/hit")
-                .body(endPointHitDto)
+                .uri(HIT_BATCH_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(endPointHitDtos)
                 .retrieve()
                 .toBodilessEntity();
     }
 
+    @PreDestroy
+    public void close() {
+        spoolScheduler.shutdownNow();
+        hitBuffer.close();
+        hitSpool.close();
+        try {
+            requestFactory.destroy();
+        } catch (Exception e) {
+            log.warn("Ошибка закрытия HTTP-клиента статистики: {}", e.getMessage());
+        }
+    }
+
+    //Повторная отправка хитов из спула. Первая же пачка, не отправленная из-за сбоя связи или ошибки сервера
+    //(5xx), прерывает проход до следующего запуска; записи удаляются из спула только после ответа сервера
+    //статистики. Пачка, отклонённая как некорректная (4xx), удаляется из спула, чтобы не задерживать остальные
+    private void replaySpool() {
+        try {
+            while (!hitSpool.isEmpty()) {
+                HitSpool.Batch batch = hitSpool.peek(batchSize);
+                try {
+                    sendHits(batch.hits());
+                    log.info("Из спула повторно отправлено {} хитов", batch.hits().size());
+                } catch (HttpClientErrorException e) {
+                    rejectedHits.increment(batch.hits().size());
+                    log.error("Сервер статистики отклонил пачку из {} хитов спула, пачка отброшена: {} - {}",
+                            batch.hits().size(), e.getStatusCode(), e.getResponseBodyAsString());
+                }
+                hitSpool.commit(batch.endSeq());
+            }
+        } catch (Exception e) {
+            log.debug("Сервер статистики недоступен, в спуле {} хитов: {}", hitSpool.size(), e.getMessage());
+        }
+    }
+
     //Получение статистики по посещениям.
+    //Запросы с заданными uri уходят одним POST /stats/query, каждый uri - со своим окном (start, end),
+    //запросы без uri (по всем эндпоинтам) выполняются через GET /stats
     public List<ViewStats> getStats(List<StatsRequest> statsRequests) {
         List<ViewStats> allStats = new ArrayList<>();
+        List<StatsQuery> queries = new ArrayList<>();
         for (StatsRequest statsRequest : statsRequests) {
+            if (statsRequest.getUris() == null || statsRequest.getUris().isEmpty()) {
+                allStats.addAll(getStats(statsRequest));
+            } else {
+                statsRequest.getUris().forEach(uri -> queries.add(new StatsQuery(uri, statsRequest.getStart(),
+                        statsRequest.getEnd(), statsRequest.isUnique())));
+            }
+        }
+        allStats.addAll(queryStats(queries));
+        return allStats;
+    }
+
+    private List<ViewStats> queryStats(List<StatsQuery> queries) {
+        if (queries.isEmpty()) {
+            return List.of();
+        }
+        try {
+            return statsCache == null ? fetchStats(queries).stats() : statsCache.get(queries);
+        } catch (Exception e) {
+            log.error("Ошибка при запросе статистики: {}", e.getMessage(), e);
+        }
+        return List.of();
+    }
+
+    //Состояние выключателя запросов статистики: не CLOSED - просмотры отдаются по последним известным значениям
+    public StatsCircuitBreaker.State statsBreakerState() {
+        return statsBreaker.state();
+    }
+
+    //Запрос через выключатель: пока сервер статистики недоступен или отвечает медленно, отдаются последние
+    //известные значения. Ошибки в самом запросе (4xx) сервер не характеризуют и выключатель не размыкают.
+    //Запасные ответы помечаются, чтобы кеш ответов их не сохранял
+    private StatsCache.Loaded fetchStats(List<StatsQuery> queries) {
+        return statsBreaker.execute(() -> {
             try {
-                List<ViewStats> stats = restClient.get()
-                        .uri(uriBuilder -> uriBuilder.path("/stats")
-                                .queryParam("start", DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
-                                        .format(statsRequest.getStart()))
-                                .queryParam("end", DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
-                                        .format(statsRequest.getEnd()))
-                                .queryParam("uris", statsRequest.getUris())
-                                .queryParam("unique", statsRequest.isUnique())
-                                .build())
+                List<ViewStats> stats = restClient.post()
+                        .uri(STATS_QUERY_URI)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(queries)
                         .retrieve()
-                        .body(new ParameterizedTypeReference<>() {
-                        });
-                assert stats != null;
-                allStats.addAll(stats);
-            } catch (HttpStatusCodeException e) {
+                        .body(VIEW_STATS_LIST);
+                stats = stats == null ? List.of() : stats;
+                lastKnownStats.remember(queries, stats);
+                return StatsCache.Loaded.fresh(stats);
+            } catch (HttpClientErrorException e) {
                 log.error("Ошибка получения статистики: {} - {}", e.getStatusCode(), e.getResponseBodyAsString());
-            } catch (Exception e) {
-                log.error("Ошибка при запросе статистики: {}", e.getMessage(), e);
+                return StatsCache.Loaded.fallback(List.of());
             }
+        }, () -> StatsCache.Loaded.fallback(lastKnownStats.lookup(queries)));
+    }
+
+    private List<ViewStats> getStats(StatsRequest statsRequest) {
+        try {
+            //Как и в fetchStats, ошибка в самом запросе (4xx) не считается отказом сервера
+            return statsBreaker.execute(() -> {
+                try {
+                    List<ViewStats> stats = restClient.get()
+                            .uri(STATS_URI, DATE_TIME_FORMATTER.format(statsRequest.getStart()),
+                                    DATE_TIME_FORMATTER.format(statsRequest.getEnd()), statsRequest.isUnique())
+                            .retrieve()
+                            .body(VIEW_STATS_LIST);
+                    return stats == null ? List.<ViewStats>of() : stats;
+                } catch (HttpClientErrorException e) {
+                    log.error("Ошибка получения статистики: {} - {}", e.getStatusCode(), e.getResponseBodyAsString());
+                    return List.<ViewStats>of();
+                }
+            }, List::of);
+        } catch (Exception e) {
+            log.error("Ошибка при запросе статистики: {}", e.getMessage(), e);
         }
-        return allStats;
+        return List.of();
     }
 }
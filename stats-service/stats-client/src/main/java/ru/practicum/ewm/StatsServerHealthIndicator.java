@@ -0,0 +1,25 @@
+package ru.practicum.ewm;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.client.StatsCircuitBreaker;
+
+//Состояние выключателя запросов статистики в /actuator/health (компонент statsServer).
+//Сервис работает и без сервера статистики, поэтому статус всегда UP, а разомкнутый выключатель
+//видно по деталям: просмотры в это время отдаются по последним известным значениям
+@Component
+@RequiredArgsConstructor
+public class StatsServerHealthIndicator implements HealthIndicator {
+    private final StatsClient statsClient;
+
+    @Override
+    public Health health() {
+        StatsCircuitBreaker.State state = statsClient.statsBreakerState();
+        return Health.up()
+                .withDetail("breaker", state)
+                .withDetail("staleViews", state != StatsCircuitBreaker.State.CLOSED)
+                .build();
+    }
+}
@@ -0,0 +1,187 @@
+package ru.practicum.ewm.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.client.HttpClientErrorException;
+import ru.practicum.ewm.dto.EndpointHitDto;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Ограниченная очередь хитов с фоновой отправкой пачками.
+ * Пачка уходит, когда набрано batchSize хитов или истёк flushInterval с момента первого хита в пачке.
+ * Пачка, которую не удалось отправить из-за сбоя связи или ошибки сервера (5xx), передаётся в резервный
+ * приёмник spill. Пачку, отклонённую сервером как некорректную (4xx), повтор не исправит: она отбрасывается.
+ * При остановке оставшиеся хиты досылаются до завершения потока отправки.
+ */
+@Slf4j
+public class HitBuffer implements AutoCloseable {
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+
+    private final BlockingQueue<EndpointHitDto> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final HitOverflowPolicy overflowPolicy;
+    private final Consumer<List<EndpointHitDto>> sink;
+    private final Consumer<List<EndpointHitDto>> spill;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private final Timer flushTimer;
+    private final Counter overflowDrops;
+    private final Counter spillDrops;
+    private final Counter rejectedDrops;
+    private final Counter spilled;
+
+    public HitBuffer(int capacity, int batchSize, Duration flushInterval, HitOverflowPolicy overflowPolicy,
+                     Consumer<List<EndpointHitDto>> sink, Consumer<List<EndpointHitDto>> spill,
+                     MeterRegistry meterRegistry) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.overflowPolicy = overflowPolicy;
+        this.sink = sink;
+        this.spill = spill;
+
+        Gauge.builder("stats.client.hits.queue.depth", queue, BlockingQueue::size)
+                .description("Количество хитов, ожидающих отправки")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("stats.client.hits.flush")
+                .description("Время отправки пачки хитов")
+                .register(meterRegistry);
+        this.overflowDrops = Counter.builder("stats.client.hits.dropped")
+                .tag("reason", "overflow")
+                .register(meterRegistry);
+        this.spillDrops = Counter.builder("stats.client.hits.dropped")
+                .tag("reason", "spill_failed")
+                .register(meterRegistry);
+        this.rejectedDrops = Counter.builder("stats.client.hits.dropped")
+                .tag("reason", "rejected")
+                .register(meterRegistry);
+        this.spilled = Counter.builder("stats.client.hits.spilled")
+                .register(meterRegistry);
+
+        this.flusher = new Thread(this::flushLoop, "stats-hit-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public void offer(EndpointHitDto hit) {
+        switch (overflowPolicy) {
+            case DROP_OLDEST -> {
+                while (!queue.offer(hit)) {
+                    if (queue.poll() != null) {
+                        overflowDrops.increment();
+                    }
+                }
+            }
+            case BLOCK -> {
+                try {
+                    queue.put(hit);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    overflowDrops.increment();
+                }
+            }
+            case SPILL -> {
+                if (!queue.offer(hit)) {
+                    spill(List.of(hit));
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join(SHUTDOWN_TIMEOUT.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            log.warn("Не удалось дослать {} хитов при остановке", queue.size());
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                List<EndpointHitDto> batch = nextBatch();
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            flush(batch);
+            batch = new ArrayList<>(batchSize);
+        }
+    }
+
+    private List<EndpointHitDto> nextBatch() throws InterruptedException {
+        List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+        EndpointHitDto first = queue.take();
+        batch.add(first);
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                break;
+            }
+            EndpointHitDto next;
+            try {
+                next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                //Остановка: уже собранная пачка отправляется, остаток очереди дошлёт flushLoop
+                break;
+            }
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private void flush(List<EndpointHitDto> batch) {
+        try {
+            flushTimer.record(() -> sink.accept(batch));
+        } catch (HttpClientErrorException e) {
+            rejectedDrops.increment(batch.size());
+            log.error("Сервер статистики отклонил пачку из {} хитов, пачка отброшена: {} - {}", batch.size(),
+                    e.getStatusCode(), e.getResponseBodyAsString());
+        } catch (Exception e) {
+            log.warn("Ошибка отправки пачки из {} хитов, пачка передана в спул: {}", batch.size(), e.getMessage());
+            spill(batch);
+        }
+    }
+
+    private void spill(List<EndpointHitDto> hits) {
+        try {
+            spill.accept(hits);
+            spilled.increment(hits.size());
+        } catch (Exception e) {
+            spillDrops.increment(hits.size());
+            log.error("Ошибка сохранения {} хитов в резервный приёмник: {}", hits.size(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package ru.practicum.ewm.client;
+
+//Поведение буфера хитов при заполненной очереди
+public enum HitOverflowPolicy {
+    //Вытеснить самый старый хит из очереди
+    DROP_OLDEST,
+    //Заблокировать вызывающий поток до освобождения места
+    BLOCK,
+    //Записать хит в обход очереди в локальный спул на диске
+    SPILL
+}
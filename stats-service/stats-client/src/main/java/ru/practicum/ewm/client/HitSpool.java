@@ -0,0 +1,440 @@
+package ru.practicum.ewm.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.ewm.dto.EndpointHitDto;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Локальный спул хитов в отображённом в память файле фиксированного размера.
+ * <p>
+ * Файл - кольцевой журнал записей вида [длина][crc32c][порядковый номер][хит], в заголовке хранится
+ * позиция и номер первой непрочитанной записи. При открытии журнал сканируется от этой позиции, пока
+ * номера идут подряд и сходятся контрольные суммы: так отбрасывается недописанная последняя запись и
+ * устаревшие записи предыдущих кругов. Когда новая запись не помещается, вытесняются самые старые записи.
+ * <p>
+ * Записи попадают в отображённую память и переживают падение процесса сразу, а на диск файл сбрасывается
+ * вызовом sync по расписанию: одно fsync на период, а не на каждый хит. При сбое ОС теряются записи
+ * последнего периода. Файл другой версии формата не читается: он переименовывается в *.v{версия} и
+ * вместо него создаётся новый спул. Если размер файла отличается от заданного maxBytes, файл при открытии
+ * перестраивается под новый размер с переносом неотправленных записей; при уменьшении не поместившиеся
+ * самые старые записи вытесняются.
+ */
+@Slf4j
+public class HitSpool implements AutoCloseable {
+    private static final int MAGIC = 0x45574D53;
+    private static final int VERSION = 1;
+    private static final int VERSION_POS = 4;
+    private static final int HEADER_SIZE = 64;
+    private static final int READ_OFFSET_POS = 8;
+    private static final int READ_SEQ_POS = 16;
+    private static final int RECORD_HEADER_SIZE = 16;
+    private static final int WRAP_MARKER = -1;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private final FileChannel channel;
+    private final FileLock lock;
+    //Не монитор: под блокировкой файл сбрасывается на диск (force), и виртуальный поток, ждущий диска
+    //внутри synchronized, занимал бы поток-носитель
+    private final ReentrantLock spoolLock = new ReentrantLock();
+    //Меняются только при открытии, если размер файла отличается от заданного
+    private MappedByteBuffer buffer;
+    private int capacity;
+
+    private int readOffset;
+    private long readSeq;
+    private int writeOffset;
+    private long writeSeq;
+    //Есть изменения, ещё не сброшенные на диск
+    private boolean dirty;
+
+    private final Counter evicted;
+    private final Counter rejected;
+
+    public HitSpool(Path path, long maxBytes, MeterRegistry meterRegistry) {
+        int targetCapacity = (int) Math.min(Integer.MAX_VALUE, maxBytes);
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            FileLock fileLock = openLocked(path);
+            int version = storedVersion(fileLock.channel());
+            if (version != VERSION && version != 0) {
+                fileLock.channel().close();
+                Path rejectedPath = path.resolveSibling(path.getFileName() + ".v" + version);
+                Files.move(path, rejectedPath, StandardCopyOption.REPLACE_EXISTING);
+                log.warn("Спул {} версии {} не поддерживается и перенесён в {}", path, version, rejectedPath);
+                fileLock = openLocked(path);
+            }
+            this.lock = fileLock;
+            this.channel = fileLock.channel();
+            long existingSize = channel.size();
+            boolean fresh = existingSize < HEADER_SIZE;
+            this.capacity = fresh ? targetCapacity : (int) Math.min(Integer.MAX_VALUE, existingSize);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть файл спула " + path, e);
+        }
+
+        if (buffer.getInt(0) == MAGIC && isValidOffset(buffer.getLong(READ_OFFSET_POS))) {
+            readOffset = (int) buffer.getLong(READ_OFFSET_POS);
+            readSeq = buffer.getLong(READ_SEQ_POS);
+        } else {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(VERSION_POS, VERSION);
+            readOffset = HEADER_SIZE;
+            readSeq = 0;
+            writeHeader();
+        }
+        recover();
+
+        Gauge.builder("stats.client.spool.records", this, HitSpool::size)
+                .description("Количество хитов в локальном спуле")
+                .register(meterRegistry);
+        Gauge.builder("stats.client.spool.bytes", this, HitSpool::usedBytes)
+                .description("Занятый объём локального спула")
+                .register(meterRegistry);
+        this.evicted = Counter.builder("stats.client.spool.evicted")
+                .description("Хиты, вытесненные из спула при нехватке места")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("stats.client.spool.rejected")
+                .description("Хиты, не поместившиеся в спул целиком")
+                .register(meterRegistry);
+
+        if (capacity != targetCapacity) {
+            resize(path, targetCapacity);
+        }
+        log.info("Открыт спул хитов {}: {} записей к повторной отправке", path, size());
+    }
+
+    public void append(List<EndpointHitDto> hits) {
+        spoolLock.lock();
+        try {
+            for (EndpointHitDto hit : hits) {
+                byte[] payload = encode(hit);
+                int recordSize = RECORD_HEADER_SIZE + payload.length;
+                if (recordSize > capacity - HEADER_SIZE) {
+                    rejected.increment();
+                    continue;
+                }
+                while (!fits(recordSize)) {
+                    advanceRead();
+                    evicted.increment();
+                }
+                if (writeOffset + recordSize > capacity) {
+                    if (writeOffset + Integer.BYTES <= capacity) {
+                        buffer.putInt(writeOffset, WRAP_MARKER);
+                    }
+                    writeOffset = HEADER_SIZE;
+                }
+                buffer.putInt(writeOffset, payload.length);
+                buffer.putLong(writeOffset + 8, writeSeq);
+                buffer.put(writeOffset + RECORD_HEADER_SIZE, payload);
+                buffer.putInt(writeOffset + 4, checksum(writeOffset, payload.length));
+                writeOffset += recordSize;
+                writeSeq++;
+            }
+            writeHeader();
+            dirty = true;
+        } finally {
+            spoolLock.unlock();
+        }
+    }
+
+    //Сброс изменений на диск, если они есть; ошибка сброса не прерывает расписание, сброс повторится
+    public void sync() {
+        spoolLock.lock();
+        try {
+            if (dirty) {
+                buffer.force();
+                dirty = false;
+            }
+        } catch (UncheckedIOException e) {
+            log.warn("Ошибка сброса спула на диск: {}", e.getMessage());
+        } finally {
+            spoolLock.unlock();
+        }
+    }
+
+    //Чтение до max записей без удаления; удаляются они только вызовом commit после успешной отправки
+    public Batch peek(int max) {
+        spoolLock.lock();
+        try {
+            List<EndpointHitDto> hits = new ArrayList<>(Math.min(max, (int) Math.min(size(), Integer.MAX_VALUE)));
+            int position = readOffset;
+            long seq = readSeq;
+            while (seq < writeSeq && hits.size() < max) {
+                position = normalize(position);
+                int length = buffer.getInt(position);
+                hits.add(decode(buffer.slice(position + RECORD_HEADER_SIZE, length)));
+                position += RECORD_HEADER_SIZE + length;
+                seq++;
+            }
+            return new Batch(hits, seq);
+        } finally {
+            spoolLock.unlock();
+        }
+    }
+
+    //Удаление записей с номерами меньше endSeq; уже вытесненные записи пропускаются
+    public void commit(long endSeq) {
+        spoolLock.lock();
+        try {
+            while (readSeq < endSeq && !isEmpty()) {
+                advanceRead();
+            }
+            writeHeader();
+            dirty = true;
+        } finally {
+            spoolLock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        spoolLock.lock();
+        try {
+            return readSeq == writeSeq;
+        } finally {
+            spoolLock.unlock();
+        }
+    }
+
+    public long size() {
+        spoolLock.lock();
+        try {
+            return writeSeq - readSeq;
+        } finally {
+            spoolLock.unlock();
+        }
+    }
+
+    public long usedBytes() {
+        spoolLock.lock();
+        try {
+            if (isEmpty()) {
+                return 0;
+            }
+            return writeOffset > readOffset ? writeOffset - readOffset
+                    : (capacity - readOffset) + (writeOffset - HEADER_SIZE);
+        } finally {
+            spoolLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        spoolLock.lock();
+        try {
+            try {
+                writeHeader();
+                buffer.force();
+                lock.release();
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Ошибка закрытия файла спула: {}", e.getMessage());
+            }
+        } finally {
+            spoolLock.unlock();
+        }
+    }
+
+    private static FileLock openLocked(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        FileLock fileLock = channel.tryLock();
+        if (fileLock == null) {
+            channel.close();
+            throw new IllegalStateException("Файл спула " + path + " занят другим процессом");
+        }
+        return fileLock;
+    }
+
+    //Версия формата из заголовка; 0 - файл новый или не является спулом
+    private static int storedVersion(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(VERSION_POS + Integer.BYTES);
+        if (channel.size() < HEADER_SIZE || channel.read(header, 0) < header.capacity()) {
+            return 0;
+        }
+        return header.getInt(0) == MAGIC ? header.getInt(VERSION_POS) : 0;
+    }
+
+    //Перестройка файла под новый размер: неотправленные записи читаются в память, файл отображается заново
+    //и записи дописываются с номерами после прежних, чтобы остатки старого журнала не приняли за новые записи
+    private void resize(Path path, int newCapacity) {
+        spoolLock.lock();
+        try {
+            List<EndpointHitDto> pending = peek(Integer.MAX_VALUE).hits();
+            int previousCapacity = capacity;
+            if (newCapacity < previousCapacity) {
+                channel.truncate(newCapacity);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, newCapacity);
+            capacity = newCapacity;
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(VERSION_POS, VERSION);
+            readSeq = writeSeq;
+            resetEmpty();
+            append(pending);
+            buffer.force();
+            dirty = false;
+            log.warn("Размер спула {} изменён с {} до {} байт, перенесено {} из {} неотправленных хитов", path,
+                    previousCapacity, newCapacity, size(), pending.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось изменить размер файла спула " + path, e);
+        } finally {
+            spoolLock.unlock();
+        }
+    }
+
+    private void recover() {
+        int position = readOffset;
+        long seq = readSeq;
+        while (true) {
+            int candidate = normalize(position);
+            int length = validRecordLength(candidate, seq);
+            if (length < 0) {
+                writeOffset = candidate;
+                break;
+            }
+            position = candidate + RECORD_HEADER_SIZE + length;
+            seq++;
+        }
+        writeSeq = seq;
+        if (isEmpty()) {
+            resetEmpty();
+        }
+    }
+
+    private boolean fits(int recordSize) {
+        if (isEmpty()) {
+            return true;
+        }
+        if (writeOffset > readOffset) {
+            return writeOffset + recordSize <= capacity || HEADER_SIZE + recordSize <= readOffset;
+        }
+        return writeOffset < readOffset && writeOffset + recordSize <= readOffset;
+    }
+
+    private void advanceRead() {
+        int position = normalize(readOffset);
+        readOffset = position + RECORD_HEADER_SIZE + buffer.getInt(position);
+        readSeq++;
+        if (isEmpty()) {
+            resetEmpty();
+        }
+    }
+
+    private void resetEmpty() {
+        readOffset = HEADER_SIZE;
+        writeOffset = HEADER_SIZE;
+        writeHeader();
+    }
+
+    private int normalize(int position) {
+        if (position + RECORD_HEADER_SIZE > capacity || buffer.getInt(position) == WRAP_MARKER) {
+            return HEADER_SIZE;
+        }
+        return position;
+    }
+
+    private int validRecordLength(int position, long expectedSeq) {
+        int length = buffer.getInt(position);
+        if (length <= 0 || (long) position + RECORD_HEADER_SIZE + length > capacity) {
+            return -1;
+        }
+        if (buffer.getLong(position + 8) != expectedSeq) {
+            return -1;
+        }
+        if (buffer.getInt(position + 4) != checksum(position, length)) {
+            return -1;
+        }
+        return length;
+    }
+
+    private int checksum(int position, int payloadLength) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(position + 8, 8 + payloadLength));
+        return (int) crc.getValue();
+    }
+
+    private boolean isValidOffset(long offset) {
+        return offset >= HEADER_SIZE && offset <= capacity;
+    }
+
+    private void writeHeader() {
+        buffer.putLong(READ_OFFSET_POS, readOffset);
+        buffer.putLong(READ_SEQ_POS, readSeq);
+    }
+
+    private static byte[] encode(EndpointHitDto hit) {
+        byte[] app = bytes(hit.getApp());
+        byte[] uri = bytes(hit.getUri());
+        byte[] ip = bytes(hit.getIp());
+        ByteBuffer out = ByteBuffer.allocate(Long.BYTES + Integer.BYTES + 3 * Integer.BYTES
+                + length(app) + length(uri) + length(ip));
+        LocalDateTime timestamp = hit.getTimestamp();
+        out.putLong(timestamp == null ? NO_TIMESTAMP : timestamp.toEpochSecond(ZoneOffset.UTC));
+        out.putInt(timestamp == null ? 0 : timestamp.getNano());
+        putString(out, app);
+        putString(out, uri);
+        putString(out, ip);
+        return out.array();
+    }
+
+    private static EndpointHitDto decode(ByteBuffer in) {
+        long epochSecond = in.getLong();
+        int nano = in.getInt();
+        LocalDateTime timestamp = epochSecond == NO_TIMESTAMP ? null
+                : LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+        return new EndpointHitDto(getString(in), getString(in), getString(in), timestamp);
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+
+    private static void putString(ByteBuffer out, byte[] value) {
+        if (value == null) {
+            out.putInt(-1);
+        } else {
+            out.putInt(value.length);
+            out.put(value);
+        }
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        in.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    public record Batch(List<EndpointHitDto> hits, long endSeq) {
+    }
+}
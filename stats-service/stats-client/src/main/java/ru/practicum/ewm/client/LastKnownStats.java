@@ -0,0 +1,62 @@
+package ru.practicum.ewm.client;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import ru.practicum.ewm.dto.StatsQuery;
+import ru.practicum.ewm.dto.ViewStats;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Последние полученные от сервера статистики значения по каждому uri - запасной ответ, пока сервер
+ * недоступен. Окно запроса не учитывается: для счётчиков просмотров с момента публикации последнее
+ * известное значение - нижняя оценка текущего. Значения старше maxAge не используются.
+ */
+public class LastKnownStats {
+    private final Cache<Key, List<ViewStats>> stats;
+    private final Counter stale;
+
+    public LastKnownStats(long maxSize, Duration maxAge, MeterRegistry meterRegistry) {
+        this.stats = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(maxAge)
+                .build();
+        this.stale = Counter.builder("stats.client.stats.stale")
+                .description("Запросы статистики, на которые отдано последнее известное значение")
+                .register(meterRegistry);
+    }
+
+    //Запоминает ответ сервера; uri без хитов запоминаются с пустым ответом
+    public void remember(List<StatsQuery> queries, List<ViewStats> response) {
+        Map<String, List<ViewStats>> byUri = new HashMap<>();
+        for (ViewStats viewStats : response) {
+            byUri.computeIfAbsent(viewStats.getUri(), uri -> new ArrayList<>()).add(viewStats);
+        }
+        for (StatsQuery query : queries) {
+            stats.put(new Key(query.getUri(), query.isUnique()),
+                    List.copyOf(byUri.getOrDefault(query.getUri(), List.of())));
+        }
+    }
+
+    //Последние известные значения по запросам; uri, по которым значений нет, в ответ не попадают
+    public List<ViewStats> lookup(List<StatsQuery> queries) {
+        List<ViewStats> result = new ArrayList<>();
+        for (StatsQuery query : queries) {
+            List<ViewStats> known = stats.getIfPresent(new Key(query.getUri(), query.isUnique()));
+            if (known != null) {
+                stale.increment();
+                result.addAll(known);
+            }
+        }
+        return result;
+    }
+
+    private record Key(String uri, boolean unique) {
+    }
+}
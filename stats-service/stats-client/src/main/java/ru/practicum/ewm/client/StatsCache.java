@@ -0,0 +1,179 @@
+package ru.practicum.ewm.client;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import ru.practicum.ewm.dto.StatsQuery;
+import ru.practicum.ewm.dto.ViewStats;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Кеш ответов статистики по отдельным uri.
+ * Ключ - (uri, start, end, unique), где start и end округлены вниз до bucket: запросы одного окна,
+ * отличающиеся на доли bucket, получают один ответ. Ответ хранится ttl, размер кеша ограничен maxSize.
+ * Одинаковые запросы, пришедшие, пока ответ ещё загружается, ждут этой загрузки вместо своего
+ * HTTP-запроса. Ошибка загрузки не кешируется и передаётся всем ожидающим. Запасной ответ загрузчика
+ * (последние известные значения при недоступном сервере, пустой ответ на ошибку запроса) тоже не кешируется:
+ * он отдаётся ожидающим этой загрузки, а следующий запрос снова идёт на сервер.
+ */
+public class StatsCache {
+    private final Function<List<StatsQuery>, Loaded> loader;
+    private final long bucketSeconds;
+    private final Cache<Key, Entry> cache;
+    private final ConcurrentMap<Key, CompletableFuture<List<ViewStats>>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter coalesced;
+    private final Timer staleness;
+
+    public StatsCache(Function<List<StatsQuery>, Loaded> loader, Duration ttl, Duration bucket,
+                      long maxSize, MeterRegistry meterRegistry) {
+        this.loader = loader;
+        this.bucketSeconds = Math.max(1, bucket.toSeconds());
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "stats-client");
+        this.coalesced = Counter.builder("stats.client.cache.coalesced")
+                .description("Запросы статистики, дождавшиеся уже выполняющейся загрузки того же ключа")
+                .register(meterRegistry);
+        this.staleness = Timer.builder("stats.client.cache.staleness")
+                .description("Возраст ответов статистики, отданных из кеша")
+                .register(meterRegistry);
+    }
+
+    public List<ViewStats> get(List<StatsQuery> queries) {
+        Map<Key, StatsQuery> requested = new LinkedHashMap<>();
+        queries.forEach(query -> requested.putIfAbsent(key(query), query));
+
+        Map<Key, List<ViewStats>> cached = new HashMap<>();
+        Map<Key, CompletableFuture<List<ViewStats>>> pending = new HashMap<>();
+        Map<Key, CompletableFuture<List<ViewStats>>> owned = new LinkedHashMap<>();
+        long now = System.nanoTime();
+        requested.keySet().forEach(key -> {
+            Entry entry = cache.getIfPresent(key);
+            if (entry != null) {
+                staleness.record(now - entry.loadedAt(), TimeUnit.NANOSECONDS);
+                cached.put(key, entry.stats());
+                return;
+            }
+            CompletableFuture<List<ViewStats>> future = new CompletableFuture<>();
+            CompletableFuture<List<ViewStats>> loading = inFlight.putIfAbsent(key, future);
+            if (loading == null) {
+                owned.put(key, future);
+            } else {
+                coalesced.increment();
+            }
+            pending.put(key, loading == null ? future : loading);
+        });
+        load(owned, requested);
+
+        List<ViewStats> result = new ArrayList<>();
+        for (Key key : requested.keySet()) {
+            result.addAll(cached.containsKey(key) ? cached.get(key) : join(pending.get(key)));
+        }
+        return result;
+    }
+
+    //Загрузка своих ключей. Ответ сопоставляется с запросами по uri, поэтому запросы одного uri
+    //с разными окнами уходят разными HTTP-запросами. Если загрузка прервана любой ошибкой, ею завершаются
+    //все свои ключи, в том числе отложенные, иначе их ожидающие ждали бы вечно
+    private void load(Map<Key, CompletableFuture<List<ViewStats>>> owned, Map<Key, StatsQuery> requested) {
+        List<Key> remaining = new ArrayList<>(owned.keySet());
+        try {
+            while (!remaining.isEmpty()) {
+                List<Key> round = new ArrayList<>();
+                List<Key> postponed = new ArrayList<>();
+                Set<String> uris = new HashSet<>();
+                for (Key key : remaining) {
+                    if (uris.add(key.uri())) {
+                        round.add(key);
+                    } else {
+                        postponed.add(key);
+                    }
+                }
+                Loaded loaded = loader.apply(round.stream().map(requested::get).toList());
+                Map<String, List<ViewStats>> byUri = new HashMap<>();
+                for (ViewStats stats : loaded.stats()) {
+                    byUri.computeIfAbsent(stats.getUri(), uri -> new ArrayList<>()).add(stats);
+                }
+                long loadedAt = System.nanoTime();
+                for (Key key : round) {
+                    List<ViewStats> stats = List.copyOf(byUri.getOrDefault(key.uri(), List.of()));
+                    if (loaded.fresh()) {
+                        cache.put(key, new Entry(stats, loadedAt));
+                    }
+                    owned.get(key).complete(stats);
+                    inFlight.remove(key, owned.get(key));
+                }
+                remaining = postponed;
+            }
+        } catch (Throwable e) {
+            owned.values().forEach(future -> future.completeExceptionally(e));
+        } finally {
+            owned.forEach((key, future) -> inFlight.remove(key, future));
+        }
+    }
+
+    private List<ViewStats> join(CompletableFuture<List<ViewStats>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private Key key(StatsQuery query) {
+        return new Key(query.getUri(), floor(query.getStart()), floor(query.getEnd()), query.isUnique());
+    }
+
+    private LocalDateTime floor(LocalDateTime time) {
+        if (time == null) {
+            return null;
+        }
+        long seconds = time.toEpochSecond(ZoneOffset.UTC);
+        return LocalDateTime.ofEpochSecond(seconds - Math.floorMod(seconds, bucketSeconds), 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Ответ загрузчика: fresh - получен от сервера статистики, иначе это запасной ответ, который не кешируется.
+     */
+    public record Loaded(List<ViewStats> stats, boolean fresh) {
+        public static Loaded fresh(List<ViewStats> stats) {
+            return new Loaded(stats, true);
+        }
+
+        public static Loaded fallback(List<ViewStats> stats) {
+            return new Loaded(stats, false);
+        }
+    }
+
+    private record Key(String uri, LocalDateTime start, LocalDateTime end, boolean unique) {
+    }
+
+    private record Entry(List<ViewStats> stats, long loadedAt) {
+    }
+}
@@ -0,0 +1,199 @@
+package ru.practicum.ewm.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Автоматический выключатель и ограничитель параллельных запросов к серверу статистики.
+ * <p>
+ * По последним windowSize вызовам считается доля плохих: завершившихся ошибкой или выполнявшихся дольше
+ * slowCallDuration. Когда она достигает failureRateThreshold процентов (в окне не меньше minimumCalls
+ * вызовов), выключатель размыкается: вызовы не выполняются и сразу получают запасной ответ. Через
+ * openDuration выключатель полуоткрывается и пропускает probeCalls пробных вызовов: если все они хорошие,
+ * он замыкается, после первого плохого снова размыкается.
+ * Одновременно выполняется не больше maxConcurrentCalls вызовов, остальные ждут не дольше bulkheadWait,
+ * после чего тоже получают запасной ответ: медленный сервер статистики не занимает все потоки запросов.
+ */
+@Slf4j
+public class StatsCircuitBreaker {
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private enum Permit {
+        DENIED, CALL, PROBE
+    }
+
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int probeCalls;
+    private final Semaphore bulkhead;
+    private final long bulkheadWaitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    //Кольцо результатов последних вызовов: true - плохой вызов
+    private final boolean[] window;
+    private int windowPosition;
+    private int windowCalls;
+    private int badCalls;
+    private volatile State state = State.CLOSED;
+    private long openedAt;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    private final Counter openRejections;
+    private final Counter bulkheadRejections;
+
+    public StatsCircuitBreaker(int windowSize, int minimumCalls, int failureRateThreshold, Duration slowCallDuration,
+                               Duration openDuration, int probeCalls, int maxConcurrentCalls, Duration bulkheadWait,
+                               MeterRegistry meterRegistry) {
+        this.window = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = slowCallDuration.toNanos();
+        this.openNanos = openDuration.toNanos();
+        this.probeCalls = probeCalls;
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.bulkheadWaitNanos = bulkheadWait.toNanos();
+
+        Gauge.builder("stats.client.breaker.state", this, breaker -> breaker.state().ordinal())
+                .description("Состояние выключателя запросов статистики: 0 - замкнут, 1 - полуоткрыт, 2 - разомкнут")
+                .register(meterRegistry);
+        this.openRejections = Counter.builder("stats.client.breaker.rejected")
+                .description("Запросы статистики, получившие запасной ответ без обращения к серверу")
+                .tag("reason", "open")
+                .register(meterRegistry);
+        this.bulkheadRejections = Counter.builder("stats.client.breaker.rejected")
+                .description("Запросы статистики, получившие запасной ответ без обращения к серверу")
+                .tag("reason", "bulkhead")
+                .register(meterRegistry);
+    }
+
+    public State state() {
+        return state;
+    }
+
+    //Результат call или, если вызов не разрешён или завершился ошибкой, результат fallback
+    public <T> T execute(Supplier<T> call, Supplier<T> fallback) {
+        if (!acquireBulkhead()) {
+            bulkheadRejections.increment();
+            return fallback.get();
+        }
+        try {
+            Permit permit = acquirePermission();
+            if (permit == Permit.DENIED) {
+                openRejections.increment();
+                return fallback.get();
+            }
+            long startedAt = System.nanoTime();
+            T result;
+            try {
+                result = call.get();
+            } catch (RuntimeException e) {
+                onResult(permit, false);
+                log.warn("Запрос к серверу статистики не выполнен: {}", e.getMessage());
+                return fallback.get();
+            }
+            onResult(permit, System.nanoTime() - startedAt <= slowCallNanos);
+            return result;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private boolean acquireBulkhead() {
+        try {
+            return bulkhead.tryAcquire(bulkheadWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Permit acquirePermission() {
+        lock.lock();
+        try {
+            if (state == State.CLOSED) {
+                return Permit.CALL;
+            }
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return Permit.DENIED;
+                }
+                state = State.HALF_OPEN;
+                probesStarted = 0;
+                probesSucceeded = 0;
+                log.info("Выключатель запросов статистики полуоткрыт, пробных вызовов: {}", probeCalls);
+            }
+            if (probesStarted >= probeCalls) {
+                return Permit.DENIED;
+            }
+            probesStarted++;
+            return Permit.PROBE;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Результаты вызовов, начатых в другом состоянии выключателя, не учитываются
+    private void onResult(Permit permit, boolean good) {
+        lock.lock();
+        try {
+            if (permit == Permit.CALL && state == State.CLOSED) {
+                record(!good);
+                if (windowCalls >= minimumCalls && badCalls * 100 >= failureRateThreshold * windowCalls) {
+                    open();
+                }
+            } else if (permit == Permit.PROBE && state == State.HALF_OPEN) {
+                if (!good) {
+                    open();
+                } else if (++probesSucceeded >= probeCalls) {
+                    state = State.CLOSED;
+                    resetWindow();
+                    log.info("Выключатель запросов статистики замкнут");
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(boolean bad) {
+        if (windowCalls == window.length) {
+            if (window[windowPosition]) {
+                badCalls--;
+            }
+        } else {
+            windowCalls++;
+        }
+        window[windowPosition] = bad;
+        if (bad) {
+            badCalls++;
+        }
+        windowPosition = (windowPosition + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        resetWindow();
+        log.warn("Выключатель запросов статистики разомкнут на {} мс, просмотры отдаются по последним известным " +
+                "значениям", TimeUnit.NANOSECONDS.toMillis(openNanos));
+    }
+
+    private void resetWindow() {
+        windowPosition = 0;
+        windowCalls = 0;
+        badCalls = 0;
+    }
+}
@@ -0,0 +1,67 @@
+package ru.practicum.ewm.client;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+//Настройки клиента статистики (stats-client.*); значения по умолчанию действуют для незаданных свойств
+@ConfigurationProperties("stats-client")
+public record StatsClientProperties(@DefaultValue Hits hits,
+                                    @DefaultValue Spool spool,
+                                    @DefaultValue Cache statsCache,
+                                    @DefaultValue Http http,
+                                    @DefaultValue Breaker breaker,
+                                    @DefaultValue LastKnown lastKnown) {
+
+    //Очередь хитов и их фоновая отправка пачками
+    public record Hits(@DefaultValue("10000") int queueCapacity,
+                       @DefaultValue("200") int batchSize,
+                       @DefaultValue("1s") Duration flushInterval,
+                       @DefaultValue("DROP_OLDEST") HitOverflowPolicy overflowPolicy) {
+    }
+
+    //Спул хитов, не отправленных на сервер статистики; по умолчанию - во временном каталоге
+    public record Spool(Path path,
+                        @DefaultValue("64MB") DataSize maxSize,
+                        @DefaultValue("5s") Duration replayInterval,
+                        @DefaultValue("1s") Duration syncInterval) {
+        public Spool {
+            if (path == null) {
+                path = Path.of(System.getProperty("java.io.tmpdir"), "ewm-stats-hits.spool");
+            }
+        }
+    }
+
+    //Кеш ответов статистики по uri
+    public record Cache(@DefaultValue("false") boolean enabled,
+                        @DefaultValue("1s") Duration ttl,
+                        @DefaultValue("1s") Duration bucket,
+                        @DefaultValue("10000") long maxSize) {
+    }
+
+    //Пул HTTP-соединений с сервером статистики и таймауты
+    public record Http(@DefaultValue("50") int maxConnections,
+                       @DefaultValue("1s") Duration connectTimeout,
+                       @DefaultValue("2s") Duration responseTimeout,
+                       @DefaultValue("1s") Duration connectionRequestTimeout) {
+    }
+
+    //Выключатель и ограничение одновременных запросов статистики
+    public record Breaker(@DefaultValue("20") int windowSize,
+                          @DefaultValue("10") int minimumCalls,
+                          @DefaultValue("50") int failureRateThreshold,
+                          @DefaultValue("500ms") Duration slowCallDuration,
+                          @DefaultValue("10s") Duration openDuration,
+                          @DefaultValue("3") int probeCalls,
+                          @DefaultValue("20") int maxConcurrentCalls,
+                          @DefaultValue("50ms") Duration bulkheadWait) {
+    }
+
+    //Последние известные значения статистики - запасной ответ при недоступном сервере
+    public record LastKnown(@DefaultValue("10000") long maxSize,
+                            @DefaultValue("24h") Duration maxAge) {
+    }
+}
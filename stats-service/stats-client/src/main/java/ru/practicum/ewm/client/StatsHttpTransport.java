@@ -0,0 +1,61 @@
+package ru.practicum.ewm.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+import java.time.Duration;
+
+/**
+ * HTTP-транспорт клиента статистики.
+ * Соединения с сервером статистики переиспользуются (HTTP/1.1 keep-alive) из ограниченного пула,
+ * у установки соединения, ожидания соединения из пула и ожидания ответа свои таймауты. Клиент
+ * запрашивает сжатые ответы (Accept-Encoding: gzip) и распаковывает их сам.
+ * Состояние пула публикуется в метриках httpcomponents.httpclient.pool.* с тегом httpclient=stats-server.
+ */
+public final class StatsHttpTransport {
+    //Простаивающее соединение проверяется перед повторным использованием, если простояло дольше этого
+    private static final TimeValue VALIDATE_AFTER_INACTIVITY = TimeValue.ofSeconds(2);
+    //Соединения, простоявшие дольше, закрываются фоновым потоком клиента
+    private static final TimeValue MAX_IDLE_TIME = TimeValue.ofSeconds(30);
+
+    private StatsHttpTransport() {
+    }
+
+    public static HttpComponentsClientHttpRequestFactory requestFactory(int maxConnections,
+                                                                        Duration connectTimeout,
+                                                                        Duration responseTimeout,
+                                                                        Duration connectionRequestTimeout,
+                                                                        MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(responseTimeout))
+                        .setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY)
+                        .build())
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "stats-server")
+                .bindTo(meterRegistry);
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(connectionRequestTimeout))
+                        .setResponseTimeout(Timeout.of(responseTimeout))
+                        .build())
+                .evictIdleConnections(MAX_IDLE_TIME)
+                .evictExpiredConnections()
+                .build();
+        return new HttpComponentsClientHttpRequestFactory(httpClient);
+    }
+}
@@ -0,0 +1,122 @@
+package ru.practicum.ewm;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import ru.practicum.ewm.client.HitSpool;
+import ru.practicum.ewm.client.StatsCircuitBreaker;
+import ru.practicum.ewm.client.StatsClientProperties;
+import ru.practicum.ewm.dto.EndpointHitDto;
+import ru.practicum.ewm.dto.StatsRequest;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+//Клиент статистики против HTTP-заглушки сервера статистики
+class StatsClientTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+    @TempDir
+    private Path spoolDirectory;
+
+    private HttpServer server;
+    private StatsClient statsClient;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        if (statsClient != null) {
+            statsClient.close();
+        }
+        server.stop(0);
+    }
+
+    //Ошибка в самом запросе (4xx) не характеризует сервер статистики и не размыкает выключатель
+    @Test
+    void clientErrorsOfStatsRequestDoNotOpenBreaker() {
+        server.createContext("/stats", exchange -> respond(exchange, 400, "{\"error\":\"bad request\"}"));
+        statsClient = client(Map.of("stats-client.breaker.minimum-calls", "5"));
+
+        StatsRequest request = StatsRequest.builder().start(START).end(START.plusDays(1)).build();
+        for (int i = 0; i < 20; i++) {
+            assertThat(statsClient.getStats(List.of(request))).isEmpty();
+        }
+
+        assertThat(requests).hasValue(20);
+        assertThat(statsClient.statsBreakerState()).isEqualTo(StatsCircuitBreaker.State.CLOSED);
+    }
+
+    //Пачка спула, отклонённая сервером (400), отбрасывается и не задерживает пачки за ней
+    @Test
+    void rejectedSpoolBatchDoesNotBlockReplay() throws IOException {
+        Path spool = spoolDirectory.resolve("hits.spool");
+        try (HitSpool hitSpool = new HitSpool(spool, 1024 * 1024, new SimpleMeterRegistry())) {
+            hitSpool.append(List.of(hit("/bad/1"), hit("/bad/2"), hit("/events/3"), hit("/events/4")));
+        }
+        List<String> accepted = new CopyOnWriteArrayList<>();
+        server.createContext("/hit/batch", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            if (body.contains("/bad/")) {
+                respond(exchange, 400, "{\"error\":\"bad request\"}");
+            } else {
+                accepted.add(body);
+                respond(exchange, 201, "");
+            }
+        });
+        statsClient = client(Map.of("stats-client.hits.batch-size", "2",
+                "stats-client.spool.max-size", "1MB",
+                "stats-client.spool.replay-interval", "50ms"));
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> accepted.size() == 1);
+        assertThat(accepted.get(0)).contains("/events/3", "/events/4");
+        assertThat(meterRegistry.get("stats.client.hits.dropped").tag("reason", "rejected").counter().count())
+                .isEqualTo(2);
+    }
+
+    private StatsClient client(Map<String, String> overrides) {
+        Map<String, String> properties = new HashMap<>(overrides);
+        properties.put("stats-client.spool.path", spoolDirectory.resolve("hits.spool").toString());
+        StatsClientProperties bound = new Binder(new MapConfigurationPropertySource(properties))
+                .bindOrCreate("stats-client", StatsClientProperties.class);
+        return new StatsClient("http://localhost:" + server.getAddress().getPort(), bound, meterRegistry);
+    }
+
+    private static EndpointHitDto hit(String uri) {
+        return new EndpointHitDto("ewm-main-service", uri, "10.0.0.1", START);
+    }
+
+    private void respond(HttpExchange exchange, int status, String body) throws IOException {
+        requests.incrementAndGet();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (exchange) {
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package ru.practicum.ewm.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import ru.practicum.ewm.dto.EndpointHitDto;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class HitBufferTest {
+    private static final Duration LONG_INTERVAL = Duration.ofHours(1);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FakeSink sink = new FakeSink();
+    private final FakeSink spill = new FakeSink();
+    private HitBuffer buffer;
+
+    @AfterEach
+    void close() {
+        sink.release();
+        buffer.close();
+    }
+
+    //Переполнение вытесняет самые старые хиты из очереди, новые сохраняются
+    @Test
+    void dropOldestKeepsNewestHits() throws Exception {
+        buffer = new HitBuffer(3, 1, LONG_INTERVAL, HitOverflowPolicy.DROP_OLDEST, sink.blocking(), spill,
+                meterRegistry);
+        holdFlusher();
+
+        for (int i = 1; i <= 5; i++) {
+            buffer.offer(hit(i));
+        }
+        assertThat(dropped("overflow")).isEqualTo(2);
+
+        sink.release();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> sink.hits().size() == 4);
+        assertThat(sink.hits()).containsExactly(hit(0), hit(3), hit(4), hit(5));
+        assertThat(spill.hits()).isEmpty();
+    }
+
+    //Переполнение задерживает вызывающий поток, пока в очереди не освободится место; хиты не теряются
+    @Test
+    void blockWaitsForFreeSlot() throws Exception {
+        buffer = new HitBuffer(2, 1, LONG_INTERVAL, HitOverflowPolicy.BLOCK, sink.blocking(), spill, meterRegistry);
+        holdFlusher();
+        buffer.offer(hit(1));
+        buffer.offer(hit(2));
+
+        CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> buffer.offer(hit(3)));
+        Thread.sleep(200);
+        assertThat(blocked).isNotDone();
+
+        sink.release();
+        blocked.get(5, TimeUnit.SECONDS);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> sink.hits().size() == 4);
+        assertThat(sink.hits()).containsExactly(hit(0), hit(1), hit(2), hit(3));
+        assertThat(dropped("overflow")).isZero();
+    }
+
+    //Хит, не поместившийся в очередь, сразу уходит в резервный приёмник
+    @Test
+    void spillHandsOverflowToSpool() throws Exception {
+        buffer = new HitBuffer(2, 1, LONG_INTERVAL, HitOverflowPolicy.SPILL, sink.blocking(), spill, meterRegistry);
+        holdFlusher();
+
+        for (int i = 1; i <= 4; i++) {
+            buffer.offer(hit(i));
+        }
+
+        assertThat(spill.hits()).containsExactly(hit(3), hit(4));
+        assertThat(meterRegistry.get("stats.client.hits.spilled").counter().count()).isEqualTo(2);
+        sink.release();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> sink.hits().size() == 3);
+        assertThat(sink.hits()).containsExactly(hit(0), hit(1), hit(2));
+    }
+
+    //Пачка, которую не удалось отправить, целиком передаётся в резервный приёмник
+    @Test
+    void failedBatchIsSpilled() {
+        buffer = new HitBuffer(100, 3, Duration.ofMillis(50), HitOverflowPolicy.DROP_OLDEST, batch -> {
+            throw new IllegalStateException("сервер статистики недоступен");
+        }, spill, meterRegistry);
+
+        for (int i = 0; i < 3; i++) {
+            buffer.offer(hit(i));
+        }
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> spill.hits().size() == 3);
+        assertThat(spill.batches()).containsExactly(List.of(hit(0), hit(1), hit(2)));
+        assertThat(dropped("spill_failed")).isZero();
+    }
+
+    //Пачку, отклонённую сервером как некорректную (400), повтор не исправит: она отбрасывается, а не уходит в спул
+    @Test
+    void rejectedBatchIsDroppedNotSpilled() {
+        buffer = new HitBuffer(100, 3, Duration.ofMillis(50), HitOverflowPolicy.DROP_OLDEST, batch -> {
+            throw HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "Bad Request", null, null, null);
+        }, spill, meterRegistry);
+
+        for (int i = 0; i < 3; i++) {
+            buffer.offer(hit(i));
+        }
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> dropped("rejected") == 3);
+        assertThat(spill.hits()).isEmpty();
+        assertThat(meterRegistry.get("stats.client.hits.spilled").counter().count()).isZero();
+    }
+
+    //Если не удалось и сохранить в резервный приёмник, хиты учитываются как потерянные
+    @Test
+    void failedSpillIsCountedAsDrop() {
+        buffer = new HitBuffer(100, 2, Duration.ofMillis(50), HitOverflowPolicy.DROP_OLDEST, batch -> {
+            throw new IllegalStateException("сервер статистики недоступен");
+        }, batch -> {
+            throw new IllegalStateException("диск заполнен");
+        }, meterRegistry);
+
+        buffer.offer(hit(1));
+        buffer.offer(hit(2));
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> dropped("spill_failed") == 2);
+    }
+
+    //При остановке очередь досылается пачками, не дожидаясь flushInterval
+    @Test
+    void closeDrainsQueue() {
+        buffer = new HitBuffer(100, 10, LONG_INTERVAL, HitOverflowPolicy.DROP_OLDEST, sink, spill, meterRegistry);
+        List<EndpointHitDto> hits = IntStream.range(0, 25).mapToObj(HitBufferTest::hit).toList();
+        hits.forEach(buffer::offer);
+
+        buffer.close();
+
+        assertThat(sink.hits()).containsExactlyElementsOf(hits);
+        assertThat(sink.batches()).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(10));
+        assertThat(buffer.size()).isZero();
+        assertThat(spill.hits()).isEmpty();
+    }
+
+    //Поток отправки забирает первый хит и ждёт в приёмнике, пока тест не отпустит его
+    private void holdFlusher() throws InterruptedException {
+        buffer.offer(hit(0));
+        assertThat(sink.entered.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private double dropped(String reason) {
+        return meterRegistry.get("stats.client.hits.dropped").tag("reason", reason).counter().count();
+    }
+
+    private static EndpointHitDto hit(int i) {
+        return new EndpointHitDto("ewm-main-service", "/events/" + i, "10.0.0." + i,
+                LocalDateTime.of(2024, 1, 1, 10, 0));
+    }
+
+    //Приёмник, запоминающий пачки; в режиме blocking первая пачка ждёт release
+    private static final class FakeSink implements Consumer<List<EndpointHitDto>> {
+        private final List<List<EndpointHitDto>> batches = new CopyOnWriteArrayList<>();
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private volatile boolean blocking;
+
+        FakeSink blocking() {
+            blocking = true;
+            return this;
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        List<List<EndpointHitDto>> batches() {
+            return batches;
+        }
+
+        List<EndpointHitDto> hits() {
+            return batches.stream().flatMap(List::stream).toList();
+        }
+
+        @Override
+        public void accept(List<EndpointHitDto> batch) {
+            entered.countDown();
+            if (blocking) {
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            batches.add(List.copyOf(batch));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package ru.practicum.ewm.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.ewm.dto.EndpointHitDto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HitSpoolTest {
+    private static final long MAX_BYTES = 64 * 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void hitsSurviveReopen() {
+        Path path = dir.resolve("hits.spool");
+        List<EndpointHitDto> hits = List.of(hit("/events/1"), hit("/events/2"), hit("/events/3"));
+        try (HitSpool spool = new HitSpool(path, MAX_BYTES, new SimpleMeterRegistry())) {
+            hits.forEach(hit -> spool.append(List.of(hit)));
+            spool.sync();
+            spool.commit(spool.peek(1).endSeq());
+        }
+
+        try (HitSpool spool = new HitSpool(path, MAX_BYTES, new SimpleMeterRegistry())) {
+            assertThat(spool.peek(10).hits()).containsExactlyElementsOf(hits.subList(1, 3));
+        }
+    }
+
+    //Спул, открытый с другим размером, перестраивается под него с сохранением неотправленных хитов
+    @Test
+    void spoolIsResizedToConfiguredSize() throws IOException {
+        Path path = dir.resolve("hits.spool");
+        List<EndpointHitDto> hits = IntStream.range(0, 100).mapToObj(i -> hit("/events/" + i)).toList();
+        try (HitSpool spool = new HitSpool(path, MAX_BYTES, new SimpleMeterRegistry())) {
+            spool.append(hits);
+            spool.commit(spool.peek(10).endSeq());
+        }
+
+        try (HitSpool spool = new HitSpool(path, 2 * MAX_BYTES, new SimpleMeterRegistry())) {
+            assertThat(spool.peek(1000).hits()).containsExactlyElementsOf(hits.subList(10, 100));
+            spool.append(List.of(hit("/events/100")));
+        }
+        assertThat(Files.size(path)).isEqualTo(2 * MAX_BYTES);
+
+        try (HitSpool spool = new HitSpool(path, MAX_BYTES, new SimpleMeterRegistry())) {
+            assertThat(spool.peek(1000).hits()).hasSize(91).endsWith(hit("/events/100"));
+        }
+        assertThat(Files.size(path)).isEqualTo(MAX_BYTES);
+    }
+
+    //При уменьшении размера не поместившиеся самые старые хиты вытесняются
+    @Test
+    void shrinkingSpoolKeepsNewestHits() {
+        Path path = dir.resolve("hits.spool");
+        List<EndpointHitDto> hits = IntStream.range(0, 1000).mapToObj(i -> hit("/events/" + i)).toList();
+        //Все хиты в исходный спул не помещаются: вытеснения при перестройке считаются от числа его записей
+        long before;
+        try (HitSpool spool = new HitSpool(path, MAX_BYTES, new SimpleMeterRegistry())) {
+            spool.append(hits);
+            before = spool.size();
+        }
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        try (HitSpool spool = new HitSpool(path, MAX_BYTES / 8, meterRegistry)) {
+            List<EndpointHitDto> kept = spool.peek(1000).hits();
+            assertThat(kept).isNotEmpty().hasSizeLessThan((int) before);
+            assertThat(kept).containsExactlyElementsOf(hits.subList(hits.size() - kept.size(), hits.size()));
+            assertThat(meterRegistry.get("stats.client.spool.evicted").counter().count())
+                    .isEqualTo(before - kept.size());
+        }
+    }
+
+    @Test
+    void fileOfOtherVersionIsMovedAside() throws IOException {
+        Path path = dir.resolve("hits.spool");
+        try (HitSpool spool = new HitSpool(path, MAX_BYTES, new SimpleMeterRegistry())) {
+            spool.append(List.of(hit("/events/1")));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 2), 4);
+        }
+
+        try (HitSpool spool = new HitSpool(path, MAX_BYTES, new SimpleMeterRegistry())) {
+            assertThat(spool.isEmpty()).isTrue();
+        }
+        assertThat(dir.resolve("hits.spool.v2")).exists();
+        assertThat(Files.size(dir.resolve("hits.spool.v2"))).isEqualTo(MAX_BYTES);
+    }
+
+    private static EndpointHitDto hit(String uri) {
+        return new EndpointHitDto("ewm-main-service", uri, "10.0.0.1", LocalDateTime.of(2024, 1, 1, 10, 0));
+    }
+}
@@ -0,0 +1,74 @@
+package ru.practicum.ewm.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.ewm.dto.StatsQuery;
+import ru.practicum.ewm.dto.ViewStats;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StatsCacheTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 10, 0);
+    private static final List<StatsQuery> QUERIES = List.of(new StatsQuery("/events/1", START,
+            START.plusDays(1), true));
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void freshAnswerIsCached() {
+        StatsCache cache = cache(queries -> StatsCache.Loaded.fresh(List.of(stats(5))));
+
+        assertThat(cache.get(QUERIES)).containsExactly(stats(5));
+        assertThat(cache.get(QUERIES)).containsExactly(stats(5));
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void fallbackAnswerIsNotCached() {
+        StatsCache cache = cache(queries -> loads.get() == 1
+                ? StatsCache.Loaded.fallback(List.of(stats(3)))
+                : StatsCache.Loaded.fresh(List.of(stats(7))));
+
+        //Последнее известное значение отдаётся, но следующий запрос снова идёт на сервер
+        assertThat(cache.get(QUERIES)).containsExactly(stats(3));
+        assertThat(cache.get(QUERIES)).containsExactly(stats(7));
+        assertThat(cache.get(QUERIES)).containsExactly(stats(7));
+        assertThat(loads).hasValue(2);
+    }
+
+    //Ошибка загрузчика (в том числе Error) завершает и отложенные ключи того же uri: следующий запрос
+    //этих ключей загружает их заново, а не ждёт вечно
+    @Test
+    void loaderErrorReleasesPostponedKeys() {
+        List<StatsQuery> windows = List.of(QUERIES.getFirst(),
+                new StatsQuery("/events/1", START.plusDays(1), START.plusDays(2), true));
+        StatsCache cache = cache(queries -> {
+            if (loads.get() == 1) {
+                throw new StackOverflowError("загрузчик упал");
+            }
+            return StatsCache.Loaded.fresh(List.of(stats(5)));
+        });
+
+        assertThatThrownBy(() -> cache.get(windows)).isInstanceOf(StackOverflowError.class);
+        assertThat(cache.get(windows)).containsExactly(stats(5), stats(5));
+        assertThat(loads).hasValue(3);
+    }
+
+    private StatsCache cache(Function<List<StatsQuery>, StatsCache.Loaded> loader) {
+        return new StatsCache(queries -> {
+            loads.incrementAndGet();
+            return loader.apply(queries);
+        }, Duration.ofMinutes(1), Duration.ofSeconds(1), 100, new SimpleMeterRegistry());
+    }
+
+    private static ViewStats stats(long hits) {
+        return new ViewStats("ewm-main-service", "/events/1", hits);
+    }
+}
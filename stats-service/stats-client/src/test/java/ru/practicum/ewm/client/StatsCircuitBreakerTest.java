@@ -0,0 +1,197 @@
+package ru.practicum.ewm.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatsCircuitBreakerTest {
+    private static final Duration OPEN_DURATION = Duration.ofMillis(100);
+    private static final Duration SLOW_CALL = Duration.ofMillis(50);
+    private static final int PROBES = 3;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    //Окно из 10 вызовов, размыкание от 50% плохих при не меньше чем 5 вызовах
+    @Test
+    void slidingWindowTripsAtFailureRate() {
+        StatsCircuitBreaker breaker = breaker(4);
+
+        //До minimumCalls вызовов выключатель не размыкается даже от одних ошибок
+        for (int i = 0; i < 2; i++) {
+            assertThat(breaker.execute(this::fail, () -> "запасной")).isEqualTo("запасной");
+        }
+        assertThat(breaker.state()).isEqualTo(StatsCircuitBreaker.State.CLOSED);
+        for (int i = 0; i < 8; i++) {
+            assertThat(breaker.execute(this::succeed, () -> "запасной")).isEqualTo("ответ");
+        }
+        assertThat(breaker.state()).isEqualTo(StatsCircuitBreaker.State.CLOSED);
+        //Новые ошибки вытесняют из окна старые вызовы: размыкание на пятой ошибке подряд, когда в окне
+        //5 плохих из 10, хотя за всё время плохих меньше половины (7 из 15)
+        for (int i = 0; i < 4; i++) {
+            breaker.execute(this::fail, () -> "запасной");
+            assertThat(breaker.state()).isEqualTo(StatsCircuitBreaker.State.CLOSED);
+        }
+        breaker.execute(this::fail, () -> "запасной");
+        assertThat(breaker.state()).isEqualTo(StatsCircuitBreaker.State.OPEN);
+
+        //Разомкнутый выключатель не выполняет вызов
+        int before = calls.get();
+        assertThat(breaker.execute(this::succeed, () -> "запасной")).isEqualTo("запасной");
+        assertThat(calls).hasValue(before);
+        assertThat(rejected("open")).isEqualTo(1);
+    }
+
+    //Медленный вызов возвращает свой результат, но считается плохим
+    @Test
+    void slowCallsTripBreaker() {
+        StatsCircuitBreaker breaker = breaker(4);
+
+        for (int i = 0; i < 5; i++) {
+            breaker.execute(this::succeed, () -> "запасной");
+        }
+        for (int i = 0; i < 4; i++) {
+            assertThat(breaker.execute(() -> slow(SLOW_CALL.multipliedBy(2)), () -> "запасной"))
+                    .isEqualTo("медленный ответ");
+            assertThat(breaker.state()).isEqualTo(StatsCircuitBreaker.State.CLOSED);
+        }
+        breaker.execute(() -> slow(SLOW_CALL.multipliedBy(2)), () -> "запасной");
+
+        assertThat(breaker.state()).isEqualTo(StatsCircuitBreaker.State.OPEN);
+    }
+
+    //Полуоткрытый выключатель пропускает ровно PROBES пробных вызовов и замыкается после всех хороших
+    @Test
+    void halfOpenBreakerLetsThroughProbeCallsOnly() throws Exception {
+        StatsCircuitBreaker breaker = breaker(PROBES + 1);
+        open(breaker);
+        Thread.sleep(OPEN_DURATION.toMillis() + 20);
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(PROBES);
+        List<Future<String>> probes = new ArrayList<>();
+        for (int i = 0; i < PROBES; i++) {
+            probes.add(executor.submit(() -> breaker.execute(() -> blocked(started, release), () -> "запасной")));
+        }
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(breaker.state()).isEqualTo(StatsCircuitBreaker.State.HALF_OPEN);
+
+        //Пока пробные вызовы выполняются, остальные получают запасной ответ
+        int before = calls.get();
+        assertThat(breaker.execute(this::succeed, () -> "запасной")).isEqualTo("запасной");
+        assertThat(calls).hasValue(before);
+
+        release.countDown();
+        for (Future<String> probe : probes) {
+            assertThat(probe.get(5, TimeUnit.SECONDS)).isEqualTo("ответ");
+        }
+        assertThat(breaker.state()).isEqualTo(StatsCircuitBreaker.State.CLOSED);
+        assertThat(breaker.execute(this::succeed, () -> "запасной")).isEqualTo("ответ");
+    }
+
+    @Test
+    void failedProbeReopensBreaker() throws Exception {
+        StatsCircuitBreaker breaker = breaker(4);
+        open(breaker);
+        Thread.sleep(OPEN_DURATION.toMillis() + 20);
+
+        assertThat(breaker.execute(this::succeed, () -> "запасной")).isEqualTo("ответ");
+        assertThat(breaker.state()).isEqualTo(StatsCircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.execute(this::fail, () -> "запасной")).isEqualTo("запасной");
+        assertThat(breaker.state()).isEqualTo(StatsCircuitBreaker.State.OPEN);
+
+        //Новый отсчёт openDuration: сразу после неудачной пробы вызовы не выполняются
+        int before = calls.get();
+        assertThat(breaker.execute(this::succeed, () -> "запасной")).isEqualTo("запасной");
+        assertThat(calls).hasValue(before);
+    }
+
+    @Test
+    void bulkheadRejectsCallsOverLimit() throws Exception {
+        StatsCircuitBreaker breaker = breaker(2);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(2);
+        List<Future<String>> running = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            running.add(executor.submit(() -> breaker.execute(() -> blocked(started, release), () -> "запасной")));
+        }
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        int before = calls.get();
+        assertThat(breaker.execute(this::succeed, () -> "запасной")).isEqualTo("запасной");
+        assertThat(calls).hasValue(before);
+        assertThat(rejected("bulkhead")).isEqualTo(1);
+
+        release.countDown();
+        for (Future<String> call : running) {
+            assertThat(call.get(5, TimeUnit.SECONDS)).isEqualTo("ответ");
+        }
+        //Отказ ограничителя не считается вызовом и не влияет на выключатель
+        assertThat(breaker.state()).isEqualTo(StatsCircuitBreaker.State.CLOSED);
+        assertThat(breaker.execute(this::succeed, () -> "запасной")).isEqualTo("ответ");
+    }
+
+    private StatsCircuitBreaker breaker(int maxConcurrentCalls) {
+        return new StatsCircuitBreaker(10, 5, 50, SLOW_CALL, OPEN_DURATION, PROBES, maxConcurrentCalls,
+                Duration.ofMillis(20), meterRegistry);
+    }
+
+    private void open(StatsCircuitBreaker breaker) {
+        for (int i = 0; i < 5; i++) {
+            breaker.execute(this::fail, () -> "запасной");
+        }
+        assertThat(breaker.state()).isEqualTo(StatsCircuitBreaker.State.OPEN);
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("stats.client.breaker.rejected").tag("reason", reason).counter().count();
+    }
+
+    private String succeed() {
+        calls.incrementAndGet();
+        return "ответ";
+    }
+
+    private String fail() {
+        calls.incrementAndGet();
+        throw new IllegalStateException("сервер статистики недоступен");
+    }
+
+    private String slow(Duration duration) {
+        calls.incrementAndGet();
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "медленный ответ";
+    }
+
+    private String blocked(CountDownLatch started, CountDownLatch release) {
+        started.countDown();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return succeed();
+    }
+}
@@ -0,0 +1,56 @@
+package ru.practicum.ewm.client;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatsClientPropertiesTest {
+    private final ApplicationContextRunner runner = new ApplicationContextRunner()
+            .withUserConfiguration(PropertiesConfiguration.class);
+
+    @Test
+    void defaultsApplyToMissingProperties() {
+        runner.run(context -> {
+            StatsClientProperties properties = context.getBean(StatsClientProperties.class);
+            assertThat(properties.hits().batchSize()).isEqualTo(200);
+            assertThat(properties.hits().overflowPolicy()).isEqualTo(HitOverflowPolicy.DROP_OLDEST);
+            assertThat(properties.spool().path())
+                    .isEqualTo(Path.of(System.getProperty("java.io.tmpdir"), "ewm-stats-hits.spool"));
+            assertThat(properties.spool().maxSize()).isEqualTo(DataSize.ofMegabytes(64));
+            assertThat(properties.statsCache().enabled()).isFalse();
+            assertThat(properties.breaker().slowCallDuration()).isEqualTo(Duration.ofMillis(500));
+            assertThat(properties.lastKnown().maxAge()).isEqualTo(Duration.ofHours(24));
+        });
+    }
+
+    @Test
+    void propertiesAreBoundByPrefix() {
+        runner.withPropertyValues(
+                        "stats-client.hits.batch-size=50",
+                        "stats-client.spool.path=/var/lib/ewm/hits.spool",
+                        "stats-client.stats-cache.enabled=true",
+                        "stats-client.http.response-timeout=3s",
+                        "stats-client.breaker.max-concurrent-calls=5")
+                .run(context -> {
+                    StatsClientProperties properties = context.getBean(StatsClientProperties.class);
+                    assertThat(properties.hits().batchSize()).isEqualTo(50);
+                    assertThat(properties.hits().queueCapacity()).isEqualTo(10000);
+                    assertThat(properties.spool().path()).isEqualTo(Path.of("/var/lib/ewm/hits.spool"));
+                    assertThat(properties.statsCache().enabled()).isTrue();
+                    assertThat(properties.http().responseTimeout()).isEqualTo(Duration.ofSeconds(3));
+                    assertThat(properties.breaker().maxConcurrentCalls()).isEqualTo(5);
+                });
+    }
+
+    @Configuration
+    @EnableConfigurationProperties(StatsClientProperties.class)
+    static class PropertiesConfiguration {
+    }
+}
@@ -0,0 +1,160 @@
+package ru.practicum.ewm.client;
+
+import com.sun.management.ThreadMXBean;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+import ru.practicum.ewm.dto.ViewStats;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Накладные расходы одного запроса GET /stats к HTTP-заглушке: транспорт клиента статистики (пул keep-alive
+//соединений Apache HttpClient, сжатый ответ, форматтер дат - константа) против прежнего клиента (RestClient
+//на JDK HttpClient без сжатия, форматтер создаётся на каждый вызов). Замеряются задержка вызова и память,
+//выделенная всеми потоками JVM на вызов: в неё входит и работа заглушки, одинаковая для обоих вариантов.
+//Результат зависит от машины и только пишется в лог. Запуск: mvn test -Pbenchmark
+@Slf4j
+@Tag("benchmark")
+class StatsHttpTransportBenchmarkTest {
+    private static final String STATS_URI = "/stats?start={start}&end={end}&unique={unique}";
+    private static final String PATTERN = "yyyy-MM-dd HH:mm:ss";
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern(PATTERN);
+    private static final ParameterizedTypeReference<List<ViewStats>> VIEW_STATS_LIST =
+            new ParameterizedTypeReference<>() {
+            };
+    private static final int URIS = 100;
+    private static final int WARMUP = 1_000;
+    private static final int CALLS = Integer.getInteger("transport.calls", 5_000);
+
+    private final ExecutorService handlers = Executors.newFixedThreadPool(4);
+    private final byte[] body = body();
+    private final byte[] gzippedBody = gzip(body);
+    private final LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0);
+    private HttpServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(handlers);
+        server.createContext("/stats", this::respond);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    @Test
+    void perCallOverhead() throws Exception {
+        HttpComponentsClientHttpRequestFactory pooled = StatsHttpTransport.requestFactory(8, Duration.ofSeconds(1),
+                Duration.ofSeconds(5), Duration.ofSeconds(5), new SimpleMeterRegistry());
+        try {
+            Result before = measure(new JdkClientHttpRequestFactory(), DateTimeFormatter::ofPattern);
+            Result after = measure(pooled, pattern -> FORMATTER);
+
+            log.warn("GET /stats, {} uri в ответе ({} байт, сжатый - {} байт), {} вызовов:\n" +
+                            "JDK HttpClient: p50 {} мкс, p99 {} мкс, {} байт на вызов\n" +
+                            "пул Apache HttpClient: p50 {} мкс, p99 {} мкс, {} байт на вызов",
+                    URIS, body.length, gzippedBody.length, CALLS, before.p50(), before.p99(), before.allocated(),
+                    after.p50(), after.p99(), after.allocated());
+        } finally {
+            pooled.destroy();
+        }
+    }
+
+    private Result measure(ClientHttpRequestFactory requestFactory, Function<String, DateTimeFormatter> formatter) {
+        RestClient restClient = RestClient.builder()
+                .baseUrl("http://localhost:" + server.getAddress().getPort())
+                .requestFactory(requestFactory)
+                .build();
+        for (int i = 0; i < WARMUP; i++) {
+            call(restClient, formatter);
+        }
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] micros = new long[CALLS];
+        long allocatedBefore = threads.getTotalThreadAllocatedBytes();
+        for (int i = 0; i < CALLS; i++) {
+            long callStart = System.nanoTime();
+            call(restClient, formatter);
+            micros[i] = (System.nanoTime() - callStart) / 1000;
+        }
+        long allocated = (threads.getTotalThreadAllocatedBytes() - allocatedBefore) / CALLS;
+        Arrays.sort(micros);
+        return new Result(micros[CALLS / 2], micros[CALLS * 99 / 100], allocated);
+    }
+
+    private void call(RestClient restClient, Function<String, DateTimeFormatter> formatter) {
+        DateTimeFormatter dates = formatter.apply(PATTERN);
+        List<ViewStats> stats = restClient.get()
+                .uri(STATS_URI, dates.format(start), dates.format(start.plusDays(1)), false)
+                .retrieve()
+                .body(VIEW_STATS_LIST);
+        assertThat(stats).hasSize(URIS);
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        byte[] bytes = gzip ? gzippedBody : body;
+        if (gzip) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (exchange) {
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+
+    private static byte[] body() {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < URIS; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"app\":\"ewm-main-service\",\"uri\":\"/events/").append(i)
+                    .append("\",\"hits\":").append(1000 - i).append('}');
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    private record Result(long p50, long p99, long allocated) {
+    }
+}
@@ -0,0 +1,143 @@
+package ru.practicum.ewm.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Транспорт клиента статистики против HTTP-заглушки: переиспользование соединений, ограничение пула
+//и распаковка сжатых ответов
+class StatsHttpTransportTest {
+    private static final String BODY = "[" + "{\"app\":\"ewm-main-service\",\"uri\":\"/events/1\",\"hits\":5},"
+            .repeat(50) + "{\"app\":\"ewm-main-service\",\"uri\":\"/events/2\",\"hits\":7}]";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    //Порты клиента, с которых приходили запросы: один порт - одно соединение
+    private final Set<Integer> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger gzipped = new AtomicInteger();
+    private final ExecutorService handlers = Executors.newFixedThreadPool(8);
+    private HttpServer server;
+    private HttpComponentsClientHttpRequestFactory requestFactory;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(handlers);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        if (requestFactory != null) {
+            requestFactory.destroy();
+        }
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    //Последовательные запросы идут по одному keep-alive соединению
+    @Test
+    void sequentialCallsReuseOneConnection() {
+        server.createContext("/stats", exchange -> respond(exchange, Duration.ZERO));
+        RestClient restClient = restClient(4);
+
+        for (int i = 0; i < 20; i++) {
+            assertThat(restClient.get().uri("/stats").retrieve().body(String.class)).isEqualTo(BODY);
+        }
+
+        assertThat(connections).hasSize(1);
+    }
+
+    //Параллельных запросов к серверу не больше размера пула, остальные ждут свободного соединения
+    @Test
+    void concurrentCallsAreLimitedByPool() throws Exception {
+        server.createContext("/stats", exchange -> respond(exchange, Duration.ofMillis(100)));
+        RestClient restClient = restClient(2);
+
+        try (ExecutorService callers = Executors.newFixedThreadPool(6)) {
+            List<Future<String>> calls = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                calls.add(callers.submit(() -> restClient.get().uri("/stats").retrieve().body(String.class)));
+            }
+            for (Future<String> call : calls) {
+                assertThat(call.get()).isEqualTo(BODY);
+            }
+        }
+
+        assertThat(maxInFlight).hasValueLessThanOrEqualTo(2);
+        assertThat(connections).hasSizeLessThanOrEqualTo(2);
+    }
+
+    //Клиент просит сжатый ответ и распаковывает его сам
+    @Test
+    void gzipResponsesAreDecoded() {
+        server.createContext("/stats", exchange -> respond(exchange, Duration.ZERO));
+        RestClient restClient = restClient(4);
+
+        String body = restClient.get().uri("/stats").retrieve().body(String.class);
+
+        assertThat(gzipped).hasValue(1);
+        assertThat(body).isEqualTo(BODY);
+    }
+
+    private RestClient restClient(int maxConnections) {
+        requestFactory = StatsHttpTransport.requestFactory(maxConnections, Duration.ofSeconds(1),
+                Duration.ofSeconds(5), Duration.ofSeconds(5), meterRegistry);
+        return RestClient.builder()
+                .baseUrl("http://localhost:" + server.getAddress().getPort())
+                .requestFactory(requestFactory)
+                .build();
+    }
+
+    //Ответ сжимается, если клиент его об этом просит. Запрос считается выполняющимся до отправки ответа
+    private void respond(HttpExchange exchange, Duration delay) throws IOException {
+        connections.add(exchange.getRemoteAddress().getPort());
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(delay.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+        byte[] bytes = BODY.getBytes(StandardCharsets.UTF_8);
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(bytes);
+            }
+            bytes = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            gzipped.incrementAndGet();
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (exchange) {
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+}
@@ -1,14 +1,21 @@
 package ru.practicum.ewm.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.ewm.dto.EndpointHitDto;
+import ru.practicum.ewm.dto.StatsQuery;
 import ru.practicum.ewm.dto.ViewStats;
+import ru.practicum.ewm.exception.ValidationException;
 import ru.practicum.ewm.service.StatsService;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -16,7 +23,11 @@ import java.util.List;
 @RestController
 @RequiredArgsConstructor
 public class StatsController {
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    private static final String UNIQUE_APPROX = "approx";
+
     private final StatsService statsService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/hit")
     @ResponseStatus(HttpStatus.CREATED)
@@ -26,14 +37,48 @@ public class StatsController {
         statsService.saveHit(endpointHitDto);
     }
 
+    @PostMapping(value = "/hit/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.CREATED)
+    //Пакетное сохранение информации о запросах к эндпоинтам (JSON-массив)
+    public void saveHits(@RequestBody List<EndpointHitDto> endpointHitDtos) {
+        log.info("Запрос для saveHits, количество хитов {}", endpointHitDtos.size());
+        statsService.saveHits(endpointHitDtos);
+    }
+
+    @PostMapping(value = "/hit/batch", consumes = APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.CREATED)
+    //Пакетное сохранение в потоковом виде: по одному JSON-объекту на строку, без разбора тела в массив.
+    //Весь поток - одна транзакция, хиты вставляются после его чтения, поэтому он ограничен
+    //stats.ingest.max-hits-per-request хитами (иначе 413)
+    public void saveHitsStream(HttpServletRequest request) throws IOException {
+        log.info("Запрос для saveHitsStream");
+        try (MappingIterator<EndpointHitDto> endpointHitDtos = objectMapper.readerFor(EndpointHitDto.class)
+                .readValues(request.getInputStream())) {
+            statsService.saveHits(endpointHitDtos);
+        }
+    }
+
     @GetMapping("/stats")
-    //Получение статистики по посещениям
+    //Получение статистики по посещениям; unique=approx - приблизительное число уникальных IP по скетчам
     public List<ViewStats> getStats(
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
             @RequestParam(required = false) List<String> uris,
-            @RequestParam(defaultValue = "false") boolean unique) {
+            @RequestParam(defaultValue = "false") String unique) {
+
+        if (UNIQUE_APPROX.equalsIgnoreCase(unique)) {
+            return statsService.getApproxUniqueStats(start, end, uris);
+        }
+        if (!"true".equalsIgnoreCase(unique) && !"false".equalsIgnoreCase(unique)) {
+            throw new ValidationException("Параметр unique должен быть true, false или approx");
+        }
+        return statsService.getStats(start, end, uris, Boolean.parseBoolean(unique));
+    }
 
-        return statsService.getStats(start, end, uris, unique);
+    @PostMapping("/stats/query")
+    //Получение статистики сразу по набору (uri, start, end, unique) одним проходом по базе
+    public List<ViewStats> queryStats(@RequestBody List<StatsQuery> queries) {
+        log.info("Запрос для queryStats, количество запросов {}", queries.size());
+        return statsService.getStats(queries);
     }
 }
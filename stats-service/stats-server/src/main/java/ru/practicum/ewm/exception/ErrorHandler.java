@@ -27,4 +27,12 @@ public class ErrorHandler {
         errors.put("error", ex.getMessage());
         return errors;
     }
+
+    @ExceptionHandler(PayloadTooLargeException.class)
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    public Map<String, String> handlePayloadTooLargeException(PayloadTooLargeException ex) {
+        Map<String, String> errors = new HashMap<>();
+        errors.put("error", ex.getMessage());
+        return errors;
+    }
 }
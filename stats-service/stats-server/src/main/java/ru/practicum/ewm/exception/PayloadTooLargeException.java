@@ -0,0 +1,7 @@
+package ru.practicum.ewm.exception;
+
+public class PayloadTooLargeException extends RuntimeException {
+    public PayloadTooLargeException(String message) {
+        super(message);
+    }
+}
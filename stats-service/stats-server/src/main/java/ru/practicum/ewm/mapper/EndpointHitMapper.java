@@ -15,7 +15,7 @@ public class EndpointHitMapper {
     }
 
     public EndpointHit toEndpointHit(EndpointHitDto endpointHitDto) {
-        return new EndpointHit(null,
+        return new EndpointHit(
                 endpointHitDto.getApp(),
                 endpointHitDto.getUri(),
                 endpointHitDto.getIp(),
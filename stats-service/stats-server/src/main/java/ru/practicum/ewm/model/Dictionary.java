@@ -0,0 +1,16 @@
+package ru.practicum.ewm.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+//Словари строковых значений хитов: в endpoint_hits хранятся только их целочисленные ключи
+@Getter
+@RequiredArgsConstructor
+public enum Dictionary {
+    APP("stats_apps", "name"),
+    URI("stats_uris", "uri"),
+    IP("stats_ips", "ip");
+
+    private final String table;
+    private final String column;
+}
@@ -0,0 +1,11 @@
+package ru.practicum.ewm.model;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+//Ключи словарей app и uri вставленной пачки хитов: по ним строятся почасовые агрегаты пачки
+public record HitDictionaryIds(Map<String, Integer> appIds, Map<String, Integer> uriIds) {
+    public HourlyHitKey hourlyKey(EndpointHit hit, LocalDateTime hour) {
+        return new HourlyHitKey(uriIds.get(hit.getUri()), hour, appIds.get(hit.getApp()));
+    }
+}
@@ -0,0 +1,9 @@
+package ru.practicum.ewm.model;
+
+import java.time.LocalDateTime;
+
+//Часть окна запроса статистики с номером query: сырые хиты за [start, end] или [start, end),
+//либо почасовые агрегаты за часы [start, end)
+public record HitWindow(int query, String uri, LocalDateTime start, LocalDateTime end, boolean endInclusive,
+                        boolean unique) {
+}
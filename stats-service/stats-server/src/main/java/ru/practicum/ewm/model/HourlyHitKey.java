@@ -0,0 +1,17 @@
+package ru.practicum.ewm.model;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+//Ключ почасового агрегата хитов из ключей словарей uri и app; порядок совпадает с первичным ключом
+//endpoint_hits_hourly и endpoint_hits_hll
+public record HourlyHitKey(int uriId, LocalDateTime hour, int appId) implements Comparable<HourlyHitKey> {
+    private static final Comparator<HourlyHitKey> ORDER = Comparator.comparingInt(HourlyHitKey::uriId)
+            .thenComparing(HourlyHitKey::hour)
+            .thenComparingInt(HourlyHitKey::appId);
+
+    @Override
+    public int compareTo(HourlyHitKey other) {
+        return ORDER.compare(this, other);
+    }
+}
@@ -0,0 +1,181 @@
+package ru.practicum.ewm.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Скетч HyperLogLog для приблизительного подсчёта уникальных значений.
+ * <p>
+ * Скетч из 2^precision регистров даёт относительную стандартную ошибку около 1.04 / sqrt(2^precision).
+ * Скетчи объединяются без потерь взятием максимума по регистрам, поэтому почасовые скетчи можно хранить
+ * отдельно и сливать при запросе за любой набор часов. Скетчи разной точности сливаются с понижением
+ * точности до меньшей из них.
+ */
+public final class HyperLogLog {
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 16;
+
+    private static final byte DENSE = 0;
+    private static final byte SPARSE = 1;
+    //Размер одного непустого регистра в разреженной записи: индекс (2 байта) и значение (1 байт)
+    private static final int SPARSE_ENTRY_SIZE = 3;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Точность HyperLogLog должна быть от " + MIN_PRECISION + " до "
+                    + MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    //Наименьшая точность, при которой стандартная ошибка не превышает заданную
+    public static int precisionFor(double relativeError) {
+        if (relativeError <= 0 || relativeError >= 1) {
+            throw new IllegalArgumentException("Допустимая ошибка должна быть в интервале (0, 1): " + relativeError);
+        }
+        double registersNeeded = Math.pow(1.04 / relativeError, 2);
+        int precision = (int) Math.ceil(Math.log(registersNeeded) / Math.log(2));
+        return Math.max(MIN_PRECISION, Math.min(MAX_PRECISION, precision));
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public void add(String value) {
+        long hash = hash(value);
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    //Объединение двух скетчей; результат имеет меньшую из двух точностей
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other.precision < precision) {
+            return other.merge(this);
+        }
+        HyperLogLog result = copy();
+        HyperLogLog folded = other.fold(precision);
+        for (int i = 0; i < result.registers.length; i++) {
+            if (folded.registers[i] > result.registers[i]) {
+                result.registers[i] = folded.registers[i];
+            }
+        }
+        return result;
+    }
+
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    //Сериализация: точность, формат и регистры; почти пустой скетч пишется разреженно
+    public byte[] toBytes() {
+        int nonZero = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                nonZero++;
+            }
+        }
+        if (nonZero * SPARSE_ENTRY_SIZE < registers.length) {
+            ByteBuffer out = ByteBuffer.allocate(2 + nonZero * SPARSE_ENTRY_SIZE);
+            out.put((byte) precision).put(SPARSE);
+            for (int i = 0; i < registers.length; i++) {
+                if (registers[i] != 0) {
+                    out.putShort((short) i).put(registers[i]);
+                }
+            }
+            return out.array();
+        }
+        ByteBuffer out = ByteBuffer.allocate(2 + registers.length);
+        out.put((byte) precision).put(DENSE).put(registers);
+        return out.array();
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        HyperLogLog sketch = new HyperLogLog(in.get());
+        byte format = in.get();
+        if (format == DENSE) {
+            in.get(sketch.registers);
+        } else if (format == SPARSE) {
+            while (in.hasRemaining()) {
+                int index = in.getShort() & 0xFFFF;
+                sketch.registers[index] = in.get();
+            }
+        } else {
+            throw new IllegalArgumentException("Неизвестный формат скетча HyperLogLog: " + format);
+        }
+        return sketch;
+    }
+
+    private HyperLogLog copy() {
+        HyperLogLog copy = new HyperLogLog(precision);
+        System.arraycopy(registers, 0, copy.registers, 0, registers.length);
+        return copy;
+    }
+
+    //Понижение точности: старшие биты хвоста хеша, ставшие лишними в индексе, возвращаются в ранг
+    private HyperLogLog fold(int targetPrecision) {
+        if (targetPrecision == precision) {
+            return this;
+        }
+        int shift = precision - targetPrecision;
+        HyperLogLog folded = new HyperLogLog(targetPrecision);
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] == 0) {
+                continue;
+            }
+            int extraBits = i & ((1 << shift) - 1);
+            int rank = extraBits == 0 ? registers[i] + shift
+                    : Integer.numberOfLeadingZeros(extraBits) - (Integer.SIZE - shift) + 1;
+            int index = i >>> shift;
+            if (rank > folded.registers[index]) {
+                folded.registers[index] = (byte) rank;
+            }
+        }
+        return folded;
+    }
+
+    private static double alpha(int m) {
+        return switch (m) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / m);
+        };
+    }
+
+    //64-битный FNV-1a по байтам строки с финальным перемешиванием из MurmurHash3
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
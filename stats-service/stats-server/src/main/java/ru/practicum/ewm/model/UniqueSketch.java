@@ -0,0 +1,5 @@
+package ru.practicum.ewm.model;
+
+//Скетч уникальных IP по паре (app, uri), слитый за несколько часов
+public record UniqueSketch(String app, String uri, HyperLogLog sketch) {
+}
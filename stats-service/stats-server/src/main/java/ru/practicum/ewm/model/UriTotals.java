@@ -0,0 +1,7 @@
+package ru.practicum.ewm.model;
+
+import java.time.LocalDateTime;
+
+//Всего хитов по паре (app, uri) и время первого и последнего из них
+public record UriTotals(String app, String uri, long hits, LocalDateTime firstSeen, LocalDateTime lastSeen) {
+}
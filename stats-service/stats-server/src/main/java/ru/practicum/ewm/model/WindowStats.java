@@ -0,0 +1,5 @@
+package ru.practicum.ewm.model;
+
+//Число хитов пары (app, uri) в окнах запроса статистики с номером query
+public record WindowStats(int query, String app, String uri, long hits) {
+}
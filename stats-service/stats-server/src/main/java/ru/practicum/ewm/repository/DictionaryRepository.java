@@ -0,0 +1,149 @@
+package ru.practicum.ewm.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.ewm.model.Dictionary;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Словари app, uri и ip с кешем ключей в памяти.
+ * <p>
+ * Новые значения добавляются в транзакции вызывающего кода, на его же соединении, а в кеш их ключи попадают
+ * только после коммита: если вставка хитов откатится, в кеше не останется ключей, которых нет в базе.
+ * Параллельная вставка того же значения ждёт коммита первой на уникальном индексе. Транзакции не
+ * взаимоблокируются, только если каждая добавляет новые значения один раз за транзакцию и по словарям
+ * в одном порядке: значения одного вызова вставляются отсортированными, а StatsServiceImpl получает ключи
+ * всех хитов запроса одним вызовом на словарь - app, uri, ip. Кеш каждого словаря ограничен
+ * stats.dictionary.cache-size значениями и при переполнении очищается целиком - для ip это нормально,
+ * остальные словари малы.
+ */
+@Slf4j
+@Repository
+public class DictionaryRepository {
+    //Ограничение числа значений в одном IN, чтобы не упереться в лимит параметров драйвера
+    private static final int MAX_VALUES_PER_STATEMENT = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final Map<Dictionary, Map<String, Integer>> caches = new EnumMap<>(Dictionary.class);
+
+    @Value("${stats.dictionary.cache-size:100000}")
+    private int cacheSize;
+
+    public DictionaryRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        for (Dictionary dictionary : Dictionary.values()) {
+            caches.put(dictionary, new ConcurrentHashMap<>());
+        }
+    }
+
+    //Ключи значений; отсутствующие в словаре значения добавляются
+    public Map<String, Integer> getOrCreateIds(Dictionary dictionary, Collection<String> values) {
+        Map<String, Integer> ids = new HashMap<>();
+        Set<String> missing = new TreeSet<>();
+        collectCached(dictionary, values, ids, missing);
+        if (!missing.isEmpty()) {
+            List<String> sorted = new ArrayList<>(missing);
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO " + dictionary.getTable() + " (" + dictionary.getColumn() + ") VALUES (?) " +
+                    "ON CONFLICT (" + dictionary.getColumn() + ") DO NOTHING",
+                    sorted, sorted.size(), (ps, value) -> ps.setString(1, value));
+            Map<String, Integer> loaded = query(dictionary, sorted);
+            ids.putAll(loaded);
+            cacheAfterCommit(dictionary, loaded);
+        }
+        return ids;
+    }
+
+    //Ключи только тех значений, что уже есть в словаре
+    public Map<String, Integer> getIds(Dictionary dictionary, Collection<String> values) {
+        Map<String, Integer> ids = new HashMap<>();
+        Set<String> missing = new TreeSet<>();
+        collectCached(dictionary, values, ids, missing);
+        if (!missing.isEmpty()) {
+            Map<String, Integer> loaded = query(dictionary, new ArrayList<>(missing));
+            ids.putAll(loaded);
+            cache(dictionary, loaded);
+        }
+        return ids;
+    }
+
+    //Значения по ключам словаря: строки подставляются в ответ после группировки по ключам
+    public Map<Integer, String> getValues(Dictionary dictionary, Collection<Integer> ids) {
+        Map<Integer, String> values = new HashMap<>();
+        List<Integer> distinct = new ArrayList<>(new TreeSet<>(ids));
+        String sql = "SELECT id, " + dictionary.getColumn() + " AS value FROM " + dictionary.getTable() +
+                " WHERE id IN (:ids)";
+        for (int from = 0; from < distinct.size(); from += MAX_VALUES_PER_STATEMENT) {
+            List<Integer> chunk = distinct.subList(from, Math.min(distinct.size(), from + MAX_VALUES_PER_STATEMENT));
+            namedParameterJdbcTemplate.query(sql, new MapSqlParameterSource("ids", chunk), rs -> {
+                values.put(rs.getInt("id"), rs.getString("value"));
+            });
+        }
+        return values;
+    }
+
+    private void collectCached(Dictionary dictionary, Collection<String> values, Map<String, Integer> ids,
+                               Set<String> missing) {
+        Map<String, Integer> cache = caches.get(dictionary);
+        for (String value : values) {
+            Integer id = cache.get(value);
+            if (id != null) {
+                ids.put(value, id);
+            } else {
+                missing.add(value);
+            }
+        }
+    }
+
+    private Map<String, Integer> query(Dictionary dictionary, List<String> values) {
+        Map<String, Integer> ids = new HashMap<>();
+        String sql = "SELECT id, " + dictionary.getColumn() + " AS value FROM " + dictionary.getTable() +
+                " WHERE " + dictionary.getColumn() + " IN (:values)";
+        for (int from = 0; from < values.size(); from += MAX_VALUES_PER_STATEMENT) {
+            List<String> chunk = values.subList(from, Math.min(values.size(), from + MAX_VALUES_PER_STATEMENT));
+            namedParameterJdbcTemplate.query(sql, new MapSqlParameterSource("values", chunk), rs -> {
+                ids.put(rs.getString("value"), rs.getInt("id"));
+            });
+        }
+        return ids;
+    }
+
+    private void cacheAfterCommit(Dictionary dictionary, Map<String, Integer> ids) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache(dictionary, ids);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache(dictionary, ids);
+            }
+        });
+    }
+
+    private void cache(Dictionary dictionary, Map<String, Integer> ids) {
+        Map<String, Integer> cache = caches.get(dictionary);
+        if (cache.size() + ids.size() > cacheSize) {
+            log.debug("Кеш словаря {} переполнен и очищается", dictionary);
+            cache.clear();
+        }
+        cache.putAll(ids);
+    }
+}
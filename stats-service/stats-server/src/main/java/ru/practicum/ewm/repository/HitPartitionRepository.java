@@ -0,0 +1,121 @@
+package ru.practicum.ewm.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+//DDL для помесячного секционирования endpoint_hits, переноса хитов из таблиц прежних версий
+//и удаления хитов по сроку хранения
+@Repository
+@RequiredArgsConstructor
+public class HitPartitionRepository {
+    public static final String PARTITION_PREFIX = "endpoint_hits_p";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    //Ключ рекомендательной блокировки создания секций
+    private static final long PARTITION_DDL_LOCK = 0x45574D50L;
+
+    //Должно совпадать с определением endpoint_hits в schema.sql
+    private static final String CREATE_PARTITIONED_TABLE =
+            "CREATE TABLE endpoint_hits (" +
+            "id BIGINT GENERATED BY DEFAULT AS IDENTITY, " +
+            "app_id INT NOT NULL, " +
+            "uri_id INT NOT NULL, " +
+            "ip_id INT NOT NULL, " +
+            "timestamp TIMESTAMP NOT NULL, " +
+            "PRIMARY KEY (id, timestamp)" +
+            ") PARTITION BY RANGE (timestamp)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public static String partitionName(LocalDate month) {
+        return PARTITION_PREFIX + month.format(PARTITION_SUFFIX);
+    }
+
+    //true, если endpoint_hits создана прежней версией: несекционированной или со строковыми столбцами
+    public boolean isLegacyTable() {
+        String kind = jdbcTemplate.queryForObject(
+                "SELECT CAST(relkind AS VARCHAR) FROM pg_class WHERE oid = to_regclass('endpoint_hits')", String.class);
+        Boolean dictionaryEncoded = jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM information_schema.columns " +
+                "WHERE table_schema = current_schema() AND table_name = 'endpoint_hits' AND column_name = 'app_id')",
+                Boolean.class);
+        return !"p".equals(kind) || !Boolean.TRUE.equals(dictionaryEncoded);
+    }
+
+    //Старая таблица и её секции переименовываются, на их месте создаётся новая секционированная таблица
+    public void renameLegacyTable() {
+        for (String name : getPartitionNames()) {
+            jdbcTemplate.execute("ALTER TABLE " + name + " RENAME TO " +
+                    name.replace(PARTITION_PREFIX, "endpoint_hits_legacy_p"));
+        }
+        jdbcTemplate.execute("ALTER TABLE endpoint_hits RENAME TO endpoint_hits_legacy");
+        jdbcTemplate.execute(CREATE_PARTITIONED_TABLE);
+    }
+
+    public List<LocalDate> getLegacyMonths() {
+        return jdbcTemplate.queryForList(
+                "SELECT DISTINCT CAST(date_trunc('month', timestamp) AS DATE) FROM endpoint_hits_legacy", LocalDate.class);
+    }
+
+    //Перенос хитов из старой таблицы со строковыми столбцами; секции под них должны быть уже созданы
+    public void copyLegacyHits() {
+        jdbcTemplate.update("INSERT INTO stats_apps (name) SELECT DISTINCT app FROM endpoint_hits_legacy " +
+                "ON CONFLICT (name) DO NOTHING");
+        jdbcTemplate.update("INSERT INTO stats_uris (uri) SELECT DISTINCT uri FROM endpoint_hits_legacy " +
+                "ON CONFLICT (uri) DO NOTHING");
+        jdbcTemplate.update("INSERT INTO stats_ips (ip) SELECT DISTINCT ip FROM endpoint_hits_legacy " +
+                "ON CONFLICT (ip) DO NOTHING");
+        jdbcTemplate.update("INSERT INTO endpoint_hits (id, app_id, uri_id, ip_id, timestamp) " +
+                "SELECT l.id, a.id, u.id, i.id, l.timestamp FROM endpoint_hits_legacy l " +
+                "JOIN stats_apps a ON a.name = l.app " +
+                "JOIN stats_uris u ON u.uri = l.uri " +
+                "JOIN stats_ips i ON i.ip = l.ip");
+        jdbcTemplate.queryForObject("SELECT setval(pg_get_serial_sequence('endpoint_hits', 'id'), " +
+                "COALESCE((SELECT MAX(id) FROM endpoint_hits), 0) + 1, false)", Long.class);
+        jdbcTemplate.execute("DROP TABLE endpoint_hits_legacy");
+    }
+
+    public void createIndexes() {
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS endpoint_hits_uri_id_timestamp_idx " +
+                "ON endpoint_hits (uri_id, timestamp)");
+    }
+
+    public List<String> getPartitionNames() {
+        return jdbcTemplate.queryForList("SELECT CAST(c.relname AS VARCHAR) FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid " +
+                "WHERE i.inhparent = to_regclass('endpoint_hits')", String.class);
+    }
+
+    //Секция создаётся отдельной таблицей и присоединяется через ATTACH PARTITION: в отличие от
+    //CREATE TABLE ... PARTITION OF, он не конфликтует с блокировками идущих в endpoint_hits вставок.
+    //Параллельные CREATE TABLE IF NOT EXISTS одной таблицы в разных транзакциях конфликтуют в каталоге,
+    //поэтому создание секций выполняется под блокировкой до конца транзакции
+    public void createPartition(LocalDate month) {
+        jdbcTemplate.execute("SELECT pg_advisory_xact_lock(" + PARTITION_DDL_LOCK + ")");
+        String name = partitionName(month);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " (LIKE endpoint_hits INCLUDING DEFAULTS)");
+        Boolean attached = jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM pg_inherits " +
+                "WHERE inhrelid = to_regclass(?) AND inhparent = to_regclass('endpoint_hits'))", Boolean.class, name);
+        if (!Boolean.TRUE.equals(attached)) {
+            jdbcTemplate.execute("ALTER TABLE endpoint_hits ATTACH PARTITION " + name + " FOR VALUES FROM ('" +
+                    Timestamp.valueOf(month.atStartOfDay()) + "') TO ('" +
+                    Timestamp.valueOf(month.plusMonths(1).atStartOfDay()) + "')");
+        }
+    }
+
+    public void dropPartition(String name) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + name);
+    }
+
+    //Почасовые агрегаты и скетчи месяца удалённой секции
+    public void deleteRollups(LocalDate month) {
+        Timestamp from = Timestamp.valueOf(month.atStartOfDay());
+        Timestamp to = Timestamp.valueOf(month.plusMonths(1).atStartOfDay());
+        jdbcTemplate.update("DELETE FROM endpoint_hits_hourly WHERE hour >= ? AND hour < ?", from, to);
+        jdbcTemplate.update("DELETE FROM endpoint_hits_hll WHERE hour >= ? AND hour < ?", from, to);
+    }
+}
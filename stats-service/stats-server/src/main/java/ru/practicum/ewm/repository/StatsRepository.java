@@ -1,35 +1,77 @@
 package ru.practicum.ewm.repository;
 
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.stereotype.Repository;
-import ru.practicum.ewm.model.EndpointHit;
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.repository.query.Param;
 import ru.practicum.ewm.dto.ViewStats;
+import ru.practicum.ewm.model.EndpointHit;
+import ru.practicum.ewm.model.HitDictionaryIds;
+import ru.practicum.ewm.model.HitWindow;
+import ru.practicum.ewm.model.HourlyHitKey;
+import ru.practicum.ewm.model.HyperLogLog;
+import ru.practicum.ewm.model.UniqueSketch;
+import ru.practicum.ewm.model.UriTotals;
+import ru.practicum.ewm.model.WindowStats;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.SortedMap;
+
+public interface StatsRepository {
+    //Пакетная вставка хитов JDBC-пачками по batchSize строк в текущей транзакции. Ключи словарей всех хитов
+    //получаются до вставки, новые значения добавляются в отсортированном порядке. Возвращает эти ключи
+    HitDictionaryIds insertBatch(List<EndpointHit> hits, int batchSize);
+
+    //Количество хитов за [start, end]
+    List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris);
+
+    //То же, что getStats, но с невключённой правой границей: для неполного часа перед первым целым часом
+    List<ViewStats> getStatsEndExclusive(LocalDateTime start, LocalDateTime end, List<String> uris);
+
+    //Количество уникальных IP за [start, end]
+    List<ViewStats> getUniqueStats(LocalDateTime start, LocalDateTime end, List<String> uris);
+
+    //Прибавление счётчиков к почасовым агрегатам по ключам словарей; ключи обновляются в порядке
+    //первичного ключа (uri_id, hour, app_id), чтобы параллельные пачки не взаимоблокировались
+    void upsertHourly(SortedMap<HourlyHitKey, Long> counts);
+
+    //Количество хитов по почасовым агрегатам за часы [fromHour, toHour)
+    List<ViewStats> getHourlyStats(LocalDateTime fromHour, LocalDateTime toHour, List<String> uris);
+
+    //Пересоздание таблиц агрегатов и скетчей, оставшихся со строковыми ключами uri и app; пустые таблицы
+    //затем строятся заново по сырым хитам. Возвращает true, если таблицы были пересозданы
+    boolean recreateLegacyRollups();
+
+    //Построение почасовых агрегатов по всем накопленным хитам, если их ещё нет
+    void backfillHourly();
+
+    //Слияние скетчей уникальных IP с почасовыми скетчами в базе; ключи блокируются в порядке первичного ключа
+    void mergeHourlySketches(SortedMap<HourlyHitKey, HyperLogLog> sketches);
+
+    //Почасовые скетчи за часы [fromHour, toHour), слитые по (app, uri)
+    List<UniqueSketch> getHourlySketches(LocalDateTime fromHour, LocalDateTime toHour, List<String> uris);
+
+    //Скетчи по сырым хитам неполных часов по краям: [start, firstFullHour) и [lastHour, end]
+    List<UniqueSketch> getEdgeSketches(LocalDateTime start, LocalDateTime firstFullHour, LocalDateTime lastHour,
+                                       LocalDateTime end, List<String> uris, int precision);
+
+    //Есть ли уже почасовые скетчи; пустая таблица означает, что их нужно построить по накопленным хитам
+    boolean hasHourlySketches();
+
+    //Построение почасовых скетчей по всем накопленным хитам, в базу они сливаются пачками по batchSize ключей
+    void backfillHourlySketches(int precision, int batchSize);
+
+    //Итоги за всё время по uri, подходящим под регулярное выражение
+    List<UriTotals> getUriTotals(String uriPattern);
+
+    //Обход всех различных (app, uri, ip) по uri, подходящим под регулярное выражение
+    void forEachDistinctIp(String uriPattern, DistinctIpHandler handler);
+
+    //Хиты сразу по набору окон одним SQL-запросом на каждые 1000 окон, сгруппированные по номеру запроса
+    List<WindowStats> getWindowStats(List<HitWindow> windows);
+
+    //То же по почасовым агрегатам: окна - диапазоны целых часов [start, end)
+    List<WindowStats> getHourlyWindowStats(List<HitWindow> windows);
 
-@Repository
-public interface StatsRepository extends JpaRepository<EndpointHit, Long> {
-
-    @Query("select new ru.practicum.ewm.dto.ViewStats(eh.app, eh.uri, count(eh)) " +
-            "from EndpointHit eh " +
-            "where eh.timestamp between :start and :end " +
-            "and (:uris is null or eh.uri in :uris) " +
-            "group by eh.app, eh.uri " +
-            "order by 3 desc ")
-    List<ViewStats> getStats(@Param("start") LocalDateTime start,
-                             @Param("end") LocalDateTime end,
-                             @Param("uris") List<String> uris);
-
-    @Query("select new ru.practicum.ewm.dto.ViewStats(eh.app, eh.uri, count(distinct eh.ip)) " +
-            "from EndpointHit eh " +
-            "where eh.timestamp between :start and :end " +
-            "and (:uris is null or eh.uri in :uris) " +
-            "group by eh.app, eh.uri " +
-            "order by 3 desc ")
-    List<ViewStats> getUniqueStats(@Param("start") LocalDateTime start,
-                             @Param("end") LocalDateTime end,
-                             @Param("uris") List<String> uris);
+    @FunctionalInterface
+    interface DistinctIpHandler {
+        void accept(String app, String uri, String ip);
+    }
 }
@@ -0,0 +1,469 @@
+package ru.practicum.ewm.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.ewm.dto.ViewStats;
+import ru.practicum.ewm.model.Dictionary;
+import ru.practicum.ewm.model.EndpointHit;
+import ru.practicum.ewm.model.HitDictionaryIds;
+import ru.practicum.ewm.model.HitWindow;
+import ru.practicum.ewm.model.HourlyHitKey;
+import ru.practicum.ewm.model.HyperLogLog;
+import ru.practicum.ewm.model.UniqueSketch;
+import ru.practicum.ewm.model.UriTotals;
+import ru.practicum.ewm.model.WindowStats;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+//Хиты и их почасовые агрегаты хранятся ключами словарей app, uri и ip; группировка идёт по ключам,
+//строки подставляются в конце
+@Repository
+@RequiredArgsConstructor
+public class StatsRepositoryImpl implements StatsRepository {
+    private static final String INSERT_HIT =
+            "INSERT INTO endpoint_hits (app_id, uri_id, ip_id, timestamp) VALUES (?, ?, ?, ?)";
+
+    private static final String RAW_STATS =
+            "SELECT a.name AS app, u.uri AS uri, s.hits FROM (" +
+            "SELECT app_id, uri_id, %s AS hits FROM endpoint_hits " +
+            "WHERE timestamp >= :start AND timestamp %s :end %s " +
+            "GROUP BY app_id, uri_id) s " +
+            "JOIN stats_apps a ON a.id = s.app_id " +
+            "JOIN stats_uris u ON u.id = s.uri_id " +
+            "ORDER BY s.hits DESC";
+
+    //Определения таблиц агрегатов должны совпадать с schema.sql
+    private static final String CREATE_HOURLY =
+            "CREATE TABLE endpoint_hits_hourly (" +
+            "uri_id INT NOT NULL, " +
+            "hour TIMESTAMP NOT NULL, " +
+            "app_id INT NOT NULL, " +
+            "hits BIGINT NOT NULL, " +
+            "PRIMARY KEY (uri_id, hour, app_id))";
+
+    private static final String CREATE_SKETCHES =
+            "CREATE TABLE endpoint_hits_hll (" +
+            "uri_id INT NOT NULL, " +
+            "hour TIMESTAMP NOT NULL, " +
+            "app_id INT NOT NULL, " +
+            "sketch BYTEA NOT NULL, " +
+            "PRIMARY KEY (uri_id, hour, app_id))";
+
+    private static final String BACKFILL_HOURLY =
+            "INSERT INTO endpoint_hits_hourly (uri_id, hour, app_id, hits) " +
+            "SELECT uri_id, date_trunc('hour', timestamp), app_id, COUNT(*) FROM endpoint_hits " +
+            "WHERE NOT EXISTS (SELECT 1 FROM endpoint_hits_hourly) " +
+            "GROUP BY uri_id, date_trunc('hour', timestamp), app_id";
+
+    private static final String UPSERT_HOURLY =
+            "INSERT INTO endpoint_hits_hourly (uri_id, hour, app_id, hits) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (uri_id, hour, app_id) DO UPDATE SET hits = endpoint_hits_hourly.hits + EXCLUDED.hits";
+
+    private static final String HOURLY_STATS =
+            "SELECT a.name AS app, u.uri AS uri, s.hits FROM (" +
+            "SELECT app_id, uri_id, SUM(hits) AS hits FROM endpoint_hits_hourly " +
+            "WHERE hour >= :fromHour AND hour < :toHour %s " +
+            "GROUP BY app_id, uri_id) s " +
+            "JOIN stats_apps a ON a.id = s.app_id " +
+            "JOIN stats_uris u ON u.id = s.uri_id";
+
+    private static final String INSERT_SKETCH =
+            "INSERT INTO endpoint_hits_hll (uri_id, hour, app_id, sketch) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (uri_id, hour, app_id) DO NOTHING";
+
+    private static final String LOCK_SKETCHES =
+            "SELECT uri_id, hour, app_id, sketch FROM endpoint_hits_hll WHERE (uri_id, hour, app_id) IN (%s) " +
+            "ORDER BY uri_id, hour, app_id FOR UPDATE";
+
+    private static final String UPDATE_SKETCH =
+            "UPDATE endpoint_hits_hll SET sketch = ? WHERE uri_id = ? AND hour = ? AND app_id = ?";
+
+    private static final String HOURLY_SKETCHES =
+            "SELECT app_id, uri_id, sketch FROM endpoint_hits_hll " +
+            "WHERE hour >= :fromHour AND hour < :toHour %s";
+
+    private static final String EDGE_IPS =
+            "SELECT a.name AS app, u.uri AS uri, i.ip AS ip FROM (" +
+            "SELECT DISTINCT app_id, uri_id, ip_id FROM endpoint_hits " +
+            "WHERE ((timestamp >= :start AND timestamp < :firstFullHour) " +
+            "OR (timestamp >= :lastHour AND timestamp <= :end)) %s) e " +
+            "JOIN stats_apps a ON a.id = e.app_id " +
+            "JOIN stats_uris u ON u.id = e.uri_id " +
+            "JOIN stats_ips i ON i.id = e.ip_id";
+
+    private static final String ALL_HOURLY_IPS =
+            "SELECT eh.uri_id, date_trunc('hour', eh.timestamp) AS hour, eh.app_id, i.ip FROM endpoint_hits eh " +
+            "JOIN stats_ips i ON i.id = eh.ip_id";
+
+    private static final String URI_TOTALS =
+            "SELECT a.name AS app, u.uri AS uri, s.hits, s.first_seen, s.last_seen FROM (" +
+            "SELECT eh.app_id, eh.uri_id, COUNT(*) AS hits, " +
+            "MIN(eh.timestamp) AS first_seen, MAX(eh.timestamp) AS last_seen " +
+            "FROM endpoint_hits eh JOIN stats_uris fu ON fu.id = eh.uri_id AND fu.uri ~ ? " +
+            "GROUP BY eh.app_id, eh.uri_id) s " +
+            "JOIN stats_apps a ON a.id = s.app_id " +
+            "JOIN stats_uris u ON u.id = s.uri_id";
+
+    private static final String DISTINCT_IPS =
+            "SELECT a.name AS app, u.uri AS uri, i.ip AS ip FROM (" +
+            "SELECT DISTINCT eh.app_id, eh.uri_id, eh.ip_id " +
+            "FROM endpoint_hits eh JOIN stats_uris fu ON fu.id = eh.uri_id AND fu.uri ~ ?) e " +
+            "JOIN stats_apps a ON a.id = e.app_id " +
+            "JOIN stats_uris u ON u.id = e.uri_id " +
+            "JOIN stats_ips i ON i.id = e.ip_id";
+
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    private static final String RAW_WINDOW_ROW = "(CAST(? AS INT), CAST(? AS VARCHAR), CAST(? AS TIMESTAMP), " +
+            "CAST(? AS TIMESTAMP), CAST(? AS BOOLEAN), CAST(? AS BOOLEAN))";
+
+    //Окна одного запроса не пересекаются, поэтому хиты его окон просто складываются в одну группу
+    private static final String RAW_WINDOW_STATS =
+            "SELECT s.idx, a.name AS app, u.uri AS uri, s.hits FROM (" +
+            "SELECT q.idx, eh.app_id, eh.uri_id, " +
+            "CASE WHEN q.uniq THEN COUNT(DISTINCT eh.ip_id) ELSE COUNT(*) END AS hits " +
+            "FROM (VALUES %s) AS q(idx, uri, start_ts, end_ts, end_incl, uniq) " +
+            "JOIN stats_uris qu ON qu.uri = q.uri " +
+            "JOIN endpoint_hits eh ON eh.uri_id = qu.id AND eh.timestamp BETWEEN q.start_ts AND q.end_ts " +
+            "AND (q.end_incl OR eh.timestamp < q.end_ts) " +
+            "WHERE eh.timestamp BETWEEN CAST(? AS TIMESTAMP) AND CAST(? AS TIMESTAMP) " +
+            "GROUP BY q.idx, q.uniq, eh.app_id, eh.uri_id) s " +
+            "JOIN stats_apps a ON a.id = s.app_id " +
+            "JOIN stats_uris u ON u.id = s.uri_id";
+
+    private static final String HOURLY_WINDOW_ROW =
+            "(CAST(? AS INT), CAST(? AS VARCHAR), CAST(? AS TIMESTAMP), CAST(? AS TIMESTAMP))";
+
+    private static final String HOURLY_WINDOW_STATS =
+            "SELECT s.idx, a.name AS app, u.uri AS uri, s.hits FROM (" +
+            "SELECT q.idx, h.app_id, h.uri_id, SUM(h.hits) AS hits " +
+            "FROM (VALUES %s) AS q(idx, uri, from_hour, to_hour) " +
+            "JOIN stats_uris qu ON qu.uri = q.uri " +
+            "JOIN endpoint_hits_hourly h ON h.uri_id = qu.id AND h.hour >= q.from_hour AND h.hour < q.to_hour " +
+            "GROUP BY q.idx, h.app_id, h.uri_id) s " +
+            "JOIN stats_apps a ON a.id = s.app_id " +
+            "JOIN stats_uris u ON u.id = s.uri_id";
+
+    //Ограничение числа запросов в одном SQL, чтобы не упереться в лимит параметров драйвера
+    private static final int MAX_QUERIES_PER_STATEMENT = 1000;
+
+    private static final RowMapper<WindowStats> WINDOW_STATS_MAPPER = (rs, rowNum) ->
+            new WindowStats(rs.getInt("idx"), rs.getString("app"), rs.getString("uri"), rs.getLong("hits"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final DictionaryRepository dictionaryRepository;
+
+    @Override
+    public HitDictionaryIds insertBatch(List<EndpointHit> hits, int batchSize) {
+        if (hits.isEmpty()) {
+            return new HitDictionaryIds(Map.of(), Map.of());
+        }
+        Map<String, Integer> appIds = dictionaryRepository.getOrCreateIds(Dictionary.APP,
+                hits.stream().map(EndpointHit::getApp).collect(Collectors.toSet()));
+        Map<String, Integer> uriIds = dictionaryRepository.getOrCreateIds(Dictionary.URI,
+                hits.stream().map(EndpointHit::getUri).collect(Collectors.toSet()));
+        Map<String, Integer> ipIds = dictionaryRepository.getOrCreateIds(Dictionary.IP,
+                hits.stream().map(EndpointHit::getIp).collect(Collectors.toSet()));
+        jdbcTemplate.batchUpdate(INSERT_HIT, hits, batchSize, (ps, hit) -> {
+            ps.setInt(1, appIds.get(hit.getApp()));
+            ps.setInt(2, uriIds.get(hit.getUri()));
+            ps.setInt(3, ipIds.get(hit.getIp()));
+            ps.setTimestamp(4, Timestamp.valueOf(hit.getTimestamp()));
+        });
+        return new HitDictionaryIds(appIds, uriIds);
+    }
+
+    @Override
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        return getRawStats(start, end, true, uris, false);
+    }
+
+    @Override
+    public List<ViewStats> getStatsEndExclusive(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        return getRawStats(start, end, false, uris, false);
+    }
+
+    @Override
+    public List<ViewStats> getUniqueStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        return getRawStats(start, end, true, uris, true);
+    }
+
+    private List<ViewStats> getRawStats(LocalDateTime start, LocalDateTime end, boolean endInclusive,
+                                        List<String> uris, boolean unique) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end));
+        String uriIdFilter = uriIdFilter(uris, params);
+        if (uriIdFilter == null) {
+            return Collections.emptyList();
+        }
+        String sql = String.format(RAW_STATS, unique ? "COUNT(DISTINCT ip_id)" : "COUNT(*)",
+                endInclusive ? "<=" : "<", uriIdFilter);
+        return namedParameterJdbcTemplate.query(sql, params, (rs, rowNum) ->
+                new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+    }
+
+    @Override
+    public void upsertHourly(SortedMap<HourlyHitKey, Long> counts) {
+        if (counts.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<HourlyHitKey, Long>> entries = new ArrayList<>(counts.entrySet());
+        jdbcTemplate.batchUpdate(UPSERT_HOURLY, entries, entries.size(), (ps, entry) -> {
+            ps.setInt(1, entry.getKey().uriId());
+            ps.setTimestamp(2, Timestamp.valueOf(entry.getKey().hour()));
+            ps.setInt(3, entry.getKey().appId());
+            ps.setLong(4, entry.getValue());
+        });
+    }
+
+    @Override
+    public List<ViewStats> getHourlyStats(LocalDateTime fromHour, LocalDateTime toHour, List<String> uris) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("fromHour", Timestamp.valueOf(fromHour))
+                .addValue("toHour", Timestamp.valueOf(toHour));
+        String uriIdFilter = uriIdFilter(uris, params);
+        if (uriIdFilter == null) {
+            return Collections.emptyList();
+        }
+        String sql = String.format(HOURLY_STATS, uriIdFilter);
+        return namedParameterJdbcTemplate.query(sql, params, (rs, rowNum) ->
+                new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+    }
+
+    @Override
+    public boolean recreateLegacyRollups() {
+        Boolean legacy = jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM information_schema.columns " +
+                "WHERE table_schema = current_schema() AND table_name IN ('endpoint_hits_hourly', 'endpoint_hits_hll') " +
+                "AND column_name = 'uri')", Boolean.class);
+        if (!Boolean.TRUE.equals(legacy)) {
+            return false;
+        }
+        jdbcTemplate.execute("DROP TABLE IF EXISTS endpoint_hits_hourly, endpoint_hits_hll");
+        jdbcTemplate.execute(CREATE_HOURLY);
+        jdbcTemplate.execute(CREATE_SKETCHES);
+        return true;
+    }
+
+    @Override
+    public void backfillHourly() {
+        jdbcTemplate.update(BACKFILL_HOURLY);
+    }
+
+    //Новые ключи вставляются как есть, затем все ключи пачки блокируются и сливаются с тем, что лежит в базе.
+    //Слияние HyperLogLog идемпотентно, поэтому повторное слияние только что вставленного скетча ничего не меняет
+    @Override
+    public void mergeHourlySketches(SortedMap<HourlyHitKey, HyperLogLog> sketches) {
+        if (sketches.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<HourlyHitKey, HyperLogLog>> entries = new ArrayList<>(sketches.entrySet());
+        jdbcTemplate.batchUpdate(INSERT_SKETCH, entries, entries.size(), (ps, entry) -> {
+            ps.setInt(1, entry.getKey().uriId());
+            ps.setTimestamp(2, Timestamp.valueOf(entry.getKey().hour()));
+            ps.setInt(3, entry.getKey().appId());
+            ps.setBytes(4, entry.getValue().toBytes());
+        });
+
+        List<Object[]> updates = new ArrayList<>();
+        for (int from = 0; from < entries.size(); from += MAX_QUERIES_PER_STATEMENT) {
+            List<Map.Entry<HourlyHitKey, HyperLogLog>> chunk =
+                    entries.subList(from, Math.min(entries.size(), from + MAX_QUERIES_PER_STATEMENT));
+            String sql = String.format(LOCK_SKETCHES, String.join(", ", Collections.nCopies(chunk.size(), "(?, ?, ?)")));
+            Object[] args = new Object[chunk.size() * 3];
+            for (int i = 0; i < chunk.size(); i++) {
+                HourlyHitKey key = chunk.get(i).getKey();
+                args[i * 3] = key.uriId();
+                args[i * 3 + 1] = Timestamp.valueOf(key.hour());
+                args[i * 3 + 2] = key.appId();
+            }
+            jdbcTemplate.query(sql, rs -> {
+                HourlyHitKey key = new HourlyHitKey(rs.getInt("uri_id"), rs.getTimestamp("hour").toLocalDateTime(),
+                        rs.getInt("app_id"));
+                byte[] stored = rs.getBytes("sketch");
+                byte[] merged = HyperLogLog.fromBytes(stored).merge(sketches.get(key)).toBytes();
+                if (!Arrays.equals(stored, merged)) {
+                    updates.add(new Object[]{merged, key.uriId(), Timestamp.valueOf(key.hour()), key.appId()});
+                }
+            }, args);
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_SKETCH, updates);
+        }
+    }
+
+    @Override
+    public List<UniqueSketch> getHourlySketches(LocalDateTime fromHour, LocalDateTime toHour, List<String> uris) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("fromHour", Timestamp.valueOf(fromHour))
+                .addValue("toHour", Timestamp.valueOf(toHour));
+        String uriIdFilter = uriIdFilter(uris, params);
+        if (uriIdFilter == null) {
+            return Collections.emptyList();
+        }
+        //Скетчи сливаются по ключам (app_id, uri_id), строки подставляются уже слитым скетчам
+        Map<AppUriIds, HyperLogLog> merged = new HashMap<>();
+        namedParameterJdbcTemplate.query(String.format(HOURLY_SKETCHES, uriIdFilter), params, rs -> {
+            merged.merge(new AppUriIds(rs.getInt("app_id"), rs.getInt("uri_id")),
+                    HyperLogLog.fromBytes(rs.getBytes("sketch")), HyperLogLog::merge);
+        });
+        if (merged.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Integer, String> apps = dictionaryRepository.getValues(Dictionary.APP,
+                merged.keySet().stream().map(AppUriIds::appId).toList());
+        Map<Integer, String> uriValues = dictionaryRepository.getValues(Dictionary.URI,
+                merged.keySet().stream().map(AppUriIds::uriId).toList());
+        List<UniqueSketch> sketches = new ArrayList<>(merged.size());
+        merged.forEach((ids, sketch) ->
+                sketches.add(new UniqueSketch(apps.get(ids.appId()), uriValues.get(ids.uriId()), sketch)));
+        return sketches;
+    }
+
+    @Override
+    public List<UniqueSketch> getEdgeSketches(LocalDateTime start, LocalDateTime firstFullHour, LocalDateTime lastHour,
+                                              LocalDateTime end, List<String> uris, int precision) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("firstFullHour", Timestamp.valueOf(firstFullHour))
+                .addValue("lastHour", Timestamp.valueOf(lastHour))
+                .addValue("end", Timestamp.valueOf(end));
+        String uriIdFilter = uriIdFilter(uris, params);
+        if (uriIdFilter == null) {
+            return Collections.emptyList();
+        }
+        Map<String, UniqueSketch> sketches = new HashMap<>();
+        namedParameterJdbcTemplate.query(String.format(EDGE_IPS, uriIdFilter), params, rs -> {
+            String app = rs.getString("app");
+            String uri = rs.getString("uri");
+            sketches.computeIfAbsent(app + '\n' + uri, key -> new UniqueSketch(app, uri, new HyperLogLog(precision)))
+                    .sketch().add(rs.getString("ip"));
+        });
+        return new ArrayList<>(sketches.values());
+    }
+
+    @Override
+    public boolean hasHourlySketches() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM endpoint_hits_hll)", Boolean.class));
+    }
+
+    @Override
+    public void backfillHourlySketches(int precision, int batchSize) {
+        SortedMap<HourlyHitKey, HyperLogLog> sketches = new TreeMap<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(ALL_HOURLY_IPS);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            return ps;
+        }, rs -> {
+            HourlyHitKey key = new HourlyHitKey(rs.getInt("uri_id"), rs.getTimestamp("hour").toLocalDateTime(),
+                    rs.getInt("app_id"));
+            sketches.computeIfAbsent(key, k -> new HyperLogLog(precision)).add(rs.getString("ip"));
+            if (sketches.size() >= batchSize) {
+                mergeHourlySketches(sketches);
+                sketches.clear();
+            }
+        });
+        mergeHourlySketches(sketches);
+    }
+
+    @Override
+    public List<UriTotals> getUriTotals(String uriPattern) {
+        return jdbcTemplate.query(URI_TOTALS, (rs, rowNum) -> new UriTotals(rs.getString("app"), rs.getString("uri"),
+                rs.getLong("hits"), rs.getTimestamp("first_seen").toLocalDateTime(),
+                rs.getTimestamp("last_seen").toLocalDateTime()), uriPattern);
+    }
+
+    @Override
+    public void forEachDistinctIp(String uriPattern, DistinctIpHandler handler) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(DISTINCT_IPS);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            ps.setString(1, uriPattern);
+            return ps;
+        }, rs -> {
+            handler.accept(rs.getString("app"), rs.getString("uri"), rs.getString("ip"));
+        });
+    }
+
+    @Override
+    public List<WindowStats> getWindowStats(List<HitWindow> windows) {
+        List<WindowStats> stats = new ArrayList<>();
+        for (int from = 0; from < windows.size(); from += MAX_QUERIES_PER_STATEMENT) {
+            List<HitWindow> chunk = windows.subList(from, Math.min(windows.size(), from + MAX_QUERIES_PER_STATEMENT));
+            String sql = String.format(RAW_WINDOW_STATS,
+                    String.join(", ", Collections.nCopies(chunk.size(), RAW_WINDOW_ROW)));
+            //Общие границы по всем окнам пачки дублируются явным условием, чтобы планировщик отсёк лишние секции
+            Object[] args = new Object[chunk.size() * 6 + 2];
+            LocalDateTime minStart = chunk.get(0).start();
+            LocalDateTime maxEnd = chunk.get(0).end();
+            for (int i = 0; i < chunk.size(); i++) {
+                HitWindow window = chunk.get(i);
+                minStart = window.start().isBefore(minStart) ? window.start() : minStart;
+                maxEnd = window.end().isAfter(maxEnd) ? window.end() : maxEnd;
+                args[i * 6] = window.query();
+                args[i * 6 + 1] = window.uri();
+                args[i * 6 + 2] = Timestamp.valueOf(window.start());
+                args[i * 6 + 3] = Timestamp.valueOf(window.end());
+                args[i * 6 + 4] = window.endInclusive();
+                args[i * 6 + 5] = window.unique();
+            }
+            args[chunk.size() * 6] = Timestamp.valueOf(minStart);
+            args[chunk.size() * 6 + 1] = Timestamp.valueOf(maxEnd);
+            stats.addAll(jdbcTemplate.query(sql, WINDOW_STATS_MAPPER, args));
+        }
+        return stats;
+    }
+
+    @Override
+    public List<WindowStats> getHourlyWindowStats(List<HitWindow> windows) {
+        List<WindowStats> stats = new ArrayList<>();
+        for (int from = 0; from < windows.size(); from += MAX_QUERIES_PER_STATEMENT) {
+            List<HitWindow> chunk = windows.subList(from, Math.min(windows.size(), from + MAX_QUERIES_PER_STATEMENT));
+            String sql = String.format(HOURLY_WINDOW_STATS,
+                    String.join(", ", Collections.nCopies(chunk.size(), HOURLY_WINDOW_ROW)));
+            Object[] args = new Object[chunk.size() * 4];
+            for (int i = 0; i < chunk.size(); i++) {
+                HitWindow window = chunk.get(i);
+                args[i * 4] = window.query();
+                args[i * 4 + 1] = window.uri();
+                args[i * 4 + 2] = Timestamp.valueOf(window.start());
+                args[i * 4 + 3] = Timestamp.valueOf(window.end());
+            }
+            stats.addAll(jdbcTemplate.query(sql, WINDOW_STATS_MAPPER, args));
+        }
+        return stats;
+    }
+
+    //Фильтр по ключам uri для сырых хитов; null, если ни одного из запрошенных uri ещё не было
+    private String uriIdFilter(List<String> uris, MapSqlParameterSource params) {
+        if (uris == null || uris.isEmpty()) {
+            return "";
+        }
+        Map<String, Integer> uriIds = dictionaryRepository.getIds(Dictionary.URI, uris);
+        if (uriIds.isEmpty()) {
+            return null;
+        }
+        params.addValue("uriIds", uriIds.values());
+        return "AND uri_id IN (:uriIds)";
+    }
+
+    private record AppUriIds(int appId, int uriId) {
+    }
+}
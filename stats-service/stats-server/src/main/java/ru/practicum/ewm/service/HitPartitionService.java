@@ -0,0 +1,136 @@
+package ru.practicum.ewm.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ewm.model.EndpointHit;
+import ru.practicum.ewm.repository.HitPartitionRepository;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Обслуживание помесячных секций endpoint_hits.
+ * <p>
+ * Секции создаются заранее на stats.partitions.months-ahead месяцев вперёд и, при необходимости, перед вставкой
+ * хитов с датами вне уже созданных секций. Секции, целиком вышедшие за срок хранения, удаляются целиком вместо
+ * DELETE по строкам. В той же транзакции удаляются почасовые агрегаты и скетчи этого месяца: иначе целые часы
+ * окна считались бы по агрегатам вместе с удалёнными хитами, а края окна и точные уникальные IP - без них.
+ * <p>
+ * Секция под пачку хитов создаётся в транзакции вставки, на её соединении: вложенная транзакция занимала бы
+ * второе соединение пула на каждую пачку. Созданный месяц запоминается только после коммита.
+ */
+@Slf4j
+@Service
+public class HitPartitionService {
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final HitPartitionRepository hitPartitionRepository;
+    private final TransactionTemplate transactionTemplate;
+    //Месяцы, секции которых уже точно есть
+    private final Set<LocalDate> knownMonths = ConcurrentHashMap.newKeySet();
+
+    @Value("${stats.partitions.months-ahead:2}")
+    private int monthsAhead;
+
+    //Срок хранения сырых хитов, 0 - хранить всё
+    @Value("${stats.partitions.retention:0d}")
+    private Period retention;
+
+    public HitPartitionService(HitPartitionRepository hitPartitionRepository,
+                               PlatformTransactionManager transactionManager) {
+        this.hitPartitionRepository = hitPartitionRepository;
+        //Обслуживание по расписанию выполняется в своей транзакции, создание секции под пачку хитов -
+        //в транзакции вставки
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    //Перенос хитов из таблицы прежней версии и создание ближайших секций
+    public void prepareStorage() {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (hitPartitionRepository.isLegacyTable()) {
+                log.info("Перенос endpoint_hits в секционированную таблицу");
+                hitPartitionRepository.renameLegacyTable();
+                hitPartitionRepository.getLegacyMonths().forEach(hitPartitionRepository::createPartition);
+                hitPartitionRepository.copyLegacyHits();
+            }
+            hitPartitionRepository.createIndexes();
+        });
+        maintainPartitions();
+    }
+
+    @Scheduled(cron = "${stats.partitions.maintenance-cron:0 0 * * * *}")
+    public void maintainPartitions() {
+        LocalDate currentMonth = LocalDate.now().withDayOfMonth(1);
+        for (int i = 0; i <= monthsAhead; i++) {
+            ensurePartition(currentMonth.plusMonths(i));
+        }
+        if (!retention.isZero()) {
+            dropExpiredPartitions(LocalDate.now().minus(retention));
+        }
+    }
+
+    //Создание недостающих секций под даты пачки хитов
+    public void ensurePartitions(Collection<EndpointHit> hits) {
+        Set<LocalDate> months = new TreeSet<>();
+        for (EndpointHit hit : hits) {
+            months.add(hit.getTimestamp().toLocalDate().withDayOfMonth(1));
+        }
+        months.forEach(this::ensurePartition);
+    }
+
+    private void ensurePartition(LocalDate month) {
+        if (knownMonths.contains(month)) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> hitPartitionRepository.createPartition(month));
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            knownMonths.add(month);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                knownMonths.add(month);
+            }
+        });
+    }
+
+    //Удаляются секции, все хиты которых старше cutoff
+    private void dropExpiredPartitions(LocalDate cutoff) {
+        for (String name : hitPartitionRepository.getPartitionNames()) {
+            LocalDate month = parseMonth(name);
+            if (month != null && !month.plusMonths(1).isAfter(cutoff)) {
+                log.info("Удаление секции {} с хитами старше {}", name, cutoff);
+                transactionTemplate.executeWithoutResult(status -> {
+                    hitPartitionRepository.dropPartition(name);
+                    hitPartitionRepository.deleteRollups(month);
+                });
+                knownMonths.remove(month);
+            }
+        }
+    }
+
+    private static LocalDate parseMonth(String partitionName) {
+        if (!partitionName.startsWith(HitPartitionRepository.PARTITION_PREFIX)) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(partitionName.substring(HitPartitionRepository.PARTITION_PREFIX.length()) + "01",
+                    PARTITION_SUFFIX);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
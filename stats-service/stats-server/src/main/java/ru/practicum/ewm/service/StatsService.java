@@ -1,14 +1,24 @@
 package ru.practicum.ewm.service;
 
 import ru.practicum.ewm.dto.EndpointHitDto;
+import ru.practicum.ewm.dto.StatsQuery;
 import ru.practicum.ewm.dto.ViewStats;
 
 import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
 
 
 public interface StatsService {
     void saveHit(EndpointHitDto hitDto);
 
+    void saveHits(List<EndpointHitDto> hitDtos);
+
+    void saveHits(Iterator<EndpointHitDto> hitDtos);
+
     List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique);
+
+    List<ViewStats> getApproxUniqueStats(LocalDateTime start, LocalDateTime end, List<String> uris);
+
+    List<ViewStats> getStats(List<StatsQuery> queries);
 }
@@ -1,27 +1,116 @@
 package ru.practicum.ewm.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.ewm.exception.PayloadTooLargeException;
 import ru.practicum.ewm.exception.ValidationException;
 import ru.practicum.ewm.mapper.EndpointHitMapper;
 import ru.practicum.ewm.model.EndpointHit;
+import ru.practicum.ewm.model.HitWindow;
+import ru.practicum.ewm.model.HitDictionaryIds;
+import ru.practicum.ewm.model.HourlyHitKey;
+import ru.practicum.ewm.model.HyperLogLog;
+import ru.practicum.ewm.model.UniqueSketch;
+import ru.practicum.ewm.model.WindowStats;
 import org.springframework.stereotype.Service;
 import ru.practicum.ewm.repository.StatsRepository;
 import ru.practicum.ewm.dto.EndpointHitDto;
+import ru.practicum.ewm.dto.StatsQuery;
 import ru.practicum.ewm.dto.ViewStats;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 @Service
 @RequiredArgsConstructor
 public class StatsServiceImpl implements StatsService {
     private final StatsRepository statsRepository;
     private final EndpointHitMapper endpointHitMapper;
+    private final HitPartitionService hitPartitionService;
+    private final ViewCounterEngine viewCounterEngine;
+
+    @Value("${stats.ingest.batch-size:500}")
+    private int batchSize;
+
+    //Предел хитов в одном запросе: пачка пишется одной транзакцией, а её хиты, почасовые агрегаты и скетчи
+    //копятся в памяти до вставки
+    @Value("${stats.ingest.max-hits-per-request:100000}")
+    private int maxHitsPerRequest;
+
+    //Допустимая относительная ошибка приблизительного подсчёта уникальных IP, задаёт точность скетчей
+    @Value("${stats.unique.approx.error:0.02}")
+    private double approxError;
 
     @Override
+    @Transactional
     public void saveHit(EndpointHitDto endpointHitDto) {
-        EndpointHit endpointHit = endpointHitMapper.toEndpointHit(endpointHitDto);
-        statsRepository.save(endpointHit);
+        saveHits(List.of(endpointHitDto));
+    }
+
+    @Override
+    @Transactional
+    public void saveHits(List<EndpointHitDto> endpointHitDtos) {
+        saveHits(endpointHitDtos.iterator());
+    }
+
+    //Все хиты пишутся в одной транзакции, в базу уходят JDBC-пачками по batchSize строк. Хиты вставляются
+    //после чтения всего запроса: новые значения словарей всего запроса добавляются одним отсортированным
+    //проходом, поэтому параллельные запросы не взаимоблокируются на уникальных индексах словарей.
+    //В той же транзакции к почасовым агрегатам прибавляются счётчики всей пачки, а в почасовые скетчи - её IP.
+    //Поток NDJSON не коммитится частями: пачка длиннее maxHitsPerRequest откатывается целиком с ответом 413
+    @Override
+    @Transactional
+    public void saveHits(Iterator<EndpointHitDto> endpointHitDtos) {
+        List<EndpointHit> hits = new ArrayList<>();
+        List<EndpointHit> countedHits = new ArrayList<>();
+        int received = 0;
+        while (endpointHitDtos.hasNext()) {
+            EndpointHitDto endpointHitDto = endpointHitDtos.next();
+            if (++received > maxHitsPerRequest) {
+                throw new PayloadTooLargeException("В одном запросе можно передать не больше "
+                        + maxHitsPerRequest + " хитов");
+            }
+            validate(endpointHitDto);
+            EndpointHit endpointHit = endpointHitMapper.toEndpointHit(endpointHitDto);
+            hits.add(endpointHit);
+            if (viewCounterEngine.matches(endpointHit.getUri())) {
+                countedHits.add(endpointHit);
+            }
+        }
+        HitDictionaryIds ids = insertHits(hits);
+        //Агрегаты ключуются ключами словарей, полученными при вставке, и обновляются в их порядке
+        SortedMap<HourlyHitKey, Long> hourlyCounts = new TreeMap<>();
+        SortedMap<HourlyHitKey, HyperLogLog> hourlySketches = new TreeMap<>();
+        int precision = HyperLogLog.precisionFor(approxError);
+        for (EndpointHit hit : hits) {
+            HourlyHitKey key = ids.hourlyKey(hit, hit.getTimestamp().truncatedTo(ChronoUnit.HOURS));
+            hourlyCounts.merge(key, 1L, Long::sum);
+            hourlySketches.computeIfAbsent(key, k -> new HyperLogLog(precision)).add(hit.getIp());
+        }
+        statsRepository.upsertHourly(hourlyCounts);
+        statsRepository.mergeHourlySketches(hourlySketches);
+        //Счётчики в памяти пополняются только после коммита, чтобы не учесть откаченные хиты
+        if (!countedHits.isEmpty()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    viewCounterEngine.record(countedHits);
+                }
+            });
+        }
     }
 
     @Override
@@ -29,10 +118,170 @@ public class StatsServiceImpl implements StatsService {
         if (end.isBefore(start)) {
             throw new ValidationException("Дата начала не может быть ранее даты окончания");
         }
+        Optional<List<ViewStats>> counted = viewCounterEngine.getStats(start, end, uris,
+                unique ? ViewCounterEngine.Count.UNIQUE : ViewCounterEngine.Count.TOTAL);
+        if (counted.isPresent()) {
+            return counted.get();
+        }
         if (unique) {
             return statsRepository.getUniqueStats(start, end, uris);
         } else {
+            return getTotalStats(start, end, uris);
+        }
+    }
+
+    //Целые часы берутся из почасовых скетчей, IP неполных часов по краям читаются из сырых хитов.
+    //Если в окне нет ни одного целого часа, считается точно: сырых хитов там не больше чем за два часа
+    @Override
+    public List<ViewStats> getApproxUniqueStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        if (end.isBefore(start)) {
+            throw new ValidationException("Дата начала не может быть ранее даты окончания");
+        }
+        Optional<List<ViewStats>> counted = viewCounterEngine.getStats(start, end, uris,
+                ViewCounterEngine.Count.APPROX_UNIQUE);
+        if (counted.isPresent()) {
+            return counted.get();
+        }
+        LocalDateTime firstFullHour = ceilToHour(start);
+        LocalDateTime lastHour = end.truncatedTo(ChronoUnit.HOURS);
+        if (!firstFullHour.isBefore(lastHour)) {
+            return statsRepository.getUniqueStats(start, end, uris);
+        }
+
+        Map<String, UniqueSketch> merged = new HashMap<>();
+        List<UniqueSketch> sketches = new ArrayList<>(statsRepository.getHourlySketches(firstFullHour, lastHour, uris));
+        sketches.addAll(statsRepository.getEdgeSketches(start, firstFullHour, lastHour, end, uris,
+                HyperLogLog.precisionFor(approxError)));
+        for (UniqueSketch sketch : sketches) {
+            merged.merge(sketch.app() + '\n' + sketch.uri(), sketch, (left, right) ->
+                    new UniqueSketch(left.app(), left.uri(), left.sketch().merge(right.sketch())));
+        }
+
+        return merged.values().stream()
+                .map(sketch -> new ViewStats(sketch.app(), sketch.uri(), sketch.sketch().estimate()))
+                .sorted(Comparator.comparing(ViewStats::getHits).reversed())
+                .toList();
+    }
+
+    @Override
+    public List<ViewStats> getStats(List<StatsQuery> queries) {
+        for (StatsQuery query : queries) {
+            if (query.getUri() == null || query.getStart() == null || query.getEnd() == null) {
+                throw new ValidationException("В запросе статистики должны быть заданы uri, start и end");
+            }
+            if (query.getEnd().isBefore(query.getStart())) {
+                throw new ValidationException("Дата начала не может быть ранее даты окончания");
+            }
+        }
+
+        //Запросы "с момента публикации" обслуживаются счётчиками в памяти, остальные - по агрегатам и хитам.
+        //Ответы идут в порядке запросов
+        List<List<ViewStats>> answers = new ArrayList<>(Collections.nCopies(queries.size(), null));
+        List<Integer> remaining = new ArrayList<>();
+        for (int i = 0; i < queries.size(); i++) {
+            StatsQuery query = queries.get(i);
+            Optional<List<ViewStats>> counted = viewCounterEngine.getStats(query.getStart(), query.getEnd(),
+                    List.of(query.getUri()),
+                    query.isUnique() ? ViewCounterEngine.Count.UNIQUE : ViewCounterEngine.Count.TOTAL);
+            if (counted.isPresent()) {
+                answers.set(i, counted.get());
+            } else {
+                remaining.add(i);
+            }
+        }
+        Map<Integer, List<ViewStats>> rolledUp = getRolledUpStats(remaining.stream().map(queries::get).toList());
+        for (int i = 0; i < remaining.size(); i++) {
+            answers.set(remaining.get(i), rolledUp.getOrDefault(i, List.of()));
+        }
+        return answers.stream().flatMap(List::stream).toList();
+    }
+
+    //Для каждого запроса общего числа хитов целые часы окна берутся из почасовых агрегатов, сырые хиты
+    //читаются только для неполных часов по краям, как в getTotalStats. Точное число уникальных IP по
+    //агрегатам не сложить, такие запросы читают сырые хиты всего окна. Все окна всех запросов уходят
+    //двумя SQL-запросами: по сырым хитам и по агрегатам. Ответы - по номерам запросов в списке
+    private Map<Integer, List<ViewStats>> getRolledUpStats(List<StatsQuery> queries) {
+        List<HitWindow> rawWindows = new ArrayList<>();
+        List<HitWindow> hourlyWindows = new ArrayList<>();
+        for (int i = 0; i < queries.size(); i++) {
+            StatsQuery query = queries.get(i);
+            LocalDateTime firstFullHour = ceilToHour(query.getStart());
+            LocalDateTime lastHour = query.getEnd().truncatedTo(ChronoUnit.HOURS);
+            if (query.isUnique() || !firstFullHour.isBefore(lastHour)) {
+                rawWindows.add(new HitWindow(i, query.getUri(), query.getStart(), query.getEnd(), true,
+                        query.isUnique()));
+                continue;
+            }
+            if (query.getStart().isBefore(firstFullHour)) {
+                rawWindows.add(new HitWindow(i, query.getUri(), query.getStart(), firstFullHour, false, false));
+            }
+            hourlyWindows.add(new HitWindow(i, query.getUri(), firstFullHour, lastHour, false, false));
+            rawWindows.add(new HitWindow(i, query.getUri(), lastHour, query.getEnd(), true, false));
+        }
+
+        //номер запроса -> app -> хиты
+        Map<Integer, Map<String, Long>> merged = new HashMap<>();
+        List<WindowStats> windowStats = new ArrayList<>(statsRepository.getWindowStats(rawWindows));
+        windowStats.addAll(statsRepository.getHourlyWindowStats(hourlyWindows));
+        for (WindowStats stats : windowStats) {
+            merged.computeIfAbsent(stats.query(), query -> new HashMap<>()).merge(stats.app(), stats.hits(), Long::sum);
+        }
+
+        Map<Integer, List<ViewStats>> result = new HashMap<>();
+        merged.forEach((query, hitsByApp) -> result.put(query, hitsByApp.entrySet().stream()
+                .map(entry -> new ViewStats(entry.getKey(), queries.get(query).getUri(), entry.getValue()))
+                .sorted(Comparator.comparing(ViewStats::getHits).reversed())
+                .toList()));
+        return result;
+    }
+
+    //Целые часы внутри [start, end] берутся из почасовых агрегатов, сырые хиты читаются только
+    //для неполных часов по краям: [start, firstFullHour) и [lastHour, end]
+    private List<ViewStats> getTotalStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        LocalDateTime firstFullHour = ceilToHour(start);
+        LocalDateTime lastHour = end.truncatedTo(ChronoUnit.HOURS);
+        if (!firstFullHour.isBefore(lastHour)) {
             return statsRepository.getStats(start, end, uris);
         }
+
+        Map<String, ViewStats> merged = new HashMap<>();
+        if (start.isBefore(firstFullHour)) {
+            mergeStats(merged, statsRepository.getStatsEndExclusive(start, firstFullHour, uris));
+        }
+        mergeStats(merged, statsRepository.getHourlyStats(firstFullHour, lastHour, uris));
+        mergeStats(merged, statsRepository.getStats(lastHour, end, uris));
+
+        return merged.values().stream()
+                .sorted(Comparator.comparing(ViewStats::getHits).reversed())
+                .toList();
+    }
+
+    private void mergeStats(Map<String, ViewStats> merged, List<ViewStats> stats) {
+        for (ViewStats viewStats : stats) {
+            merged.merge(viewStats.getApp() + '\n' + viewStats.getUri(), viewStats, (left, right) ->
+                    new ViewStats(left.getApp(), left.getUri(), left.getHits() + right.getHits()));
+        }
+    }
+
+    //Некорректный хит отклоняет всю пачку: транзакция откатывается, клиент получает 400
+    private static void validate(EndpointHitDto endpointHitDto) {
+        if (endpointHitDto == null || isBlank(endpointHitDto.getApp()) || isBlank(endpointHitDto.getUri())
+                || isBlank(endpointHitDto.getIp()) || endpointHitDto.getTimestamp() == null) {
+            throw new ValidationException("В хите должны быть заданы app, uri, ip и timestamp");
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private HitDictionaryIds insertHits(List<EndpointHit> hits) {
+        hitPartitionService.ensurePartitions(hits);
+        return statsRepository.insertBatch(hits, batchSize);
+    }
+
+    private static LocalDateTime ceilToHour(LocalDateTime dateTime) {
+        LocalDateTime hour = dateTime.truncatedTo(ChronoUnit.HOURS);
+        return hour.isBefore(dateTime) ? hour.plusHours(1) : hour;
     }
 }
@@ -0,0 +1,45 @@
+package ru.practicum.ewm.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ewm.model.HyperLogLog;
+import ru.practicum.ewm.repository.StatsRepository;
+
+//Подготовка хранилища хитов: перенос данных прежних версий, построение агрегатов и счётчиков в памяти.
+//Выполняется до запуска веб-сервера, чтобы новые хиты не успели сделать таблицы агрегатов непустыми
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StatsStorageInitializer implements SmartInitializingSingleton {
+    private final HitPartitionService hitPartitionService;
+    private final StatsRepository statsRepository;
+    private final ViewCounterEngine viewCounterEngine;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${stats.unique.approx.error:0.02}")
+    private double approxError;
+
+    @Value("${stats.ingest.batch-size:500}")
+    private int batchSize;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        hitPartitionService.prepareStorage();
+        transactionTemplate.executeWithoutResult(status -> {
+            if (statsRepository.recreateLegacyRollups()) {
+                log.info("Почасовые агрегаты со строковыми ключами пересозданы с ключами словарей");
+            }
+            statsRepository.backfillHourly();
+            if (statsRepository.hasHourlySketches()) {
+                return;
+            }
+            log.info("Построение почасовых скетчей уникальных IP по накопленным хитам");
+            statsRepository.backfillHourlySketches(HyperLogLog.precisionFor(approxError), batchSize);
+        });
+        transactionTemplate.executeWithoutResult(status -> viewCounterEngine.rebuild());
+    }
+}
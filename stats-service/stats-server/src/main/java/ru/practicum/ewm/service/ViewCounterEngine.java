@@ -0,0 +1,194 @@
+package ru.practicum.ewm.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.dto.ViewStats;
+import ru.practicum.ewm.model.EndpointHit;
+import ru.practicum.ewm.model.HyperLogLog;
+import ru.practicum.ewm.model.UriTotals;
+import ru.practicum.ewm.repository.StatsRepository;
+
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Счётчики просмотров в памяти для uri вида /events/{id}.
+ * <p>
+ * На каждую пару (app, uri) хранится общее число хитов, время первого и последнего хита и множество
+ * уникальных IP: точное до stats.counters.exact-unique-threshold значений, дальше - скетч HyperLogLog.
+ * Счётчики строятся по базе при старте и пополняются после коммита каждой пачки хитов. Запрос обслуживается
+ * из памяти, только если для каждой пары окно целиком покрывает её хиты или не задевает ни одного из них -
+ * это как раз запросы "с момента публикации по текущий момент". Иначе запрос уходит в базу.
+ * <p>
+ * При ненулевом сроке хранения хитов счётчики выключены: удалённые секции они бы продолжали учитывать.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ViewCounterEngine {
+    private final StatsRepository statsRepository;
+    //uri -> app -> счётчик
+    private final Map<String, Map<String, UriCounter>> counters = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    @Value("${stats.counters.enabled:true}")
+    private boolean enabled;
+
+    @Value("${stats.counters.uri-pattern:^/events/[0-9]+$}")
+    private String uriPattern;
+
+    @Value("${stats.counters.exact-unique-threshold:1000}")
+    private int exactUniqueThreshold;
+
+    @Value("${stats.unique.approx.error:0.02}")
+    private double approxError;
+
+    @Value("${stats.partitions.retention:0d}")
+    private Period retention;
+
+    private Pattern compiledUriPattern;
+
+    public enum Count {
+        TOTAL,
+        UNIQUE,
+        APPROX_UNIQUE
+    }
+
+    //Построение счётчиков по всем хитам в базе; вызывается до приёма хитов
+    public void rebuild() {
+        if (!enabled || !retention.isZero()) {
+            log.info("Счётчики просмотров в памяти выключены");
+            return;
+        }
+        compiledUriPattern = Pattern.compile(uriPattern);
+        counters.clear();
+        for (UriTotals totals : statsRepository.getUriTotals(uriPattern)) {
+            counter(totals.app(), totals.uri()).seed(totals);
+        }
+        statsRepository.forEachDistinctIp(uriPattern, (app, uri, ip) -> counter(app, uri).addUnique(ip));
+        ready = true;
+        log.info("Построены счётчики просмотров в памяти для {} uri", counters.size());
+    }
+
+    //Учёт закоммиченных хитов; хиты с uri не по шаблону пропускаются
+    public void record(Collection<EndpointHit> hits) {
+        if (!ready) {
+            return;
+        }
+        for (EndpointHit hit : hits) {
+            if (matches(hit.getUri())) {
+                counter(hit.getApp(), hit.getUri()).record(hit.getIp(), hit.getTimestamp());
+            }
+        }
+    }
+
+    //Хиты, которые должны попасть в счётчики
+    public boolean matches(String uri) {
+        return ready && compiledUriPattern.matcher(uri).matches();
+    }
+
+    //Статистика из памяти или пустой Optional, если запрос из памяти не обслужить
+    public Optional<List<ViewStats>> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Count count) {
+        if (!ready || uris == null || uris.isEmpty()) {
+            return Optional.empty();
+        }
+        List<ViewStats> stats = new ArrayList<>();
+        for (String uri : new LinkedHashSet<>(uris)) {
+            if (!compiledUriPattern.matcher(uri).matches()) {
+                return Optional.empty();
+            }
+            for (Map.Entry<String, UriCounter> entry : counters.getOrDefault(uri, Map.of()).entrySet()) {
+                Long hits = entry.getValue().count(start, end, count);
+                if (hits == null) {
+                    return Optional.empty();
+                }
+                if (hits > 0) {
+                    stats.add(new ViewStats(entry.getKey(), uri, hits));
+                }
+            }
+        }
+        stats.sort(Comparator.comparing(ViewStats::getHits).reversed());
+        return Optional.of(stats);
+    }
+
+    private UriCounter counter(String app, String uri) {
+        return counters.computeIfAbsent(uri, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(app, key -> new UriCounter());
+    }
+
+    //Общее число хитов считается в LongAdder без блокировок, остальное меняется под монитором счётчика
+    private final class UriCounter {
+        private final LongAdder hits = new LongAdder();
+        private LocalDateTime firstSeen;
+        private LocalDateTime lastSeen;
+        private Set<String> uniqueIps = new HashSet<>();
+        private HyperLogLog uniqueSketch;
+
+        //Границы расширяются до увеличения счётчика: читатель может не увидеть новый хит, но не посчитает
+        //его в окне, которое этот хит не покрывает
+        void record(String ip, LocalDateTime timestamp) {
+            synchronized (this) {
+                extend(timestamp, timestamp);
+                addUnique(ip);
+            }
+            hits.increment();
+        }
+
+        synchronized void seed(UriTotals totals) {
+            hits.add(totals.hits());
+            extend(totals.firstSeen(), totals.lastSeen());
+        }
+
+        synchronized void addUnique(String ip) {
+            if (uniqueSketch != null) {
+                uniqueSketch.add(ip);
+                return;
+            }
+            uniqueIps.add(ip);
+            if (uniqueIps.size() > exactUniqueThreshold) {
+                uniqueSketch = new HyperLogLog(HyperLogLog.precisionFor(approxError));
+                uniqueIps.forEach(uniqueSketch::add);
+                uniqueIps = null;
+            }
+        }
+
+        //0, если окно не задевает ни одного хита; null, если окно задевает хиты лишь частично
+        //или точное число уникальных IP уже не известно
+        synchronized Long count(LocalDateTime start, LocalDateTime end, Count count) {
+            if (firstSeen == null || end.isBefore(firstSeen) || start.isAfter(lastSeen)) {
+                return 0L;
+            }
+            if (start.isAfter(firstSeen) || end.isBefore(lastSeen)) {
+                return null;
+            }
+            return switch (count) {
+                case TOTAL -> hits.sum();
+                case UNIQUE -> uniqueSketch == null ? (long) uniqueIps.size() : null;
+                case APPROX_UNIQUE -> uniqueSketch == null ? uniqueIps.size() : uniqueSketch.estimate();
+            };
+        }
+
+        private void extend(LocalDateTime from, LocalDateTime to) {
+            if (firstSeen == null || from.isBefore(firstSeen)) {
+                firstSeen = from;
+            }
+            if (lastSeen == null || to.isAfter(lastSeen)) {
+                lastSeen = to;
+            }
+        }
+    }
+}
@@ -1,7 +1,46 @@
+--словари строковых значений хитов
+CREATE TABLE IF NOT EXISTS stats_apps (
+    id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(255) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS stats_uris (
+    id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    uri VARCHAR(255) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS stats_ips (
+    id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    ip VARCHAR(255) NOT NULL UNIQUE
+);
+
+--хиты хранятся ключами словарей и секционируются по месяцам; секции создаёт и удаляет по сроку хранения
+--HitPartitionService, он же переносит сюда хиты из таблиц прежних версий со строковыми столбцами
 CREATE TABLE IF NOT EXISTS endpoint_hits (
-    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    app VARCHAR(255) NOT NULL,
-    uri VARCHAR (255) NOT NULL,
-    ip VARCHAR(255) NOT NULL,
-    timestamp TIMESTAMP NOT NULL
-);
\ No newline at end of file
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    app_id INT NOT NULL,
+    uri_id INT NOT NULL,
+    ip_id INT NOT NULL,
+    timestamp TIMESTAMP NOT NULL,
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+--почасовые агрегаты хитов по ключам словарей, поддерживаются при каждой вставке в endpoint_hits;
+--заполняются по накопленным хитам при старте сервиса, если таблица пуста
+CREATE TABLE IF NOT EXISTS endpoint_hits_hourly (
+    uri_id INT NOT NULL,
+    hour TIMESTAMP NOT NULL,
+    app_id INT NOT NULL,
+    hits BIGINT NOT NULL,
+    PRIMARY KEY (uri_id, hour, app_id)
+);
+
+--почасовые скетчи HyperLogLog уникальных IP для приблизительной статистики (unique=approx);
+--заполняются по накопленным хитам при старте сервиса, если таблица пуста
+CREATE TABLE IF NOT EXISTS endpoint_hits_hll (
+    uri_id INT NOT NULL,
+    hour TIMESTAMP NOT NULL,
+    app_id INT NOT NULL,
+    sketch BYTEA NOT NULL,
+    PRIMARY KEY (uri_id, hour, app_id)
+);
@@ -0,0 +1,20 @@
+package ru.practicum.ewm;
+
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//Тест сервиса статистики на PostgreSQL: схема хитов (секции, pg_class) другими базами не поддерживается.
+//Тест пропускается, если база не задана явно и Docker для Testcontainers недоступен
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@SpringBootTest
+@AutoConfigureMockMvc
+@EnabledIf("ru.practicum.ewm.PostgresTestSupport#isPostgresAvailable")
+public @interface PostgresTest {
+}
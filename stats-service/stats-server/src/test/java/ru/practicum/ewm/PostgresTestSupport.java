@@ -0,0 +1,21 @@
+package ru.practicum.ewm;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.DockerClientFactory;
+import ru.practicum.ewm.service.ViewCounterEngine;
+
+public final class PostgresTestSupport {
+    private PostgresTestSupport() {
+    }
+
+    public static boolean isPostgresAvailable() {
+        return System.getProperty("spring.datasource.url") != null
+                || DockerClientFactory.instance().isDockerAvailable();
+    }
+
+    //Удаление хитов и агрегатов, оставленных предыдущими тестами, и перестроение счётчиков в памяти
+    public static void clearHits(JdbcTemplate jdbcTemplate, ViewCounterEngine viewCounterEngine) {
+        jdbcTemplate.execute("TRUNCATE endpoint_hits, endpoint_hits_hourly, endpoint_hits_hll");
+        viewCounterEngine.rebuild();
+    }
+}
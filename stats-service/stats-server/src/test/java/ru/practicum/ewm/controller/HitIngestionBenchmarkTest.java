@@ -0,0 +1,91 @@
+package ru.practicum.ewm.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.practicum.ewm.PostgresTest;
+import ru.practicum.ewm.PostgresTestSupport;
+import ru.practicum.ewm.dto.EndpointHitDto;
+import ru.practicum.ewm.service.ViewCounterEngine;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//Приём одной пачкой против того же числа одиночных хитов: пачка пишется одной транзакцией и JDBC batch.
+//Результат зависит от машины и только пишется в лог. Число хитов задаётся через argLine:
+//-Dingest.hits=500. Запуск: mvn test -Pbenchmark
+@Slf4j
+@Tag("benchmark")
+@PostgresTest
+class HitIngestionBenchmarkTest {
+    private static final int HITS = Integer.getInteger("ingest.hits", 500);
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ViewCounterEngine viewCounterEngine;
+
+    @BeforeEach
+    void clear() {
+        PostgresTestSupport.clearHits(jdbcTemplate, viewCounterEngine);
+    }
+
+    @Test
+    void batchAgainstSingleHits() throws Exception {
+        postSingle(hits("/events/warmup", 50));
+        postBatch(hits("/events/warmup", 50));
+
+        long singleStart = System.nanoTime();
+        postSingle(hits("/events/1", HITS));
+        long singleNanos = System.nanoTime() - singleStart;
+
+        long batchStart = System.nanoTime();
+        postBatch(hits("/events/2", HITS));
+        long batchNanos = System.nanoTime() - batchStart;
+
+        log.warn("Приём {} хитов: по одному {} хит/с, пачкой {} хит/с", HITS,
+                throughput(singleNanos), throughput(batchNanos));
+    }
+
+    private void postSingle(List<EndpointHitDto> hits) throws Exception {
+        for (EndpointHitDto hit : hits) {
+            mockMvc.perform(post("/hit").contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(hit)))
+                    .andExpect(status().isCreated());
+        }
+    }
+
+    private void postBatch(List<EndpointHitDto> hits) throws Exception {
+        mockMvc.perform(post("/hit/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(hits)))
+                .andExpect(status().isCreated());
+    }
+
+    private static List<EndpointHitDto> hits(String uri, int count) {
+        LocalDateTime start = LocalDateTime.now().withNano(0).minusHours(1);
+        List<EndpointHitDto> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            hits.add(new EndpointHitDto("ewm-main-service", uri, "10.0." + (i / 250) + "." + (i % 250),
+                    start.plusSeconds(i)));
+        }
+        return hits;
+    }
+
+    private static long throughput(long nanos) {
+        return HITS * 1_000_000_000L / Math.max(nanos, 1);
+    }
+}
@@ -0,0 +1,133 @@
+package ru.practicum.ewm.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.practicum.ewm.PostgresTest;
+import ru.practicum.ewm.PostgresTestSupport;
+import ru.practicum.ewm.dto.EndpointHitDto;
+import ru.practicum.ewm.service.ViewCounterEngine;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@PostgresTest
+@TestPropertySource(properties = "stats.ingest.max-hits-per-request=" + HitIngestionTest.MAX_HITS_PER_REQUEST)
+class HitIngestionTest {
+    static final int MAX_HITS_PER_REQUEST = 1000;
+    private static final int HITS = 500;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ViewCounterEngine viewCounterEngine;
+
+    @BeforeEach
+    void clear() {
+        PostgresTestSupport.clearHits(jdbcTemplate, viewCounterEngine);
+    }
+
+    @Test
+    void batchWithInvalidHitIsRejectedWhole() throws Exception {
+        List<EndpointHitDto> hits = new ArrayList<>(hits("/events/1", 3));
+        hits.add(new EndpointHitDto("ewm-main-service", "/events/1", "10.0.0.1", null));
+
+        mockMvc.perform(post("/hit/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(hits)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/hit/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"app\":\"ewm-main-service\",\"ip\":\"10.0.0.1\",\"timestamp\":\"2024-01-01 10:00:00\"}]"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/hit/batch").contentType("application/x-ndjson")
+                        .content("{\"app\":\"ewm-main-service\",\"uri\":\"/events/1\",\"ip\":\"10.0.0.1\"}"))
+                .andExpect(status().isBadRequest());
+
+        assertThat(hitCount()).isZero();
+    }
+
+    //Поток длиннее предела откатывается целиком, поток в пределах - принимается
+    @Test
+    void streamOverLimitIsRejectedWhole() throws Exception {
+        mockMvc.perform(post("/hit/batch").contentType("application/x-ndjson")
+                        .content(ndjson(hits("/events/1", MAX_HITS_PER_REQUEST + 1))))
+                .andExpect(status().isPayloadTooLarge());
+        mockMvc.perform(post("/hit/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(hits("/events/1", MAX_HITS_PER_REQUEST + 1))))
+                .andExpect(status().isPayloadTooLarge());
+        assertThat(hitCount()).isZero();
+
+        mockMvc.perform(post("/hit/batch").contentType("application/x-ndjson")
+                        .content(ndjson(hits("/events/1", MAX_HITS_PER_REQUEST))))
+                .andExpect(status().isCreated());
+        assertThat(hitCount()).isEqualTo((long) MAX_HITS_PER_REQUEST);
+    }
+
+    //Хиты, принятые по одному, JSON-массивом и потоком NDJSON, сохраняются все
+    @Test
+    void everyAcceptedHitIsStored() throws Exception {
+        postSingle(hits("/events/1", 10));
+        postBatch(hits("/events/2", HITS));
+        mockMvc.perform(post("/hit/batch").contentType("application/x-ndjson")
+                        .content(ndjson(hits("/events/3", HITS))))
+                .andExpect(status().isCreated());
+
+        assertThat(hitCount("/events/1")).isEqualTo(10L);
+        assertThat(hitCount("/events/2")).isEqualTo((long) HITS);
+        assertThat(hitCount("/events/3")).isEqualTo((long) HITS);
+    }
+
+    private void postSingle(List<EndpointHitDto> hits) throws Exception {
+        for (EndpointHitDto hit : hits) {
+            mockMvc.perform(post("/hit").contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(hit)))
+                    .andExpect(status().isCreated());
+        }
+    }
+
+    private void postBatch(List<EndpointHitDto> hits) throws Exception {
+        mockMvc.perform(post("/hit/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(hits)))
+                .andExpect(status().isCreated());
+    }
+
+    private String ndjson(List<EndpointHitDto> hits) throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (EndpointHitDto hit : hits) {
+            body.append(objectMapper.writeValueAsString(hit)).append('\n');
+        }
+        return body.toString();
+    }
+
+    private Long hitCount(String uri) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM endpoint_hits h " +
+                "JOIN stats_uris u ON u.id = h.uri_id WHERE u.uri = ?", Long.class, uri);
+    }
+
+    private Long hitCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM endpoint_hits", Long.class);
+    }
+
+    private static List<EndpointHitDto> hits(String uri, int count) {
+        LocalDateTime start = LocalDateTime.now().withNano(0).minusHours(1);
+        List<EndpointHitDto> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            hits.add(new EndpointHitDto("ewm-main-service", uri, "10.0." + (i / 250) + "." + (i % 250),
+                    start.plusSeconds(i)));
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,157 @@
+package ru.practicum.ewm.controller;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import ru.practicum.ewm.PostgresTestSupport;
+import ru.practicum.ewm.dto.EndpointHitDto;
+import ru.practicum.ewm.dto.StatsQuery;
+import ru.practicum.ewm.dto.ViewStats;
+import ru.practicum.ewm.service.StatsService;
+import ru.practicum.ewm.service.ViewCounterEngine;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Окна "с момента публикации" для страницы событий: по запросу GET /stats на событие, как клиент статистики
+//делал раньше, против одного POST /stats/query на всю страницу. Запросы идут по HTTP с keep-alive, счётчики
+//в памяти выключены, чтобы оба способа считали по базе. Запуск: mvn test -Pbenchmark
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EnabledIf("ru.practicum.ewm.PostgresTestSupport#isPostgresAvailable")
+@TestPropertySource(properties = "stats.counters.enabled=false")
+class StatsQueryRoundTripBenchmarkTest {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int EVENTS = 200;
+    private static final int HITS_PER_EVENT = 50;
+    private static final int ROUNDS = 15;
+
+    @Autowired
+    private StatsService statsService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ViewCounterEngine viewCounterEngine;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final LocalDateTime now = LocalDateTime.now().withNano(0);
+
+    @BeforeEach
+    void fillHits() {
+        PostgresTestSupport.clearHits(jdbcTemplate, viewCounterEngine);
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int event = 0; event < EVENTS; event++) {
+            for (int i = 0; i < HITS_PER_EVENT; i++) {
+                hits.add(new EndpointHitDto("ewm-main-service", "/events/" + event, "10.2." + event % 200 + "." + i,
+                        publishedOn(event).plusMinutes(i * 30L)));
+            }
+        }
+        statsService.saveHits(hits);
+    }
+
+    @Test
+    void pageOfWindowsInOneRoundTrip() throws Exception {
+        for (int pageSize : List.of(10, 50, 100, 200)) {
+            List<StatsQuery> queries = new ArrayList<>();
+            for (int event = 0; event < pageSize; event++) {
+                queries.add(new StatsQuery("/events/" + event, publishedOn(event), now, false));
+            }
+
+            Map<String, Long> perEvent = perEventCalls(queries);
+            Map<String, Long> batched = batchedCall(queries);
+            assertThat(batched).hasSize(pageSize).isEqualTo(perEvent);
+
+            long perEventMicros = median(() -> perEventCalls(queries));
+            long batchedMicros = median(() -> batchedCall(queries));
+            log.warn("Страница из {} событий: {} запросов GET /stats - {} мкс, один POST /stats/query - {} мкс",
+                    pageSize, pageSize, perEventMicros, batchedMicros);
+        }
+    }
+
+    private Map<String, Long> perEventCalls(List<StatsQuery> queries) throws Exception {
+        Map<String, Long> hits = new HashMap<>();
+        for (StatsQuery query : queries) {
+            String uri = "http://localhost:" + port + "/stats?start=" + encode(FORMATTER.format(query.getStart()))
+                    + "&end=" + encode(FORMATTER.format(query.getEnd())) + "&uris=" + encode(query.getUri())
+                    + "&unique=false";
+            HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(URI.create(uri)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            read(response).forEach(stats -> hits.put(stats.getUri(), stats.getHits()));
+        }
+        return hits;
+    }
+
+    private Map<String, Long> batchedCall(List<StatsQuery> queries) throws Exception {
+        HttpResponse<String> response = httpClient.send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/stats/query"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(queries)))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        Map<String, Long> hits = new HashMap<>();
+        read(response).forEach(stats -> hits.put(stats.getUri(), stats.getHits()));
+        return hits;
+    }
+
+    private List<ViewStats> read(HttpResponse<String> response) throws Exception {
+        assertThat(response.statusCode()).isEqualTo(200);
+        return objectMapper.readValue(response.body(), new TypeReference<>() {
+        });
+    }
+
+    //Медиана в микросекундах по нескольким прогонам после прогрева
+    private static long median(Call call) throws Exception {
+        for (int i = 0; i < 3; i++) {
+            call.run();
+        }
+        long[] nanos = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            call.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos[ROUNDS / 2] / 1000;
+    }
+
+    //Каждое событие опубликовано в свой момент, поэтому у каждого своё окно
+    private LocalDateTime publishedOn(int event) {
+        return now.minusDays(3).plusMinutes(event);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    @FunctionalInterface
+    private interface Call {
+        void run() throws Exception;
+    }
+}
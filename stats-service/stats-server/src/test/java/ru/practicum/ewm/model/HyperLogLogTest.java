@@ -0,0 +1,116 @@
+package ru.practicum.ewm.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTest {
+    //Точность по умолчанию для stats.unique.approx.error=0.02: 4096 регистров, стандартная ошибка 1.6%
+    private static final int PRECISION = HyperLogLog.precisionFor(0.02);
+
+    @Test
+    void precisionCoversRequestedError() {
+        assertThat(PRECISION).isEqualTo(12);
+        assertThat(HyperLogLog.precisionFor(0.5)).isEqualTo(HyperLogLog.MIN_PRECISION);
+        assertThat(HyperLogLog.precisionFor(0.001)).isEqualTo(HyperLogLog.MAX_PRECISION);
+        assertThatThrownBy(() -> HyperLogLog.precisionFor(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new HyperLogLog(HyperLogLog.MAX_PRECISION + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    //Оценка укладывается в четыре стандартные ошибки; на малых числах работает линейный подсчёт
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000})
+    void estimateStaysWithinErrorBound(int cardinality) {
+        HyperLogLog sketch = sketch(0, cardinality);
+        //Повторные значения не меняют оценку
+        HyperLogLog repeated = sketch(0, cardinality).merge(sketch(0, cardinality / 2));
+
+        double standardError = 1.04 / Math.sqrt(1 << PRECISION);
+        assertThat((double) sketch.estimate()).isCloseTo(cardinality, within(4 * standardError * cardinality + 1));
+        assertThat(repeated.estimate()).isEqualTo(sketch.estimate());
+    }
+
+    @Test
+    void emptySketchEstimatesZero() {
+        assertThat(new HyperLogLog(PRECISION).estimate()).isZero();
+    }
+
+    //Слияние скетчей пересекающихся множеств даёт те же регистры, что скетч объединения
+    @Test
+    void mergeEqualsSketchOfUnion() {
+        HyperLogLog left = sketch(0, 60_000);
+        HyperLogLog right = sketch(40_000, 100_000);
+
+        HyperLogLog merged = left.merge(right);
+
+        assertThat(merged.toBytes()).isEqualTo(sketch(0, 100_000).toBytes());
+        assertThat(right.merge(left).toBytes()).isEqualTo(merged.toBytes());
+        //Исходные скетчи не меняются
+        assertThat(left.toBytes()).isEqualTo(sketch(0, 60_000).toBytes());
+    }
+
+    //Скетч большей точности при слиянии сворачивается до меньшей без потери регистров
+    @Test
+    void mergeOfDifferentPrecisionsEqualsUnionAtLowerPrecision() {
+        HyperLogLog coarse = sketch(10, 0, 30_000);
+        HyperLogLog fine = sketch(14, 20_000, 50_000);
+
+        HyperLogLog merged = fine.merge(coarse);
+
+        assertThat(merged.getPrecision()).isEqualTo(10);
+        assertThat(merged.toBytes()).isEqualTo(sketch(10, 0, 50_000).toBytes());
+    }
+
+    @Test
+    void sparseSketchSurvivesRoundTrip() {
+        HyperLogLog sketch = sketch(0, 200);
+
+        byte[] bytes = sketch.toBytes();
+        HyperLogLog restored = HyperLogLog.fromBytes(bytes);
+
+        assertThat(bytes[1]).as("разреженная запись").isEqualTo((byte) 1);
+        assertThat(bytes.length).isLessThan(1 << PRECISION);
+        assertThat(restored.getPrecision()).isEqualTo(PRECISION);
+        assertThat(restored.estimate()).isEqualTo(sketch.estimate());
+        assertThat(restored.toBytes()).isEqualTo(bytes);
+        assertThat(restored.merge(sketch(200, 300)).toBytes()).isEqualTo(sketch(0, 300).toBytes());
+    }
+
+    @Test
+    void denseSketchSurvivesRoundTrip() {
+        HyperLogLog sketch = sketch(0, 50_000);
+
+        byte[] bytes = sketch.toBytes();
+        HyperLogLog restored = HyperLogLog.fromBytes(bytes);
+
+        assertThat(bytes[1]).as("плотная запись").isEqualTo((byte) 0);
+        assertThat(bytes.length).isEqualTo(2 + (1 << PRECISION));
+        assertThat(restored.getPrecision()).isEqualTo(PRECISION);
+        assertThat(restored.estimate()).isEqualTo(sketch.estimate());
+        assertThat(restored.toBytes()).isEqualTo(bytes);
+    }
+
+    @Test
+    void unknownFormatIsRejected() {
+        assertThatThrownBy(() -> HyperLogLog.fromBytes(new byte[]{(byte) PRECISION, 7}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static HyperLogLog sketch(int from, int to) {
+        return sketch(PRECISION, from, to);
+    }
+
+    //Скетч IP-адресов с номерами [from, to)
+    private static HyperLogLog sketch(int precision, int from, int to) {
+        HyperLogLog sketch = new HyperLogLog(precision);
+        for (int i = from; i < to; i++) {
+            sketch.add("10." + (i >>> 16) + "." + ((i >>> 8) & 0xFF) + "." + (i & 0xFF));
+        }
+        return sketch;
+    }
+}
@@ -0,0 +1,72 @@
+package ru.practicum.ewm.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import ru.practicum.ewm.PostgresTest;
+import ru.practicum.ewm.PostgresTestSupport;
+import ru.practicum.ewm.dto.EndpointHitDto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Пачка хитов с новыми значениями словарей и новым месяцем занимает одно соединение: параллельных пачек
+//больше, чем соединений в пуле, но ни одна не ждёт второго соединения и не падает по таймауту пула
+@PostgresTest
+@TestPropertySource(properties = {
+        "spring.datasource.hikari.maximum-pool-size=2",
+        "spring.datasource.hikari.connection-timeout=1000"
+})
+class ConcurrentHitIngestionTest {
+    private static final int BATCHES = 12;
+    private static final int HITS_PER_BATCH = 50;
+
+    @Autowired
+    private StatsService statsService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ViewCounterEngine viewCounterEngine;
+
+    @BeforeEach
+    void clear() {
+        PostgresTestSupport.clearHits(jdbcTemplate, viewCounterEngine);
+    }
+
+    @Test
+    void concurrentBatchesWithNewKeysFitIntoSmallPool() throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int batch = 0; batch < BATCHES; batch++) {
+                List<EndpointHitDto> hits = batch(batch);
+                futures.add(executor.submit(() -> statsService.saveHits(hits)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM endpoint_hits", Long.class))
+                .isEqualTo((long) BATCHES * HITS_PER_BATCH);
+    }
+
+    //У каждой пачки свои новые IP и uri, часть хитов - в месяце, секции которого ещё нет
+    private static List<EndpointHitDto> batch(int batch) {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        LocalDateTime newMonth = LocalDateTime.of(2019, 1 + batch % 2, 15, 12, 0);
+        List<EndpointHitDto> hits = new ArrayList<>(HITS_PER_BATCH);
+        for (int i = 0; i < HITS_PER_BATCH; i++) {
+            hits.add(new EndpointHitDto("ewm-main-service", "/events/" + (1000 + batch * 10 + i % 10),
+                    "172.16." + batch + "." + i, i % 5 == 0 ? newMonth : now.minusMinutes(i)));
+        }
+        return hits;
+    }
+}
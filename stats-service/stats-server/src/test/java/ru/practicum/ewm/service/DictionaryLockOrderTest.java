@@ -0,0 +1,112 @@
+package ru.practicum.ewm.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import ru.practicum.ewm.PostgresTest;
+import ru.practicum.ewm.PostgresTestSupport;
+import ru.practicum.ewm.dto.EndpointHitDto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Два потока NDJSON из нескольких JDBC-пачек с новыми IP в противоположном порядке: в первой пачке одного
+//потока те IP, что во второй пачке другого. Потоки дочитывают первую пачку одновременно (барьер), поэтому
+//при добавлении значений словаря по пачкам они заняли бы уникальный индекс в разном порядке и взаимоблокировались
+@PostgresTest
+@TestPropertySource(properties = "stats.ingest.batch-size=" + DictionaryLockOrderTest.BATCH_SIZE)
+class DictionaryLockOrderTest {
+    static final int BATCH_SIZE = 5;
+
+    @Autowired
+    private StatsService statsService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ViewCounterEngine viewCounterEngine;
+
+    private final LocalDateTime now = LocalDateTime.now().withNano(0);
+
+    @BeforeEach
+    void clear() {
+        PostgresTestSupport.clearHits(jdbcTemplate, viewCounterEngine);
+        //app и uri уже есть в словарях: новыми в потоках остаются только IP
+        statsService.saveHit(hit("10.0.0.1"));
+    }
+
+    @Test
+    void streamsWithInterleavedNewValuesDoNotDeadlock() throws Exception {
+        String run = Long.toString(System.nanoTime(), 36);
+        List<EndpointHitDto> first = ips("a-" + run);
+        List<EndpointHitDto> second = ips("b-" + run);
+        List<EndpointHitDto> forward = new ArrayList<>(first);
+        forward.addAll(second);
+        List<EndpointHitDto> backward = new ArrayList<>(second);
+        backward.addAll(first);
+
+        CyclicBarrier firstBatchRead = new CyclicBarrier(2);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<?> forwardStream = executor.submit(() ->
+                    statsService.saveHits(new BarrierIterator(forward, firstBatchRead)));
+            Future<?> backwardStream = executor.submit(() ->
+                    statsService.saveHits(new BarrierIterator(backward, firstBatchRead)));
+            forwardStream.get(30, TimeUnit.SECONDS);
+            backwardStream.get(30, TimeUnit.SECONDS);
+        }
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM endpoint_hits", Long.class))
+                .isEqualTo(4L * BATCH_SIZE + 1);
+    }
+
+    private List<EndpointHitDto> ips(String prefix) {
+        List<EndpointHitDto> hits = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            hits.add(hit(prefix + "-" + i));
+        }
+        return hits;
+    }
+
+    private EndpointHitDto hit(String ip) {
+        return new EndpointHitDto("ewm-main-service", "/events/1", ip, now);
+    }
+
+    //Перед первым хитом второй пачки ждёт, пока другой поток тоже дочитает первую пачку
+    private static final class BarrierIterator implements Iterator<EndpointHitDto> {
+        private final List<EndpointHitDto> hits;
+        private final CyclicBarrier barrier;
+        private int next;
+
+        BarrierIterator(List<EndpointHitDto> hits, CyclicBarrier barrier) {
+            this.hits = hits;
+            this.barrier = barrier;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < hits.size();
+        }
+
+        @Override
+        public EndpointHitDto next() {
+            if (next == BATCH_SIZE) {
+                try {
+                    barrier.await(10, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new IllegalStateException("Другой поток не дочитал первую пачку", e);
+                }
+            }
+            return hits.get(next++);
+        }
+    }
+}
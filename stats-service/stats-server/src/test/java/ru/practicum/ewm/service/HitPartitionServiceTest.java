@@ -0,0 +1,113 @@
+package ru.practicum.ewm.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.practicum.ewm.PostgresTest;
+import ru.practicum.ewm.PostgresTestSupport;
+import ru.practicum.ewm.dto.EndpointHitDto;
+import ru.practicum.ewm.repository.HitPartitionRepository;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PostgresTest
+class HitPartitionServiceTest {
+    @Autowired
+    private HitPartitionService hitPartitionService;
+    @Autowired
+    private HitPartitionRepository hitPartitionRepository;
+    @Autowired
+    private StatsService statsService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ViewCounterEngine viewCounterEngine;
+
+    @BeforeEach
+    void clear() {
+        PostgresTestSupport.clearHits(jdbcTemplate, viewCounterEngine);
+    }
+
+    @Test
+    void partitionsFollowHitsAndExpireByRetention() {
+        LocalDate currentMonth = LocalDate.now().withDayOfMonth(1);
+        LocalDate oldMonth = currentMonth.minusMonths(14);
+        LocalDate recentMonth = currentMonth.minusMonths(1);
+        statsService.saveHits(List.of(
+                hit("/events/1", oldMonth.atTime(10, 0)),
+                hit("/events/1", recentMonth.atTime(10, 0))));
+
+        assertThat(hitPartitionRepository.getPartitionNames()).contains(
+                HitPartitionRepository.partitionName(oldMonth),
+                HitPartitionRepository.partitionName(recentMonth),
+                HitPartitionRepository.partitionName(currentMonth.plusMonths(2)));
+
+        ReflectionTestUtils.setField(hitPartitionService, "retention", Period.ofMonths(12));
+        try {
+            hitPartitionService.maintainPartitions();
+        } finally {
+            ReflectionTestUtils.setField(hitPartitionService, "retention", Period.ZERO);
+        }
+
+        assertThat(hitPartitionRepository.getPartitionNames())
+                .doesNotContain(HitPartitionRepository.partitionName(oldMonth))
+                .contains(HitPartitionRepository.partitionName(recentMonth));
+        assertThat(count("SELECT COUNT(*) FROM endpoint_hits")).isEqualTo(1);
+        //Почасовые агрегаты и скетчи удаляются вместе с секцией: окно по агрегатам совпадает с окном по хитам
+        assertThat(count("SELECT SUM(hits) FROM endpoint_hits_hourly")).isEqualTo(1);
+        assertThat(count("SELECT COUNT(*) FROM endpoint_hits_hll WHERE hour < '" +
+                Timestamp.valueOf(oldMonth.plusMonths(1).atStartOfDay()) + "'")).isZero();
+
+        //Секция удалённого месяца создаётся заново, если в него снова пришли хиты
+        statsService.saveHits(List.of(hit("/events/1", oldMonth.atTime(11, 0))));
+        assertThat(count("SELECT COUNT(*) FROM endpoint_hits")).isEqualTo(2);
+    }
+
+    @Test
+    void legacyTableIsMigratedIntoPartitions() {
+        jdbcTemplate.execute("DROP TABLE endpoint_hits");
+        jdbcTemplate.execute("CREATE TABLE endpoint_hits (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "app VARCHAR(255) NOT NULL, uri VARCHAR(255) NOT NULL, ip VARCHAR(255) NOT NULL, " +
+                "timestamp TIMESTAMP NOT NULL)");
+        jdbcTemplate.update("INSERT INTO endpoint_hits (app, uri, ip, timestamp) VALUES " +
+                "('ewm-main-service', '/events/1', '10.0.0.1', '2023-05-10 10:00:00'), " +
+                "('ewm-main-service', '/events/1', '10.0.0.2', '2023-05-11 10:00:00'), " +
+                "('ewm-main-service', '/events/2', '10.0.0.1', '2023-07-01 00:00:00')");
+        assertThat(hitPartitionRepository.isLegacyTable()).isTrue();
+        //Секции удалены вместе с таблицей: сервис должен создать их заново, как при первом запуске
+        ((Set<?>) ReflectionTestUtils.getField(hitPartitionService, "knownMonths")).clear();
+
+        hitPartitionService.prepareStorage();
+
+        assertThat(hitPartitionRepository.isLegacyTable()).isFalse();
+        assertThat(hitPartitionRepository.getPartitionNames()).contains(
+                HitPartitionRepository.partitionName(LocalDate.of(2023, 5, 1)),
+                HitPartitionRepository.partitionName(LocalDate.of(2023, 7, 1)));
+        assertThat(count("SELECT COUNT(*) FROM endpoint_hits")).isEqualTo(3);
+        assertThat(count("SELECT COUNT(*) FROM endpoint_hits eh JOIN stats_uris u ON u.id = eh.uri_id " +
+                "WHERE u.uri = '/events/1'")).isEqualTo(2);
+        assertThat(count("SELECT COUNT(*) FROM pg_class WHERE relname = 'endpoint_hits_legacy'")).isZero();
+
+        //Идентификаторы продолжаются после перенесённых хитов
+        statsService.saveHits(List.of(hit("/events/2", LocalDateTime.of(2023, 7, 2, 10, 0))));
+        assertThat(count("SELECT MAX(id) FROM endpoint_hits")).isGreaterThan(3);
+    }
+
+    private long count(String sql) {
+        Long count = jdbcTemplate.queryForObject(sql, Long.class);
+        return count == null ? 0 : count;
+    }
+
+    private static EndpointHitDto hit(String uri, LocalDateTime timestamp) {
+        return new EndpointHitDto("ewm-main-service", uri, "10.0.0.1", timestamp);
+    }
+}
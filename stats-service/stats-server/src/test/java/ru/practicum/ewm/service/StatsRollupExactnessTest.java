@@ -0,0 +1,133 @@
+package ru.practicum.ewm.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.ewm.PostgresTest;
+import ru.practicum.ewm.PostgresTestSupport;
+import ru.practicum.ewm.dto.EndpointHitDto;
+import ru.practicum.ewm.dto.StatsQuery;
+import ru.practicum.ewm.dto.ViewStats;
+import ru.practicum.ewm.model.HyperLogLog;
+import ru.practicum.ewm.repository.StatsRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+//Ответ по почасовым агрегатам с сырыми хитами по краям должен совпадать с подсчётом по сырым хитам всего окна
+@PostgresTest
+class StatsRollupExactnessTest {
+    private static final LocalDateTime FROM = LocalDateTime.of(2024, 3, 10, 0, 0);
+    private static final int HOURS = 30;
+    private static final List<String> URIS = List.of("/events/1", "/events/2", "/events");
+    private static final List<String> APPS = List.of("ewm-main-service", "ewm-admin");
+
+    @Autowired
+    private StatsService statsService;
+    @Autowired
+    private StatsRepository statsRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ViewCounterEngine viewCounterEngine;
+
+    private final Random random = new Random(42);
+
+    @BeforeEach
+    void clear() {
+        PostgresTestSupport.clearHits(jdbcTemplate, viewCounterEngine);
+    }
+
+    @Test
+    void rolledUpStatsMatchRawScan() {
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            //Часть хитов ровно на границах часов: они должны попасть ровно в одно из окон запроса
+            LocalDateTime timestamp = i % 10 == 0
+                    ? FROM.plusHours(random.nextInt(HOURS))
+                    : FROM.plusSeconds(random.nextInt(HOURS * 3600));
+            hits.add(new EndpointHitDto(pick(APPS), pick(URIS), "10.0.0." + random.nextInt(40), timestamp));
+        }
+        statsService.saveHits(hits);
+
+        List<StatsQuery> queries = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            LocalDateTime start = randomInstant();
+            LocalDateTime end = randomInstant();
+            if (end.isBefore(start)) {
+                LocalDateTime swap = start;
+                start = end;
+                end = swap;
+            }
+            queries.add(new StatsQuery(pick(URIS), start, end, i % 4 == 0));
+        }
+
+        List<ViewStats> answered = statsService.getStats(queries);
+
+        int position = 0;
+        for (StatsQuery query : queries) {
+            List<ViewStats> expected = sorted(query.isUnique()
+                    ? statsRepository.getUniqueStats(query.getStart(), query.getEnd(), List.of(query.getUri()))
+                    : statsRepository.getStats(query.getStart(), query.getEnd(), List.of(query.getUri())));
+            List<ViewStats> actual = sorted(answered.subList(position, position + expected.size()));
+            assertThat(actual).as("запрос %s", query).isEqualTo(expected);
+            position += expected.size();
+        }
+        assertThat(position).isEqualTo(answered.size());
+    }
+
+    //Оценка unique=approx по почасовым скетчам и скетчам краёв окна укладывается в четыре стандартные ошибки
+    //от точного числа уникальных IP по сырым хитам
+    @Test
+    void approxUniqueStatsStayWithinErrorBound() {
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            int ip = random.nextInt(8000);
+            hits.add(new EndpointHitDto(pick(APPS), "/events", "10.0." + (ip >>> 8) + "." + (ip & 0xFF),
+                    FROM.plusSeconds(random.nextInt(HOURS * 3600))));
+        }
+        statsService.saveHits(hits);
+
+        double standardError = 1.04 / Math.sqrt(1 << HyperLogLog.precisionFor(0.02));
+        for (int i = 0; i < 30; i++) {
+            LocalDateTime start = FROM.plusSeconds(random.nextInt(HOURS * 3600 / 2));
+            LocalDateTime end = start.plusSeconds(random.nextInt(HOURS * 3600 / 2));
+            List<ViewStats> expected = sorted(statsRepository.getUniqueStats(start, end, List.of("/events")));
+
+            List<ViewStats> approx = sorted(statsService.getApproxUniqueStats(start, end, List.of("/events")));
+
+            assertThat(approx).extracting(ViewStats::getApp)
+                    .isEqualTo(expected.stream().map(ViewStats::getApp).toList());
+            for (int j = 0; j < expected.size(); j++) {
+                long exact = expected.get(j).getHits();
+                assertThat((double) approx.get(j).getHits()).as("окно %s - %s, %s", start, end, expected.get(j))
+                        .isCloseTo(exact, within(Math.max(4 * standardError * exact, 3)));
+            }
+        }
+    }
+
+    //Начало часа, граница часа с секундами или произвольный момент
+    private LocalDateTime randomInstant() {
+        LocalDateTime hour = FROM.minusHours(1).plusHours(random.nextInt(HOURS + 2));
+        return switch (random.nextInt(3)) {
+            case 0 -> hour;
+            case 1 -> hour.plusSeconds(random.nextInt(3600));
+            default -> hour.plusMinutes(59).plusSeconds(59);
+        };
+    }
+
+    private <T> T pick(List<T> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private static List<ViewStats> sorted(List<ViewStats> stats) {
+        return stats.stream().sorted(Comparator.comparing(ViewStats::getApp)).toList();
+    }
+}
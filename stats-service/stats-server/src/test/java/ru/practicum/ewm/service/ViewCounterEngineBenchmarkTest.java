@@ -0,0 +1,149 @@
+package ru.practicum.ewm.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.ewm.PostgresTest;
+import ru.practicum.ewm.PostgresTestSupport;
+import ru.practicum.ewm.dto.EndpointHitDto;
+import ru.practicum.ewm.dto.ViewStats;
+import ru.practicum.ewm.model.EndpointHit;
+import ru.practicum.ewm.model.HitWindow;
+import ru.practicum.ewm.repository.StatsRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Пропускная способность счётчиков в памяти при одновременном учёте хитов и чтении окон "с момента публикации".
+//Потоки-писатели учитывают хиты по одному, потоки-читатели запрашивают число просмотров и уникальных IP
+//случайного события. Результат зависит от машины и только пишется в лог. Число потоков и длительность
+//замера задаются через argLine: -Dcounters.writers=4 -Dcounters.readers=4 -Dcounters.seconds=5.
+//Запуск: mvn test -Pbenchmark
+@Slf4j
+@Tag("benchmark")
+@PostgresTest
+class ViewCounterEngineBenchmarkTest {
+    private static final int EVENTS = 500;
+    private static final int HITS_PER_EVENT = 40;
+    //IP на событие меньше порога точного подсчёта, чтобы число уникальных IP оставалось точным
+    private static final int IPS_PER_EVENT = 400;
+    private static final int WRITERS = Integer.getInteger("counters.writers", 4);
+    private static final int READERS = Integer.getInteger("counters.readers", 4);
+    private static final Duration WARMUP = Duration.ofSeconds(1);
+    private static final Duration MEASUREMENT = Duration.ofSeconds(Long.getLong("counters.seconds", 5));
+
+    @Autowired
+    private StatsService statsService;
+    @Autowired
+    private StatsRepository statsRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ViewCounterEngine viewCounterEngine;
+
+    private final LocalDateTime now = LocalDateTime.now().withNano(0);
+    private final LocalDateTime publishedOn = now.minusDays(3);
+
+    @BeforeEach
+    void fillHits() {
+        PostgresTestSupport.clearHits(jdbcTemplate, viewCounterEngine);
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int event = 0; event < EVENTS; event++) {
+            for (int i = 0; i < HITS_PER_EVENT; i++) {
+                hits.add(new EndpointHitDto("ewm-main-service", "/events/" + event, ip(event, i),
+                        publishedOn.plusMinutes(event + i * 60L)));
+            }
+        }
+        statsService.saveHits(hits);
+    }
+
+    @Test
+    void concurrentIncrementsAndReads() throws Exception {
+        LongAdder[] written = new LongAdder[EVENTS];
+        for (int event = 0; event < EVENTS; event++) {
+            written[event] = new LongAdder();
+        }
+        LongAdder writes = new LongAdder();
+        LongAdder reads = new LongAdder();
+        LongAdder readsFromDatabase = new LongAdder();
+        long measureFrom = System.nanoTime() + WARMUP.toNanos();
+        long measureTo = measureFrom + MEASUREMENT.toNanos();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS)) {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int writer = 0; writer < WRITERS; writer++) {
+                workers.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < measureTo) {
+                        int event = random.nextInt(EVENTS);
+                        viewCounterEngine.record(List.of(new EndpointHit("ewm-main-service", "/events/" + event,
+                                ip(event, random.nextInt(IPS_PER_EVENT)), now.minusSeconds(random.nextInt(3600)))));
+                        written[event].increment();
+                        if (System.nanoTime() >= measureFrom) {
+                            writes.increment();
+                        }
+                    }
+                }));
+            }
+            for (int reader = 0; reader < READERS; reader++) {
+                workers.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < measureTo) {
+                        Optional<List<ViewStats>> stats = viewCounterEngine.getStats(publishedOn, now,
+                                List.of("/events/" + random.nextInt(EVENTS)), random.nextBoolean()
+                                        ? ViewCounterEngine.Count.TOTAL : ViewCounterEngine.Count.UNIQUE);
+                        if (System.nanoTime() >= measureFrom) {
+                            reads.increment();
+                            if (stats.isEmpty()) {
+                                readsFromDatabase.increment();
+                            }
+                        }
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        }
+
+        //Для сравнения: одна страница окон тех же событий по сырым хитам
+        List<HitWindow> windows = new ArrayList<>();
+        for (int event = 0; event < EVENTS; event++) {
+            windows.add(new HitWindow(event, "/events/" + event, publishedOn, now, true, event % 2 == 0));
+        }
+        long scanStart = System.nanoTime();
+        statsRepository.getWindowStats(windows);
+        long scanMicros = (System.nanoTime() - scanStart) / 1000;
+
+        double seconds = MEASUREMENT.toNanos() / 1e9;
+        log.warn("Счётчики в памяти, {} писателей и {} читателей: {} хитов/с, {} чтений/с ({} ушли бы в базу); " +
+                        "{} окон по сырым хитам - {} мкс", WRITERS, READERS, Math.round(writes.sum() / seconds),
+                Math.round(reads.sum() / seconds), readsFromDatabase.sum(), EVENTS, scanMicros);
+
+        //Ни один хит, учтённый параллельно с чтениями, не потерян
+        assertThat(readsFromDatabase.sum()).isZero();
+        for (int event = 0; event < EVENTS; event++) {
+            List<ViewStats> total = viewCounterEngine.getStats(publishedOn, now, List.of("/events/" + event),
+                    ViewCounterEngine.Count.TOTAL).orElseThrow();
+            assertThat(total).singleElement().extracting(ViewStats::getHits)
+                    .isEqualTo(HITS_PER_EVENT + written[event].sum());
+        }
+    }
+
+    private static String ip(int event, int i) {
+        return "10." + event % 200 + "." + i / 256 + "." + i % 256;
+    }
+}
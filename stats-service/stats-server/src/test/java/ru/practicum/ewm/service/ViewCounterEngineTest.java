@@ -0,0 +1,81 @@
+package ru.practicum.ewm.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.ewm.PostgresTest;
+import ru.practicum.ewm.PostgresTestSupport;
+import ru.practicum.ewm.dto.EndpointHitDto;
+import ru.practicum.ewm.dto.StatsQuery;
+import ru.practicum.ewm.dto.ViewStats;
+import ru.practicum.ewm.model.HitWindow;
+import ru.practicum.ewm.model.WindowStats;
+import ru.practicum.ewm.repository.StatsRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Запросы "с момента публикации" из POST /stats/query обслуживаются счётчиками в памяти и совпадают
+//с подсчётом по сырым хитам, которым эти запросы обслуживались раньше. Скорость - в ViewCounterEngineBenchmarkTest
+@PostgresTest
+class ViewCounterEngineTest {
+    private static final int EVENTS = 500;
+    private static final int HITS_PER_EVENT = 40;
+
+    @Autowired
+    private StatsService statsService;
+    @Autowired
+    private StatsRepository statsRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ViewCounterEngine viewCounterEngine;
+
+    @BeforeEach
+    void clear() {
+        PostgresTestSupport.clearHits(jdbcTemplate, viewCounterEngine);
+    }
+
+    @Test
+    void sincePublicationQueriesAreServedFromCounters() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        LocalDateTime publishedOn = now.minusDays(3);
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int event = 0; event < EVENTS; event++) {
+            for (int i = 0; i < HITS_PER_EVENT; i++) {
+                hits.add(new EndpointHitDto("ewm-main-service", "/events/" + event, "10.1." + event % 200 + "." + i,
+                        publishedOn.plusMinutes(event + i * 60L)));
+            }
+        }
+        statsService.saveHits(hits);
+
+        List<StatsQuery> queries = new ArrayList<>();
+        List<HitWindow> windows = new ArrayList<>();
+        for (int event = 0; event < EVENTS; event++) {
+            boolean unique = event % 2 == 0;
+            queries.add(new StatsQuery("/events/" + event, publishedOn, now, unique));
+            windows.add(new HitWindow(event, "/events/" + event, publishedOn, now, true, unique));
+        }
+
+        Map<String, Long> counted = byUri(statsService.getStats(queries));
+        Map<String, Long> scanned = statsRepository.getWindowStats(windows).stream()
+                .collect(Collectors.toMap(WindowStats::uri, WindowStats::hits));
+        assertThat(counted).hasSize(EVENTS).isEqualTo(scanned);
+        for (StatsQuery query : queries) {
+            assertThat(viewCounterEngine.getStats(query.getStart(), query.getEnd(), List.of(query.getUri()),
+                    query.isUnique() ? ViewCounterEngine.Count.UNIQUE : ViewCounterEngine.Count.TOTAL))
+                    .as("запрос %s обслуживается из памяти", query)
+                    .isPresent();
+        }
+    }
+
+    private static Map<String, Long> byUri(List<ViewStats> stats) {
+        return stats.stream().collect(Collectors.toMap(ViewStats::getUri, ViewStats::getHits));
+    }
+}